@@ -14,6 +14,7 @@ import com.google.android.gms.common.api.PendingResult;
 import com.google.android.gms.common.api.Result;
 import com.google.android.gms.common.api.Status;
 import com.google.android.gms.location.ActivityRecognitionResult;
+import com.google.android.gms.location.GeofencingEvent;
 import com.google.android.gms.location.GeofencingRequest;
 import com.google.android.gms.location.LocationRequest;
 import com.google.android.gms.location.LocationServices;
@@ -30,25 +31,48 @@ import com.google.android.gms.location.places.PlacePhotoResult;
 import com.google.android.gms.location.places.Places;
 import com.google.android.gms.maps.model.LatLngBounds;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.Scheduler;
 import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
 import pl.charmas.android.reactivelocation2.observables.GoogleAPIClientObservableOnSubscribe;
 import pl.charmas.android.reactivelocation2.observables.ObservableContext;
 import pl.charmas.android.reactivelocation2.observables.ObservableFactory;
 import pl.charmas.android.reactivelocation2.observables.PendingResultObservableOnSubscribe;
-import pl.charmas.android.reactivelocation2.observables.activity.ActivityUpdatesObservableOnSubscribe;
+import pl.charmas.android.reactivelocation2.observables.activity.SharedActivityUpdates;
 import pl.charmas.android.reactivelocation2.observables.geocode.GeocodeObservable;
+import pl.charmas.android.reactivelocation2.observables.geocode.ReverseGeocodePrefetcher;
+import pl.charmas.android.reactivelocation2.observables.geocode.ReverseGeocodeWarmUp;
+import pl.charmas.android.reactivelocation2.observables.geocode.ReverseGeocodeWarmUpProgress;
 import pl.charmas.android.reactivelocation2.observables.geocode.ReverseGeocodeObservable;
 import pl.charmas.android.reactivelocation2.observables.geofence.AddGeofenceObservableOnSubscribe;
+import pl.charmas.android.reactivelocation2.observables.geofence.GeofenceRegistrationBatcher;
+import pl.charmas.android.reactivelocation2.observables.geofence.GeofenceRegistrationUpdate;
+import pl.charmas.android.reactivelocation2.observables.geofence.GeofenceRegistry;
+import pl.charmas.android.reactivelocation2.observables.geofence.GeofenceTransitionsObservableOnSubscribe;
+import pl.charmas.android.reactivelocation2.observables.geofence.LocalGeofence;
+import pl.charmas.android.reactivelocation2.observables.geofence.NearestGeofenceRegistration;
 import pl.charmas.android.reactivelocation2.observables.geofence.RemoveGeofenceObservableOnSubscribe;
+import pl.charmas.android.reactivelocation2.observables.location.AdaptiveLocationEvent;
+import pl.charmas.android.reactivelocation2.observables.location.AdaptiveLocationPolicy;
+import pl.charmas.android.reactivelocation2.observables.location.AdaptiveLocationUpdates;
 import pl.charmas.android.reactivelocation2.observables.location.AddLocationIntentUpdatesObservableOnSubscribe;
 import pl.charmas.android.reactivelocation2.observables.location.LastKnownLocationObservableOnSubscribe;
 import pl.charmas.android.reactivelocation2.observables.location.LocationUpdatesObservableOnSubscribe;
 import pl.charmas.android.reactivelocation2.observables.location.MockLocationObservableOnSubscribe;
+import pl.charmas.android.reactivelocation2.observables.location.MockLocationOptions;
+import pl.charmas.android.reactivelocation2.observables.location.MockLocationReport;
+import pl.charmas.android.reactivelocation2.observables.location.PipelinedMockLocationObservableOnSubscribe;
 import pl.charmas.android.reactivelocation2.observables.location.RemoveLocationIntentUpdatesObservableOnSubscribe;
+import pl.charmas.android.reactivelocation2.observables.location.StationaryDetection;
+import pl.charmas.android.reactivelocation2.observables.location.StationaryLocationEvent;
+import pl.charmas.android.reactivelocation2.observables.location.StationaryLocationUpdates;
 
 
 /**
@@ -58,6 +82,7 @@ import pl.charmas.android.reactivelocation2.observables.location.RemoveLocationI
 public class ReactiveLocationProvider {
     private final ObservableContext ctx;
     private final ObservableFactory factory;
+    private final SharedActivityUpdates activityUpdates;
 
     /**
      * Creates location provider instance with default configuration.
@@ -77,6 +102,7 @@ public class ReactiveLocationProvider {
     public ReactiveLocationProvider(Context ctx, ReactiveLocationProviderConfiguration configuration) {
         this.ctx = new ObservableContext(ctx, configuration);
         this.factory = new ObservableFactory(this.ctx);
+        this.activityUpdates = SharedActivityUpdates.create(this.ctx, this.factory);
     }
 
     /**
@@ -131,6 +157,46 @@ public class ReactiveLocationProvider {
         return LocationUpdatesObservableOnSubscribe.createObservable(ctx, factory, locationRequest);
     }
 
+    /**
+     * Creates observable that combines activity recognition with location updates and switches
+     * {@link LocationRequest} according to detected activity, e.g. stops updates while device is
+     * still and requests high accuracy in a vehicle. Request is switched only after new activity
+     * was detected with minimal confidence for switch delay of the policy.
+     * <p/>
+     * Every switch is emitted as {@link AdaptiveLocationEvent#TYPE_REQUEST_CHANGED} event, starting
+     * with initial request of the policy.
+     *
+     * @param policy requests to use for activities
+     * @return observable that emits locations and request switches
+     */
+    @RequiresPermission(
+            anyOf = {"android.permission.ACCESS_COARSE_LOCATION", "android.permission.ACCESS_FINE_LOCATION"}
+    )
+    public Observable<AdaptiveLocationEvent> getAdaptiveLocationUpdates(AdaptiveLocationPolicy policy) {
+        return AdaptiveLocationUpdates.createObservable(ctx, factory, getDetectedActivity(policy.getActivityDetectionInterval()), policy);
+    }
+
+    /**
+     * Creates observable that serves location updates and replaces given request with a low power
+     * one while device stays in place, see {@link StationaryDetection}. Original request is
+     * restored as soon as device starts moving.
+     * <p/>
+     * Changes of stationary state are emitted as {@link StationaryLocationEvent#TYPE_STATIONARY}
+     * and {@link StationaryLocationEvent#TYPE_MOVING} events.
+     *
+     * @param locationRequest request used while device is moving
+     * @param detection       configuration of stationary detection
+     * @return observable that emits locations and stationary state changes
+     */
+    @RequiresPermission(
+            anyOf = {"android.permission.ACCESS_COARSE_LOCATION", "android.permission.ACCESS_FINE_LOCATION"}
+    )
+    public Observable<StationaryLocationEvent> getStationaryAwareLocation(LocationRequest locationRequest, StationaryDetection detection) {
+        int interval = detection.getActivityDetectionInterval();
+        return StationaryLocationUpdates.createObservable(ctx, factory, locationRequest, detection,
+                interval > 0 ? getDetectedActivity(interval) : null);
+    }
+
     /**
      * Returns an observable which activates mock location mode when subscribed to, using the
      * supplied observable as a source of mock locations. Mock locations will replace normal
@@ -156,6 +222,32 @@ public class ReactiveLocationProvider {
         return MockLocationObservableOnSubscribe.createObservable(ctx, factory, sourceLocationObservable);
     }
 
+    /**
+     * Returns an observable which activates mock location mode when subscribed to, like
+     * {@link #mockLocation(Observable)}, but limits number of mock locations waiting for results
+     * of Google Play Services. Source is requested one location per free slot of the window, so
+     * use {@link Flowable#onBackpressureBuffer()}, {@link Flowable#onBackpressureDrop()} or
+     * {@link Flowable#onBackpressureLatest()} to choose what happens to locations of a source that
+     * cannot slow down. With coalescing enabled, source is requested without limit and only the
+     * newest location waits for a free slot.
+     * <p/>
+     * Instead of a status per location, {@link MockLocationReport} is emitted after every report
+     * interval and once more when source completes and all its locations were accepted.
+     * <p/>
+     * All statuses that are not successful will be reported as {@link pl.charmas.android.reactivelocation2.observables.StatusException}.
+     *
+     * @param sourceLocationFlowable flowable that emits {@link android.location.Location} instances suitable to use as mock locations
+     * @param options                flow control of mock locations
+     * @return observable that emits {@link MockLocationReport}
+     */
+    @RequiresPermission(
+            allOf = {"android.permission.ACCESS_COARSE_LOCATION",
+                    "android.permission.ACCESS_MOCK_LOCATION"}
+    )
+    public Observable<MockLocationReport> mockLocation(Flowable<Location> sourceLocationFlowable, MockLocationOptions options) {
+        return PipelinedMockLocationObservableOnSubscribe.createObservable(ctx, factory, sourceLocationFlowable, options);
+    }
+
     /**
      * Creates an observable that adds a {@link android.app.PendingIntent} as a location listener.
      * <p/>
@@ -201,7 +293,7 @@ public class ReactiveLocationProvider {
      * @return observable that serves list of address based on location
      */
     public Observable<List<Address>> getReverseGeocodeObservable(double lat, double lng, int maxResults) {
-        return ReverseGeocodeObservable.createObservable(ctx.getContext(), factory, Locale.getDefault(), lat, lng, maxResults);
+        return ReverseGeocodeObservable.createObservable(ctx.getContext(), factory, ctx.getReverseGeocodeCache(), Locale.getDefault(), lat, lng, maxResults);
     }
 
     /**
@@ -217,7 +309,80 @@ public class ReactiveLocationProvider {
      * @return observable that serves list of address based on location
      */
     public Observable<List<Address>> getReverseGeocodeObservable(Locale locale, double lat, double lng, int maxResults) {
-        return ReverseGeocodeObservable.createObservable(ctx.getContext(), factory, locale, lat, lng, maxResults);
+        return ReverseGeocodeObservable.createObservable(ctx.getContext(), factory, ctx.getReverseGeocodeCache(), locale, lat, lng, maxResults);
+    }
+
+    /**
+     * Creates transformer that passes location updates through and reverse geocodes cells that device
+     * is going to reach within lookahead time, judging by speed and bearing of each location.
+     * Results are stored in {@link pl.charmas.android.reactivelocation2.observables.geocode.ReverseGeocodeCache}
+     * set in {@link ReactiveLocationProviderConfiguration}, so following calls to
+     * {@link #getReverseGeocodeObservable(double, double, int)} are served from cache.
+     * <p/>
+     * Prefetch requests are executed on I/O thread and are cancelled when transformed observable
+     * is unsubscribed.
+     *
+     * @param maxResults           maximal number of results you are interested in
+     * @param lookaheadMillis      how far ahead in time locations are extrapolated
+     * @param maxRequestsPerMinute maximal number of prefetch requests issued per minute
+     * @return transformer to compose with location updates observable
+     * @throws IllegalStateException when there is no reverse geocode cache configured
+     */
+    public ObservableTransformer<Location, Location> prefetchReverseGeocode(int maxResults, long lookaheadMillis, int maxRequestsPerMinute) {
+        return prefetchReverseGeocode(Locale.getDefault(), maxResults, lookaheadMillis, maxRequestsPerMinute);
+    }
+
+    /**
+     * Creates reverse geocode prefetching transformer for given locale.
+     *
+     * @see ReactiveLocationProvider#prefetchReverseGeocode(int, long, int)
+     */
+    public ObservableTransformer<Location, Location> prefetchReverseGeocode(Locale locale, int maxResults, long lookaheadMillis, int maxRequestsPerMinute) {
+        return ReverseGeocodePrefetcher.create(ctx, factory, locale, maxResults, lookaheadMillis, maxRequestsPerMinute);
+    }
+
+    /**
+     * Creates observable that reverse geocodes every cell of given region and stores results in
+     * {@link pl.charmas.android.reactivelocation2.observables.geocode.ReverseGeocodeCache} set in
+     * {@link ReactiveLocationProviderConfiguration}, so later lookups within the region are served
+     * locally. Cells that are already cached are skipped. At most 4 requests are executed at once,
+     * at most 5 per second.
+     * <p/>
+     * Observable emits progress after every cell and completes when whole region is processed.
+     * Cells that could not be geocoded are counted as failed and do not terminate the stream.
+     * <p/>
+     * Cell precision cannot be finer than precision of the cache, lookups fall back only to
+     * coarser cells. Coarser precision warms up larger regions with fewer requests.
+     *
+     * @param bounds        region to warm up
+     * @param cellPrecision number of decimal places of latitude and longitude that identify a cell,
+     *                      at most {@link pl.charmas.android.reactivelocation2.observables.geocode.ReverseGeocodeCache#getCellPrecision()}
+     * @param maxResults    maximal number of results you are interested in
+     * @return observable that emits warm-up progress
+     * @throws IllegalStateException    when there is no reverse geocode cache configured
+     * @throws IllegalArgumentException when cell precision is finer than precision of the cache
+     */
+    public Observable<ReverseGeocodeWarmUpProgress> warmUpReverseGeocodeCache(LatLngBounds bounds, int cellPrecision, int maxResults) {
+        return warmUpReverseGeocodeCache(Locale.getDefault(), bounds, cellPrecision, maxResults, 4, 200);
+    }
+
+    /**
+     * Creates observable that reverse geocodes every cell of given region with custom concurrency
+     * and rate limits.
+     *
+     * @param locale                   locale for address language
+     * @param bounds                   region to warm up
+     * @param cellPrecision            number of decimal places of latitude and longitude that identify a cell,
+     *                                 at most precision of the cache
+     * @param maxResults               maximal number of results you are interested in
+     * @param maxConcurrency           maximal number of requests executed at once
+     * @param minRequestIntervalMillis minimal time between starts of consecutive requests
+     * @return observable that emits warm-up progress
+     * @see ReactiveLocationProvider#warmUpReverseGeocodeCache(LatLngBounds, int, int)
+     */
+    public Observable<ReverseGeocodeWarmUpProgress> warmUpReverseGeocodeCache(Locale locale, LatLngBounds bounds, int cellPrecision, int maxResults,
+                                                                              int maxConcurrency, long minRequestIntervalMillis) {
+        return ReverseGeocodeWarmUp.createObservable(ctx, locale, bounds, cellPrecision, maxResults, maxConcurrency, minRequestIntervalMillis);
     }
 
     /**
@@ -280,6 +445,24 @@ public class ReactiveLocationProvider {
         return AddGeofenceObservableOnSubscribe.createObservable(ctx, factory, request, geofenceTransitionPendingIntent);
     }
 
+    /**
+     * Creates observable that adds geofences from request and emits their transitions directly,
+     * without any broadcast receiver declared by the application. Geofences are removed when
+     * observable is unsubscribed, so transitions are observed only while subscription lasts.
+     * <p/>
+     * Observable can report {@link pl.charmas.android.reactivelocation2.observables.GoogleAPIConnectionException}
+     * when there are trouble connecting with Google Play Services.
+     * <p/>
+     * In case of unsuccessful status or geofencing error {@link pl.charmas.android.reactivelocation2.observables.StatusException} is delivered.
+     *
+     * @param request geofences to observe
+     * @return observable that emits geofence transitions
+     */
+    @RequiresPermission("android.permission.ACCESS_FINE_LOCATION")
+    public Observable<GeofencingEvent> observeGeofenceTransitions(GeofencingRequest request) {
+        return GeofenceTransitionsObservableOnSubscribe.createObservable(ctx, factory, request);
+    }
+
     /**
      * Observable that can be used to remove geofences from LocationClient.
      * <p/>
@@ -313,14 +496,78 @@ public class ReactiveLocationProvider {
     }
 
 
+    /**
+     * Creates batcher that merges geofence additions and removals issued within given window into
+     * as few {@link com.google.android.gms.location.GeofencingApi} calls as possible, all sent over
+     * one connection. Use it instead of {@link #addGeofences(PendingIntent, GeofencingRequest)} and
+     * {@link #removeGeofences(List)} when many small requests are issued at once.
+     *
+     * @param windowMillis time for which requests are collected before being sent
+     * @return batcher instance, should be reused for all requests
+     */
+    public GeofenceRegistrationBatcher createGeofenceRegistrationBatcher(long windowMillis) {
+        return createGeofenceRegistrationBatcher(windowMillis, Schedulers.computation());
+    }
+
+    /**
+     * Creates batcher that merges geofence additions and removals issued within given window.
+     *
+     * @param windowMillis time for which requests are collected before being sent
+     * @param scheduler    scheduler used to wait for the end of window
+     * @return batcher instance, should be reused for all requests
+     * @see #createGeofenceRegistrationBatcher(long)
+     */
+    public GeofenceRegistrationBatcher createGeofenceRegistrationBatcher(long windowMillis, Scheduler scheduler) {
+        return GeofenceRegistrationBatcher.create(ctx, factory, windowMillis, scheduler);
+    }
+
+    /**
+     * Returns registry that remembers geofences registered for one pending intent and syncs desired
+     * geofences with minimal number of add and remove calls. State is persisted, so registry
+     * obtained with the same name after process restart knows what is registered.
+     *
+     * @param name name of registry, use different names for independent sets of geofences
+     * @return registry instance
+     */
+    public GeofenceRegistry getGeofenceRegistry(String name) {
+        return GeofenceRegistry.create(ctx, factory, name);
+    }
+
+    /**
+     * Creates observable that keeps geofences nearest to the device registered with Play Services,
+     * so sets larger than Play Services limit can still be monitored by it. Every time device moves
+     * by more than minimal displacement nearest geofences are computed and only the difference is
+     * removed with {@link #removeGeofences(List)} and added with {@link #addGeofences(PendingIntent, GeofencingRequest)}.
+     * <p/>
+     * Geofences registered by this observable are removed when it is unsubscribed.
+     * <p/>
+     * In case of unsuccessful status {@link pl.charmas.android.reactivelocation2.observables.StatusException} is delivered.
+     *
+     * @param locations                       location updates driving registration
+     * @param geofenceTransitionPendingIntent pending intent to register on geofence transition
+     * @param geofences                       all geofences, only circular ones are supported
+     * @param maxRegistered                   maximal number of geofences registered at once, at most 100
+     * @param minDisplacementMeters           distance device has to move before registration is recomputed
+     * @return observable that emits every change of registered geofences
+     * @throws IllegalArgumentException when maxRegistered is not between 1 and 100
+     */
+    @RequiresPermission("android.permission.ACCESS_FINE_LOCATION")
+    public Observable<GeofenceRegistrationUpdate> registerNearestGeofences(Observable<Location> locations, PendingIntent geofenceTransitionPendingIntent,
+                                                                          Collection<LocalGeofence> geofences, int maxRegistered, float minDisplacementMeters) {
+        return NearestGeofenceRegistration.createObservable(ctx, factory, locations, geofenceTransitionPendingIntent, geofences, maxRegistered, minDisplacementMeters);
+    }
+
     /**
      * Observable that can be used to observe activity provided by Actity Recognition mechanism.
+     * <p/>
+     * All subscriptions made with this provider share one registration with the shortest
+     * interval requested by them, results are downsampled to interval of every subscription.
      *
      * @param detectIntervalMiliseconds detecion interval
      * @return observable that provides activity recognition
      */
     public Observable<ActivityRecognitionResult> getDetectedActivity(int detectIntervalMiliseconds) {
-        return ActivityUpdatesObservableOnSubscribe.createObservable(ctx, factory, detectIntervalMiliseconds);
+        return activityUpdates.observe(detectIntervalMiliseconds);
     }
 
     /**
@@ -436,6 +683,7 @@ public class ReactiveLocationProvider {
      *
      * @param apis collection of apis to connect to
      * @return observable that emits apis client after successful connection
+     * @throws IllegalStateException when configured backend does not use Google Play Services
      */
     public Observable<GoogleApiClient> getGoogleApiClientObservable(Api... apis) {
         //noinspection unchecked
@@ -3,16 +3,23 @@ package pl.charmas.android.reactivelocation2;
 import android.os.Handler;
 import android.support.annotation.Nullable;
 
+import pl.charmas.android.reactivelocation2.observables.backend.PlayServicesBackend;
+import pl.charmas.android.reactivelocation2.observables.geocode.ReverseGeocodeCache;
+
 /**
  * Configuration for location provider. Pleas use builder to create an instance.
  */
 public class ReactiveLocationProviderConfiguration {
     private final Handler customCallbackHandler;
     private final boolean retryOnConnectionSuspended;
+    private final ReverseGeocodeCache reverseGeocodeCache;
+    private final PlayServicesBackend backend;
 
     private ReactiveLocationProviderConfiguration(Builder builder) {
         this.customCallbackHandler = builder.customCallbackHandler;
         this.retryOnConnectionSuspended = builder.retryOnConnectionSuspended;
+        this.reverseGeocodeCache = builder.reverseGeocodeCache;
+        this.backend = builder.backend;
     }
 
     public Handler getCustomCallbackHandler() {
@@ -23,6 +30,14 @@ public class ReactiveLocationProviderConfiguration {
         return retryOnConnectionSuspended;
     }
 
+    public ReverseGeocodeCache getReverseGeocodeCache() {
+        return reverseGeocodeCache;
+    }
+
+    public PlayServicesBackend getBackend() {
+        return backend;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -30,6 +45,8 @@ public class ReactiveLocationProviderConfiguration {
     public static class Builder {
         private Handler customCallbackHandler = null;
         private boolean retryOnConnectionSuspended = false;
+        private ReverseGeocodeCache reverseGeocodeCache = null;
+        private PlayServicesBackend backend = null;
 
         /**
          * Allows to set custom handler on which all Google Play Services callbacks are called.
@@ -57,6 +74,35 @@ public class ReactiveLocationProviderConfiguration {
             return this;
         }
 
+        /**
+         * Allows to set cache that is consulted before reverse geocoding a location and filled with
+         * its results. The cache is also required by reverse geocode prefetching.
+         * <p>
+         * Default: null
+         *
+         * @param reverseGeocodeCache cache instance
+         * @return builder instance
+         */
+        public Builder setReverseGeocodeCache(@Nullable ReverseGeocodeCache reverseGeocodeCache) {
+            this.reverseGeocodeCache = reverseGeocodeCache;
+            return this;
+        }
+
+        /**
+         * Allows to set backend that creates clients used by location, geofence and activity
+         * observables, e.g. {@code FakePlayServicesBackend} of the benchmark module to run them
+         * without Google Play Services. Null means Google Play Services.
+         * <p>
+         * Default: null
+         *
+         * @param backend backend instance
+         * @return builder instance
+         */
+        public Builder setBackend(@Nullable PlayServicesBackend backend) {
+            this.backend = backend;
+            return this;
+        }
+
         /**
          * Builds configuration instance
          *
@@ -0,0 +1,115 @@
+package pl.charmas.android.reactivelocation2.observables;
+
+import android.content.Context;
+import android.os.Handler;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.Api;
+
+import java.util.Arrays;
+import java.util.List;
+
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.functions.Action;
+import pl.charmas.android.reactivelocation2.observables.backend.PlayServicesBackend;
+import pl.charmas.android.reactivelocation2.observables.backend.PlayServicesClient;
+
+/**
+ * Connects a client of the configured {@link PlayServicesBackend} for every subscription.
+ * Observables that use only {@link PlayServicesClient} methods extend this class, so they work with
+ * any backend.
+ */
+public abstract class BaseClientObservableOnSubscribe<T> implements ObservableOnSubscribe<T> {
+    private final Context ctx;
+    private final Handler handler;
+    private final PlayServicesBackend backend;
+    private final List<Api<? extends Api.ApiOptions.NotRequiredOptions>> services;
+
+    @SafeVarargs
+    protected BaseClientObservableOnSubscribe(ObservableContext ctx, Api<? extends Api.ApiOptions.NotRequiredOptions>... services) {
+        this.ctx = ctx.getContext();
+        this.handler = ctx.getHandler();
+        this.backend = ctx.getBackend();
+        this.services = Arrays.asList(services);
+    }
+
+    @Override
+    public void subscribe(ObservableEmitter<T> emitter) throws Exception {
+        // connection callbacks and disposal come on different threads, the lock keeps a client
+        // from being set up by onClientReady after onDisposed already cleaned it up
+        final Object lock = new Object();
+        final PlayServicesClient client = backend.createClient(ctx, handler, services, new ClientConnectionCallbacks(emitter, lock));
+        try {
+            client.connect();
+        } catch (Throwable ex) {
+            if (!emitter.isDisposed()) {
+                emitter.onError(ex);
+            }
+        }
+
+        emitter.setDisposable(Disposables.fromAction(new Action() {
+            @Override
+            public void run() throws Exception {
+                synchronized (lock) {
+                    try {
+                        onDisposed(client);
+                    } finally {
+                        // a failed clean up must not keep the client connected
+                        client.disconnect();
+                    }
+                }
+            }
+        }));
+    }
+
+    protected abstract void onClientReady(PlayServicesClient client, ObservableEmitter<? super T> emitter);
+
+    protected void onDisposed(PlayServicesClient client) {
+    }
+
+    private class ClientConnectionCallbacks implements PlayServicesClient.ConnectionCallbacks {
+
+        final private ObservableEmitter<? super T> emitter;
+        final private Object lock;
+
+        private ClientConnectionCallbacks(ObservableEmitter<? super T> emitter, Object lock) {
+            this.emitter = emitter;
+            this.lock = lock;
+        }
+
+        @Override
+        public void onConnected(PlayServicesClient client) {
+            synchronized (lock) {
+                if (emitter.isDisposed()) {
+                    return;
+                }
+                try {
+                    onClientReady(client, emitter);
+                } catch (Throwable ex) {
+                    // calls fail when connection was suspended meanwhile, which is reported by
+                    // onConnectionSuspended, so it can be retried
+                    if (!emitter.isDisposed() && client.isConnected()) {
+                        emitter.onError(ex);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void onConnectionSuspended(int cause) {
+            if (!emitter.isDisposed()) {
+                emitter.onError(new GoogleAPIConnectionSuspendedException(cause));
+            }
+        }
+
+        @Override
+        public void onConnectionFailed(ConnectionResult connectionResult) {
+            if (!emitter.isDisposed()) {
+                emitter.onError(new GoogleAPIConnectionException("Error connecting to GoogleApiClient.",
+                    connectionResult));
+            }
+        }
+    }
+}
@@ -2,7 +2,7 @@ package pl.charmas.android.reactivelocation2.observables;
 
 import com.google.android.gms.location.LocationServices;
 
-public abstract class BaseLocationObservableOnSubscribe<T> extends BaseObservableOnSubscribe<T> {
+public abstract class BaseLocationObservableOnSubscribe<T> extends BaseClientObservableOnSubscribe<T> {
     protected BaseLocationObservableOnSubscribe(ObservableContext ctx) {
         super(ctx, LocationServices.API);
     }
@@ -0,0 +1,67 @@
+package pl.charmas.android.reactivelocation2.observables;
+
+/**
+ * Spherical earth helpers shared by location, geocode and geofence observables. All methods work
+ * on primitives so they can be used on hot paths without allocation.
+ */
+public final class GeoMath {
+    public static final double EARTH_RADIUS_METERS = 6371008.8;
+    public static final double METERS_PER_DEGREE = EARTH_RADIUS_METERS * Math.PI / 180.0;
+
+    private GeoMath() {
+        //no instance
+    }
+
+    /**
+     * Great circle distance between two points using haversine formula.
+     *
+     * @return distance in meters
+     */
+    public static double distanceMeters(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double sinLat = Math.sin(dLat / 2);
+        double sinLng = Math.sin(dLng / 2);
+        double a = sinLat * sinLat + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * sinLng * sinLng;
+        return 2 * EARTH_RADIUS_METERS * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    /**
+     * Computes point reached from start point after travelling given distance along given bearing.
+     *
+     * @param out array of at least two elements that receives latitude and longitude
+     */
+    public static void destination(double lat, double lng, double bearingDegrees, double distanceMeters, double[] out) {
+        double angular = distanceMeters / EARTH_RADIUS_METERS;
+        double bearing = Math.toRadians(bearingDegrees);
+        double lat1 = Math.toRadians(lat);
+        double lng1 = Math.toRadians(lng);
+        double sinLat2 = Math.sin(lat1) * Math.cos(angular) + Math.cos(lat1) * Math.sin(angular) * Math.cos(bearing);
+        double lat2 = Math.asin(sinLat2);
+        double lng2 = lng1 + Math.atan2(Math.sin(bearing) * Math.sin(angular) * Math.cos(lat1), Math.cos(angular) - Math.sin(lat1) * sinLat2);
+        out[0] = Math.toDegrees(lat2);
+        out[1] = normalizeLongitude(Math.toDegrees(lng2));
+    }
+
+    /**
+     * Initial bearing of great circle from first point to second point.
+     *
+     * @return bearing in degrees, between 0 and 360
+     */
+    public static double bearing(double lat1, double lng1, double lat2, double lng2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double y = Math.sin(dLng) * Math.cos(phi2);
+        double x = Math.cos(phi1) * Math.sin(phi2) - Math.sin(phi1) * Math.cos(phi2) * Math.cos(dLng);
+        double bearing = Math.toDegrees(Math.atan2(y, x));
+        return bearing < 0 ? bearing + 360 : bearing;
+    }
+
+    public static double normalizeLongitude(double lng) {
+        if (lng >= -180 && lng < 180) return lng;
+        double normalized = (lng + 180) % 360;
+        if (normalized < 0) normalized += 360;
+        return normalized - 180;
+    }
+}
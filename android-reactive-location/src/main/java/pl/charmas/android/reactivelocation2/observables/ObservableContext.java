@@ -4,16 +4,23 @@ import android.content.Context;
 import android.os.Handler;
 
 import pl.charmas.android.reactivelocation2.ReactiveLocationProviderConfiguration;
+import pl.charmas.android.reactivelocation2.observables.backend.GmsPlayServicesBackend;
+import pl.charmas.android.reactivelocation2.observables.backend.PlayServicesBackend;
+import pl.charmas.android.reactivelocation2.observables.geocode.ReverseGeocodeCache;
 
 public class ObservableContext {
     private final Context context;
     private final Handler handler;
     private final boolean retryOnConnectionSuspended;
+    private final ReverseGeocodeCache reverseGeocodeCache;
+    private final PlayServicesBackend backend;
 
     public ObservableContext(Context context, ReactiveLocationProviderConfiguration configuration) {
         this.context = context;
         this.handler = configuration.getCustomCallbackHandler();
         this.retryOnConnectionSuspended = configuration.isRetryOnConnectionSuspended();
+        this.reverseGeocodeCache = configuration.getReverseGeocodeCache();
+        this.backend = configuration.getBackend() != null ? configuration.getBackend() : GmsPlayServicesBackend.getInstance();
     }
 
     public Context getContext() {
@@ -27,4 +34,12 @@ public class ObservableContext {
     boolean isRetryOnConnectionSuspended() {
         return retryOnConnectionSuspended;
     }
+
+    public ReverseGeocodeCache getReverseGeocodeCache() {
+        return reverseGeocodeCache;
+    }
+
+    public PlayServicesBackend getBackend() {
+        return backend;
+    }
 }
@@ -0,0 +1,29 @@
+package pl.charmas.android.reactivelocation2.observables;
+
+import com.google.android.gms.common.api.Api;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import pl.charmas.android.reactivelocation2.observables.backend.PlayServicesClient;
+
+/**
+ * Emits connected client of the configured backend, it is disconnected on dispose.
+ */
+public class PlayServicesClientObservableOnSubscribe extends BaseClientObservableOnSubscribe<PlayServicesClient> {
+
+    @SafeVarargs
+    public static Observable<PlayServicesClient> create(ObservableContext context, ObservableFactory factory, Api<? extends Api.ApiOptions.NotRequiredOptions>... apis) {
+        return factory.createObservable(new PlayServicesClientObservableOnSubscribe(context, apis));
+    }
+
+    @SafeVarargs
+    private PlayServicesClientObservableOnSubscribe(ObservableContext ctx, Api<? extends Api.ApiOptions.NotRequiredOptions>... apis) {
+        super(ctx, apis);
+    }
+
+    @Override
+    protected void onClientReady(PlayServicesClient client, ObservableEmitter<? super PlayServicesClient> emitter) {
+        if (emitter.isDisposed()) return;
+        emitter.onNext(client);
+    }
+}
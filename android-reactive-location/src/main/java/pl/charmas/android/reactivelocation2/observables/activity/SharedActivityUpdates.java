@@ -0,0 +1,155 @@
+package pl.charmas.android.reactivelocation2.observables.activity;
+
+import android.os.SystemClock;
+
+import com.google.android.gms.location.ActivityRecognitionResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Cancellable;
+import io.reactivex.functions.Consumer;
+import pl.charmas.android.reactivelocation2.observables.ObservableContext;
+import pl.charmas.android.reactivelocation2.observables.ObservableFactory;
+
+/**
+ * Shares one activity recognition registration and one receiver between all subscribers. The
+ * registration uses the shortest interval requested by live subscribers and is replaced when it
+ * changes, every subscriber receives results downsampled to its own interval.
+ */
+public class SharedActivityUpdates {
+    private final ObservableContext ctx;
+    private final ObservableFactory factory;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private Registration registration;
+
+    public static SharedActivityUpdates create(ObservableContext ctx, ObservableFactory factory) {
+        return new SharedActivityUpdates(ctx, factory);
+    }
+
+    private SharedActivityUpdates(ObservableContext ctx, ObservableFactory factory) {
+        this.ctx = ctx;
+        this.factory = factory;
+    }
+
+    public Observable<ActivityRecognitionResult> observe(final int detectionIntervalMilliseconds) {
+        return Observable.create(new ObservableOnSubscribe<ActivityRecognitionResult>() {
+            @Override
+            public void subscribe(ObservableEmitter<ActivityRecognitionResult> emitter) throws Exception {
+                final Subscriber subscriber = new Subscriber(emitter, detectionIntervalMilliseconds);
+                add(subscriber);
+                // set after adding, an emitter disposed meanwhile cancels right away and removes
+                // the subscriber instead of leaving it holding the registration
+                emitter.setCancellable(new Cancellable() {
+                    @Override
+                    public void cancel() throws Exception {
+                        remove(subscriber);
+                    }
+                });
+            }
+        });
+    }
+
+    private synchronized void add(Subscriber subscriber) {
+        subscribers.add(subscriber);
+        updateRegistration();
+    }
+
+    private synchronized void remove(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            updateRegistration();
+        }
+    }
+
+    private void updateRegistration() {
+        int interval = Integer.MAX_VALUE;
+        for (Subscriber subscriber : subscribers) {
+            interval = Math.min(interval, subscriber.interval);
+        }
+        Registration previous = registration;
+        if (subscribers.isEmpty()) {
+            registration = null;
+        } else if (previous == null || previous.interval != interval) {
+            // new registration uses its own pending intent, so old one can be removed afterwards
+            register(interval);
+        } else {
+            return;
+        }
+        if (previous != null) {
+            previous.disposable.dispose();
+        }
+    }
+
+    private void register(int interval) {
+        final Registration next = new Registration(interval);
+        registration = next;
+        next.disposable = ActivityUpdatesObservableOnSubscribe.createObservable(ctx, factory, interval)
+                .subscribe(new Consumer<ActivityRecognitionResult>() {
+                    @Override
+                    public void accept(ActivityRecognitionResult result) throws Exception {
+                        dispatch(next, result);
+                    }
+                }, new Consumer<Throwable>() {
+                    @Override
+                    public void accept(Throwable throwable) throws Exception {
+                        onRegistrationError(next, throwable);
+                    }
+                });
+    }
+
+    private void dispatch(Registration source, ActivityRecognitionResult result) {
+        long now = SystemClock.elapsedRealtime();
+        // detection is not exact, so results that came slightly early are accepted too
+        long tolerance = source.interval / 2;
+        for (Subscriber subscriber : subscribers) {
+            subscriber.deliver(result, now, tolerance);
+        }
+    }
+
+    private void onRegistrationError(Registration failed, Throwable throwable) {
+        List<Subscriber> failedSubscribers;
+        synchronized (this) {
+            // error of replaced registration is not interesting to anyone
+            if (failed != registration) return;
+            failedSubscribers = new ArrayList<>(subscribers);
+            subscribers.clear();
+            registration = null;
+        }
+        for (Subscriber subscriber : failedSubscribers) {
+            subscriber.emitter.onError(throwable);
+        }
+    }
+
+    private static class Registration {
+        final int interval;
+        Disposable disposable;
+
+        Registration(int interval) {
+            this.interval = interval;
+        }
+    }
+
+    private static class Subscriber {
+        final ObservableEmitter<ActivityRecognitionResult> emitter;
+        final int interval;
+        private long lastDeliveryTime = Long.MIN_VALUE;
+
+        Subscriber(ObservableEmitter<ActivityRecognitionResult> emitter, int interval) {
+            this.emitter = emitter;
+            this.interval = interval;
+        }
+
+        void deliver(ActivityRecognitionResult result, long now, long tolerance) {
+            if (emitter.isDisposed()) return;
+            if (lastDeliveryTime != Long.MIN_VALUE && now - lastDeliveryTime < interval - tolerance) return;
+            lastDeliveryTime = now;
+            emitter.onNext(result);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package pl.charmas.android.reactivelocation2.observables.activity;
+
+import com.google.android.gms.location.ActivityRecognitionResult;
+import com.google.android.gms.location.DetectedActivity;
+
+import java.util.concurrent.Callable;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.functions.Function;
+import io.reactivex.functions.Predicate;
+
+/**
+ * Turns raw activity recognition results into a stable current activity. Confidences of the last
+ * results are kept in a primitive ring buffer and combined into exponentially weighted scores, so
+ * no allocation happens per result. New activity replaces current one only when its score is
+ * higher by given margin for given minimal duration.
+ * <p>
+ * Emits {@link DetectedActivity} with smoothed confidence, first one for the first result and then
+ * only on change. Please use builder to create an instance.
+ */
+public class SmoothedActivityTransformer implements ObservableTransformer<ActivityRecognitionResult, DetectedActivity> {
+    // covers all types defined by DetectedActivity, up to RUNNING
+    private static final int TYPE_COUNT = DetectedActivity.RUNNING + 1;
+
+    private final int windowSize;
+    private final double[] weights;
+    private final int margin;
+    private final long minDuration;
+
+    private SmoothedActivityTransformer(Builder builder) {
+        this.windowSize = builder.windowSize;
+        this.weights = new double[windowSize];
+        double weight = 1;
+        for (int age = 0; age < windowSize; age++) {
+            weights[age] = weight;
+            weight *= builder.decay;
+        }
+        this.margin = builder.margin;
+        this.minDuration = builder.minDuration;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public ObservableSource<DetectedActivity> apply(final Observable<ActivityRecognitionResult> upstream) {
+        return Observable.defer(new Callable<ObservableSource<DetectedActivity>>() {
+            @Override
+            public ObservableSource<DetectedActivity> call() throws Exception {
+                final SmoothingState state = new SmoothingState();
+                return upstream
+                        .filter(new Predicate<ActivityRecognitionResult>() {
+                            @Override
+                            public boolean test(ActivityRecognitionResult result) throws Exception {
+                                return state.update(result);
+                            }
+                        })
+                        .map(new Function<ActivityRecognitionResult, DetectedActivity>() {
+                            @Override
+                            public DetectedActivity apply(ActivityRecognitionResult result) throws Exception {
+                                return new DetectedActivity(state.current, (int) Math.round(state.scores[state.current]));
+                            }
+                        });
+            }
+        });
+    }
+
+    private class SmoothingState {
+        private final int[] confidences = new int[windowSize * TYPE_COUNT];
+        private final double[] scores = new double[TYPE_COUNT];
+        private int head = 0;
+        private int size = 0;
+        private int current = -1;
+        private int candidate = -1;
+        private long candidateSince;
+
+        /**
+         * @return true when current activity changed
+         */
+        boolean update(ActivityRecognitionResult result) {
+            head = (head + 1) % windowSize;
+            int offset = head * TYPE_COUNT;
+            for (int type = 0; type < TYPE_COUNT; type++) {
+                confidences[offset + type] = result.getActivityConfidence(type);
+            }
+            size = Math.min(size + 1, windowSize);
+            int best = computeScores();
+
+            if (current < 0) {
+                current = best;
+                return true;
+            }
+            if (best == current || scores[best] - scores[current] < margin) {
+                candidate = -1;
+                return false;
+            }
+            long time = result.getElapsedRealtimeMillis();
+            if (best != candidate) {
+                candidate = best;
+                candidateSince = time;
+            }
+            if (time - candidateSince < minDuration) {
+                return false;
+            }
+            current = best;
+            candidate = -1;
+            return true;
+        }
+
+        /**
+         * @return type with the highest score
+         */
+        private int computeScores() {
+            double totalWeight = 0;
+            for (int type = 0; type < TYPE_COUNT; type++) {
+                scores[type] = 0;
+            }
+            for (int age = 0; age < size; age++) {
+                int offset = ((head - age + windowSize) % windowSize) * TYPE_COUNT;
+                double weight = weights[age];
+                totalWeight += weight;
+                for (int type = 0; type < TYPE_COUNT; type++) {
+                    scores[type] += weight * confidences[offset + type];
+                }
+            }
+            int best = 0;
+            for (int type = 0; type < TYPE_COUNT; type++) {
+                scores[type] /= totalWeight;
+                if (scores[type] > scores[best]) {
+                    best = type;
+                }
+            }
+            return best;
+        }
+    }
+
+    public static class Builder {
+        private int windowSize = 6;
+        private double decay = 0.7;
+        private int margin = 10;
+        private long minDuration = 0;
+
+        /**
+         * Sets number of last results taken into account.
+         * <p>
+         * Default: 6
+         *
+         * @param windowSize number of results, at least 1
+         * @return builder instance
+         */
+        public Builder setWindowSize(int windowSize) {
+            if (windowSize < 1) {
+                throw new IllegalArgumentException("Window size must be at least 1");
+            }
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        /**
+         * Sets weight of a result relative to the next one, lower values favor recent results.
+         * <p>
+         * Default: 0.7
+         *
+         * @param decay weight between 0 and 1
+         * @return builder instance
+         */
+        public Builder setDecay(double decay) {
+            this.decay = decay;
+            return this;
+        }
+
+        /**
+         * Sets score difference new activity needs over current one.
+         * <p>
+         * Default: 10
+         *
+         * @param margin confidence points
+         * @return builder instance
+         */
+        public Builder setMargin(int margin) {
+            this.margin = margin;
+            return this;
+        }
+
+        /**
+         * Sets time new activity has to keep its margin before it replaces current one.
+         * <p>
+         * Default: 0
+         *
+         * @param minDurationMillis time in milliseconds
+         * @return builder instance
+         */
+        public Builder setMinDuration(long minDurationMillis) {
+            this.minDuration = minDurationMillis;
+            return this;
+        }
+
+        /**
+         * Builds transformer instance
+         *
+         * @return transformer instance
+         */
+        public SmoothedActivityTransformer build() {
+            return new SmoothedActivityTransformer(this);
+        }
+    }
+}
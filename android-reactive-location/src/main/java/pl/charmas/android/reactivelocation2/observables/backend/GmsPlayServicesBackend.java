@@ -0,0 +1,253 @@
+package pl.charmas.android.reactivelocation2.observables.backend;
+
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.location.Location;
+import android.os.Bundle;
+import android.os.Handler;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.Api;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.location.ActivityRecognition;
+import com.google.android.gms.location.ActivityRecognitionResult;
+import com.google.android.gms.location.GeofencingEvent;
+import com.google.android.gms.location.GeofencingRequest;
+import com.google.android.gms.location.LocationListener;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationServices;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Backend that connects {@link GoogleApiClient} and calls Google Play Services.
+ */
+@SuppressWarnings("MissingPermission")
+public class GmsPlayServicesBackend implements PlayServicesBackend {
+    private static final String ACTION_GEOFENCE_TRANSITION = "pl.charmas.android.reactivelocation2.ACTION_GEOFENCE_TRANSITION";
+    private static final String ACTION_ACTIVITY_DETECTED = "pl.charmas.android.reactivelocation2.ACTION_ACTIVITY_UPDATE_DETECTED";
+    private static final AtomicInteger NEXT_REQUEST_CODE = new AtomicInteger();
+
+    private static final GmsPlayServicesBackend INSTANCE = new GmsPlayServicesBackend();
+
+    public static GmsPlayServicesBackend getInstance() {
+        return INSTANCE;
+    }
+
+    private GmsPlayServicesBackend() {
+    }
+
+    @Override
+    public PlayServicesClient createClient(Context context, @Nullable Handler handler,
+                                           List<Api<? extends Api.ApiOptions.NotRequiredOptions>> services,
+                                           PlayServicesClient.ConnectionCallbacks callbacks) {
+        return new GmsClient(context, handler, services, callbacks);
+    }
+
+    private static class GmsClient implements PlayServicesClient, GoogleApiClient.ConnectionCallbacks, GoogleApiClient.OnConnectionFailedListener {
+        private final Context context;
+        private final PlayServicesClient.ConnectionCallbacks callbacks;
+        private final GoogleApiClient apiClient;
+        private final Map<Object, Receiver> receivers = new HashMap<>();
+
+        GmsClient(Context context, Handler handler, List<Api<? extends Api.ApiOptions.NotRequiredOptions>> services,
+                  PlayServicesClient.ConnectionCallbacks callbacks) {
+            this.context = context;
+            this.callbacks = callbacks;
+            GoogleApiClient.Builder apiClientBuilder = new GoogleApiClient.Builder(context);
+
+            for (Api<? extends Api.ApiOptions.NotRequiredOptions> service : services) {
+                apiClientBuilder = apiClientBuilder.addApi(service);
+            }
+
+            apiClientBuilder = apiClientBuilder
+                    .addConnectionCallbacks(this)
+                    .addOnConnectionFailedListener(this);
+
+            if (handler != null) {
+                apiClientBuilder = apiClientBuilder.setHandler(handler);
+            }
+
+            this.apiClient = apiClientBuilder.build();
+        }
+
+        @Override
+        public void onConnected(@Nullable Bundle bundle) {
+            callbacks.onConnected(this);
+        }
+
+        @Override
+        public void onConnectionSuspended(int cause) {
+            callbacks.onConnectionSuspended(cause);
+        }
+
+        @Override
+        public void onConnectionFailed(@NonNull ConnectionResult connectionResult) {
+            callbacks.onConnectionFailed(connectionResult);
+        }
+
+        @Override
+        public void connect() {
+            apiClient.connect();
+        }
+
+        @Override
+        public void disconnect() {
+            apiClient.disconnect();
+        }
+
+        @Override
+        public boolean isConnected() {
+            return apiClient.isConnected();
+        }
+
+        @Override
+        public GoogleApiClient getGoogleApiClient() {
+            return apiClient;
+        }
+
+        @Override
+        public Location getLastLocation() {
+            return LocationServices.FusedLocationApi.getLastLocation(apiClient);
+        }
+
+        @Override
+        public void requestLocationUpdates(LocationRequest request, LocationListener listener, @Nullable ResultCallback<Status> callback) {
+            setCallback(LocationServices.FusedLocationApi.requestLocationUpdates(apiClient, request, listener), callback);
+        }
+
+        @Override
+        public void requestLocationUpdates(LocationRequest request, PendingIntent intent, @Nullable ResultCallback<Status> callback) {
+            setCallback(LocationServices.FusedLocationApi.requestLocationUpdates(apiClient, request, intent), callback);
+        }
+
+        @Override
+        public void removeLocationUpdates(LocationListener listener, @Nullable ResultCallback<Status> callback) {
+            setCallback(LocationServices.FusedLocationApi.removeLocationUpdates(apiClient, listener), callback);
+        }
+
+        @Override
+        public void removeLocationUpdates(PendingIntent intent, @Nullable ResultCallback<Status> callback) {
+            setCallback(LocationServices.FusedLocationApi.removeLocationUpdates(apiClient, intent), callback);
+        }
+
+        @Override
+        public void setMockMode(boolean isMockMode, @Nullable ResultCallback<Status> callback) {
+            setCallback(LocationServices.FusedLocationApi.setMockMode(apiClient, isMockMode), callback);
+        }
+
+        @Override
+        public void setMockLocation(Location location, @Nullable ResultCallback<Status> callback) {
+            setCallback(LocationServices.FusedLocationApi.setMockLocation(apiClient, location), callback);
+        }
+
+        @Override
+        public void addGeofences(GeofencingRequest request, PendingIntent intent, @Nullable ResultCallback<Status> callback) {
+            setCallback(LocationServices.GeofencingApi.addGeofences(apiClient, request, intent), callback);
+        }
+
+        @Override
+        public void addGeofences(GeofencingRequest request, final GeofenceListener listener, @Nullable ResultCallback<Status> callback) {
+            // every listener gets its own action and intent so removing one does not touch others
+            Receiver receiver = register(listener, ACTION_GEOFENCE_TRANSITION, new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    GeofencingEvent event = GeofencingEvent.fromIntent(intent);
+                    if (event != null) {
+                        listener.onGeofencingEvent(event);
+                    }
+                }
+            });
+            addGeofences(request, receiver.intent, callback);
+        }
+
+        @Override
+        public void removeGeofences(PendingIntent intent, @Nullable ResultCallback<Status> callback) {
+            setCallback(LocationServices.GeofencingApi.removeGeofences(apiClient, intent), callback);
+        }
+
+        @Override
+        public void removeGeofences(List<String> requestIds, @Nullable ResultCallback<Status> callback) {
+            setCallback(LocationServices.GeofencingApi.removeGeofences(apiClient, requestIds), callback);
+        }
+
+        @Override
+        public void removeGeofences(GeofenceListener listener, @Nullable ResultCallback<Status> callback) {
+            Receiver receiver = unregister(listener);
+            if (receiver != null && apiClient.isConnected()) {
+                removeGeofences(receiver.intent, callback);
+            }
+        }
+
+        @Override
+        public void requestActivityUpdates(long detectionIntervalMillis, final ActivityListener listener, @Nullable ResultCallback<Status> callback) {
+            Receiver receiver = register(listener, ACTION_ACTIVITY_DETECTED, new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    if (ActivityRecognitionResult.hasResult(intent)) {
+                        listener.onActivityRecognitionResult(ActivityRecognitionResult.extractResult(intent));
+                    }
+                }
+            });
+            setCallback(ActivityRecognition.ActivityRecognitionApi.requestActivityUpdates(apiClient, detectionIntervalMillis, receiver.intent), callback);
+        }
+
+        @Override
+        public void removeActivityUpdates(ActivityListener listener, @Nullable ResultCallback<Status> callback) {
+            Receiver receiver = unregister(listener);
+            if (receiver != null && apiClient.isConnected()) {
+                setCallback(ActivityRecognition.ActivityRecognitionApi.removeActivityUpdates(apiClient, receiver.intent), callback);
+            }
+        }
+
+        private synchronized Receiver register(Object listener, String actionPrefix, BroadcastReceiver broadcastReceiver) {
+            Receiver previous = receivers.remove(listener);
+            if (previous != null) {
+                context.unregisterReceiver(previous.receiver);
+            }
+            int requestCode = NEXT_REQUEST_CODE.incrementAndGet();
+            String action = actionPrefix + "." + requestCode;
+            context.registerReceiver(broadcastReceiver, new IntentFilter(action));
+            Intent intent = new Intent(action).setPackage(context.getPackageName());
+            Receiver receiver = new Receiver(broadcastReceiver,
+                    PendingIntent.getBroadcast(context, requestCode, intent, PendingIntent.FLAG_UPDATE_CURRENT));
+            receivers.put(listener, receiver);
+            return receiver;
+        }
+
+        private synchronized Receiver unregister(Object listener) {
+            Receiver receiver = receivers.remove(listener);
+            if (receiver != null) {
+                context.unregisterReceiver(receiver.receiver);
+            }
+            return receiver;
+        }
+
+        private static void setCallback(PendingResult<Status> result, @Nullable ResultCallback<Status> callback) {
+            if (callback != null) {
+                result.setResultCallback(callback);
+            }
+        }
+    }
+
+    private static class Receiver {
+        final BroadcastReceiver receiver;
+        final PendingIntent intent;
+
+        Receiver(BroadcastReceiver receiver, PendingIntent intent) {
+            this.receiver = receiver;
+            this.intent = intent;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package pl.charmas.android.reactivelocation2.observables.backend;
+
+import android.content.Context;
+import android.os.Handler;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.common.api.Api;
+
+import java.util.List;
+
+/**
+ * Creates clients that observables use instead of calling Google Play Services directly. Default
+ * is {@link GmsPlayServicesBackend}, {@code FakePlayServicesBackend} of the benchmark module runs
+ * without a device.
+ */
+public interface PlayServicesBackend {
+
+    /**
+     * Creates client that is not connected yet.
+     *
+     * @param context   context of the provider
+     * @param handler   custom callback handler of the provider, may be ignored by the backend
+     * @param services  apis the client has to provide
+     * @param callbacks receives connection state of the client
+     * @return client instance
+     */
+    PlayServicesClient createClient(Context context, @Nullable Handler handler,
+                                    List<Api<? extends Api.ApiOptions.NotRequiredOptions>> services,
+                                    PlayServicesClient.ConnectionCallbacks callbacks);
+}
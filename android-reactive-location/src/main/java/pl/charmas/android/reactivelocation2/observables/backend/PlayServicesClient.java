@@ -0,0 +1,98 @@
+package pl.charmas.android.reactivelocation2.observables.backend;
+
+import android.app.PendingIntent;
+import android.location.Location;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.location.ActivityRecognitionResult;
+import com.google.android.gms.location.GeofencingEvent;
+import com.google.android.gms.location.GeofencingRequest;
+import com.google.android.gms.location.LocationListener;
+import com.google.android.gms.location.LocationRequest;
+
+import java.util.List;
+
+/**
+ * Connection to location services created by {@link PlayServicesBackend}. Methods mirror
+ * {@link com.google.android.gms.location.FusedLocationProviderApi},
+ * {@link com.google.android.gms.location.GeofencingApi} and
+ * {@link com.google.android.gms.location.ActivityRecognitionApi}, their status is passed to given
+ * callback, which may be null when result is not interesting.
+ * <p>
+ * Geofence transitions and activity results can be received by listeners, so the backend owns
+ * pending intents and receivers needed to deliver them.
+ */
+public interface PlayServicesClient {
+
+    void connect();
+
+    void disconnect();
+
+    boolean isConnected();
+
+    /**
+     * @return connected Google API client, or null when backend does not use Google Play Services
+     */
+    @Nullable
+    GoogleApiClient getGoogleApiClient();
+
+    @Nullable
+    Location getLastLocation();
+
+    void requestLocationUpdates(LocationRequest request, LocationListener listener, @Nullable ResultCallback<Status> callback);
+
+    void requestLocationUpdates(LocationRequest request, PendingIntent intent, @Nullable ResultCallback<Status> callback);
+
+    void removeLocationUpdates(LocationListener listener, @Nullable ResultCallback<Status> callback);
+
+    void removeLocationUpdates(PendingIntent intent, @Nullable ResultCallback<Status> callback);
+
+    void setMockMode(boolean isMockMode, @Nullable ResultCallback<Status> callback);
+
+    void setMockLocation(Location location, @Nullable ResultCallback<Status> callback);
+
+    void addGeofences(GeofencingRequest request, PendingIntent intent, @Nullable ResultCallback<Status> callback);
+
+    void addGeofences(GeofencingRequest request, GeofenceListener listener, @Nullable ResultCallback<Status> callback);
+
+    void removeGeofences(PendingIntent intent, @Nullable ResultCallback<Status> callback);
+
+    void removeGeofences(List<String> requestIds, @Nullable ResultCallback<Status> callback);
+
+    /**
+     * Removes all geofences added with given listener and stops delivering transitions to it. When
+     * client is no longer connected only the delivery is stopped and callback is not called.
+     */
+    void removeGeofences(GeofenceListener listener, @Nullable ResultCallback<Status> callback);
+
+    void requestActivityUpdates(long detectionIntervalMillis, ActivityListener listener, @Nullable ResultCallback<Status> callback);
+
+    /**
+     * Removes activity updates of given listener and stops delivering results to it. When client is
+     * no longer connected only the delivery is stopped and callback is not called.
+     */
+    void removeActivityUpdates(ActivityListener listener, @Nullable ResultCallback<Status> callback);
+
+    interface ConnectionCallbacks {
+        void onConnected(PlayServicesClient client);
+
+        void onConnectionSuspended(int cause);
+
+        void onConnectionFailed(ConnectionResult result);
+    }
+
+    interface GeofenceListener {
+        /**
+         * @param event geofencing event, which may carry an error
+         */
+        void onGeofencingEvent(GeofencingEvent event);
+    }
+
+    interface ActivityListener {
+        void onActivityRecognitionResult(ActivityRecognitionResult result);
+    }
+}
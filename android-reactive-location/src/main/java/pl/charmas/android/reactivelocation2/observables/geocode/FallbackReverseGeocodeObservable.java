@@ -64,7 +64,6 @@ class FallbackReverseGeocodeObservable implements ObservableOnSubscribe<List<Add
         ));
         HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
         StringBuilder stringBuilder = new StringBuilder();
-        List<Address> outResult = new ArrayList<>();
 
         try {
             BufferedReader reader = new BufferedReader(new InputStreamReader(urlConnection.getInputStream(), "UTF-8"));
@@ -72,84 +71,95 @@ class FallbackReverseGeocodeObservable implements ObservableOnSubscribe<List<Add
             while ((line = reader.readLine()) != null) {
                 stringBuilder.append(line);
             }
+        } finally {
+            urlConnection.disconnect();
+        }
 
-            // Root json response object
-            JSONObject jsonRootObject = new JSONObject(stringBuilder.toString());
+        return parseResponse(stringBuilder.toString(), maxResults);
+    }
 
-            // No results status
-            if ("ZERO_RESULTS".equalsIgnoreCase(jsonRootObject.getString("status"))) {
-                return Collections.emptyList();
-            }
+    /**
+     * Parses response of the Google Geocode API.
+     *
+     * @return List of at most maxResults addresses
+     * @throws JSONException In case of problems while parsing the json response
+     */
+    static List<Address> parseResponse(String response, int maxResults) throws JSONException {
+        List<Address> outResult = new ArrayList<>();
 
-            // Other non-OK responses status
-            if (!"OK".equalsIgnoreCase(jsonRootObject.getString("status"))) {
-                throw new RuntimeException("Wrong API response");
-            }
+        // Root json response object
+        JSONObject jsonRootObject = new JSONObject(response);
 
-            // Process results
-            JSONArray results = jsonRootObject.getJSONArray("results");
-            for (int i = 0; i < results.length() && i < maxResults; i++) {
-                Address address = new Address(Locale.getDefault());
-                String addressLineString = "";
-                JSONObject sourceResult = results.getJSONObject(i);
-                JSONArray addressComponents = sourceResult.getJSONArray("address_components");
-
-                // Assemble address by various components
-                for (int ac = 0; ac < addressComponents.length(); ac++) {
-                    String longNameVal = addressComponents.getJSONObject(ac).getString("long_name");
-                    String shortNameVal = addressComponents.getJSONObject(ac).getString("short_name");
-                    JSONArray acTypes = addressComponents.getJSONObject(ac).getJSONArray("types");
-                    String acType = acTypes.getString(0);
-
-                    if (!TextUtils.isEmpty(longNameVal)) {
-                        if (acType.equalsIgnoreCase("street_number")) {
-                            if (TextUtils.isEmpty(addressLineString)) {
-                                addressLineString = longNameVal;
-                            } else {
-                                addressLineString += " " + longNameVal;
-                            }
-                        } else if (acType.equalsIgnoreCase("route")) {
-                            if (TextUtils.isEmpty(addressLineString)) {
-                                addressLineString = longNameVal;
-                            } else {
-                                addressLineString = longNameVal + " " + addressLineString;
-                            }
-                        } else if (acType.equalsIgnoreCase("sublocality")) {
-                            address.setSubLocality(longNameVal);
-                        } else if (acType.equalsIgnoreCase("locality")) {
-                            address.setLocality(longNameVal);
-                        } else if (acType.equalsIgnoreCase("administrative_area_level_2")) {
-                            address.setSubAdminArea(longNameVal);
-                        } else if (acType.equalsIgnoreCase("administrative_area_level_1")) {
-                            address.setAdminArea(longNameVal);
-                        } else if (acType.equalsIgnoreCase("country")) {
-                            address.setCountryName(longNameVal);
-                            address.setCountryCode(shortNameVal);
-                        } else if (acType.equalsIgnoreCase("postal_code")) {
-                            address.setPostalCode(longNameVal);
+        // No results status
+        if ("ZERO_RESULTS".equalsIgnoreCase(jsonRootObject.getString("status"))) {
+            return Collections.emptyList();
+        }
+
+        // Other non-OK responses status
+        if (!"OK".equalsIgnoreCase(jsonRootObject.getString("status"))) {
+            throw new RuntimeException("Wrong API response");
+        }
+
+        // Process results
+        JSONArray results = jsonRootObject.getJSONArray("results");
+        for (int i = 0; i < results.length() && i < maxResults; i++) {
+            Address address = new Address(Locale.getDefault());
+            String addressLineString = "";
+            JSONObject sourceResult = results.getJSONObject(i);
+            JSONArray addressComponents = sourceResult.getJSONArray("address_components");
+
+            // Assemble address by various components
+            for (int ac = 0; ac < addressComponents.length(); ac++) {
+                String longNameVal = addressComponents.getJSONObject(ac).getString("long_name");
+                String shortNameVal = addressComponents.getJSONObject(ac).getString("short_name");
+                JSONArray acTypes = addressComponents.getJSONObject(ac).getJSONArray("types");
+                String acType = acTypes.getString(0);
+
+                if (!TextUtils.isEmpty(longNameVal)) {
+                    if (acType.equalsIgnoreCase("street_number")) {
+                        if (TextUtils.isEmpty(addressLineString)) {
+                            addressLineString = longNameVal;
+                        } else {
+                            addressLineString += " " + longNameVal;
+                        }
+                    } else if (acType.equalsIgnoreCase("route")) {
+                        if (TextUtils.isEmpty(addressLineString)) {
+                            addressLineString = longNameVal;
+                        } else {
+                            addressLineString = longNameVal + " " + addressLineString;
                         }
+                    } else if (acType.equalsIgnoreCase("sublocality")) {
+                        address.setSubLocality(longNameVal);
+                    } else if (acType.equalsIgnoreCase("locality")) {
+                        address.setLocality(longNameVal);
+                    } else if (acType.equalsIgnoreCase("administrative_area_level_2")) {
+                        address.setSubAdminArea(longNameVal);
+                    } else if (acType.equalsIgnoreCase("administrative_area_level_1")) {
+                        address.setAdminArea(longNameVal);
+                    } else if (acType.equalsIgnoreCase("country")) {
+                        address.setCountryName(longNameVal);
+                        address.setCountryCode(shortNameVal);
+                    } else if (acType.equalsIgnoreCase("postal_code")) {
+                        address.setPostalCode(longNameVal);
                     }
                 }
+            }
 
-                // Try to get the already formatted address
-                String formattedAddress = sourceResult.getString("formatted_address");
-                if (!TextUtils.isEmpty(formattedAddress)) {
-                    String[] formattedAddressLines = formattedAddress.split(",");
+            // Try to get the already formatted address
+            String formattedAddress = sourceResult.getString("formatted_address");
+            if (!TextUtils.isEmpty(formattedAddress)) {
+                String[] formattedAddressLines = formattedAddress.split(",");
 
-                    for (int ia = 0; ia < formattedAddressLines.length; ia++) {
-                        address.setAddressLine(ia, formattedAddressLines[ia].trim());
-                    }
-                } else if (!TextUtils.isEmpty(addressLineString)) {
-                    // If that fails use our manually assembled formatted address
-                    address.setAddressLine(0, addressLineString);
+                for (int ia = 0; ia < formattedAddressLines.length; ia++) {
+                    address.setAddressLine(ia, formattedAddressLines[ia].trim());
                 }
-
-                // Finally add address to resulting set
-                outResult.add(address);
+            } else if (!TextUtils.isEmpty(addressLineString)) {
+                // If that fails use our manually assembled formatted address
+                address.setAddressLine(0, addressLineString);
             }
 
-        } finally {
-            urlConnection.disconnect();
+            // Finally add address to resulting set
+            outResult.add(address);
         }
 
         return Collections.unmodifiableList(outResult);
@@ -0,0 +1,81 @@
+package pl.charmas.android.reactivelocation2.observables.geocode;
+
+import pl.charmas.android.reactivelocation2.observables.GeoMath;
+
+/**
+ * Walks cells of {@link ReverseGeocodeCache} crossed by a straight segment in degree space, one by
+ * one in path order and without allocation. The walk steps to whichever cell boundary the segment
+ * crosses first, so no crossed cell is skipped however short the cells are. Segment crossing the
+ * antimeridian continues on its other side.
+ */
+final class PathCells {
+    private final double scale;
+
+    private long cellLat;
+    private long cellLng;
+    private int stepLat;
+    private int stepLng;
+    // fraction of the segment at which the next boundary of each axis is crossed
+    private double nextLat;
+    private double nextLng;
+    private double deltaLat;
+    private double deltaLng;
+
+    /**
+     * @param scale cells per degree, see {@link ReverseGeocodeCache#scale(int)}
+     */
+    PathCells(double scale) {
+        this.scale = scale;
+    }
+
+    /**
+     * Starts a walk in the cell of the start point.
+     */
+    void start(double lat, double lng, double endLat, double endLng) {
+        double startY = lat * scale;
+        double startX = lng * scale;
+        double dy = (endLat - lat) * scale;
+        double dx = GeoMath.normalizeLongitude(endLng - lng) * scale;
+        cellLat = (long) Math.floor(startY);
+        cellLng = (long) Math.floor(startX);
+        stepLat = dy > 0 ? 1 : -1;
+        stepLng = dx > 0 ? 1 : -1;
+        deltaLat = dy != 0 ? Math.abs(1 / dy) : Double.POSITIVE_INFINITY;
+        deltaLng = dx != 0 ? Math.abs(1 / dx) : Double.POSITIVE_INFINITY;
+        nextLat = dy > 0 ? (cellLat + 1 - startY) / dy : dy < 0 ? (cellLat - startY) / dy : Double.POSITIVE_INFINITY;
+        nextLng = dx > 0 ? (cellLng + 1 - startX) / dx : dx < 0 ? (cellLng - startX) / dx : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Moves to the next crossed cell.
+     *
+     * @return false when the segment ends in the current cell
+     */
+    boolean next() {
+        if (Math.min(nextLat, nextLng) > 1) {
+            return false;
+        }
+        if (nextLat < nextLng) {
+            cellLat += stepLat;
+            nextLat += deltaLat;
+        } else {
+            cellLng += stepLng;
+            nextLng += deltaLng;
+        }
+        return true;
+    }
+
+    /**
+     * @return latitude of the center of the current cell
+     */
+    double latitude() {
+        return (cellLat + 0.5) / scale;
+    }
+
+    /**
+     * @return longitude of the center of the current cell
+     */
+    double longitude() {
+        return GeoMath.normalizeLongitude((cellLng + 0.5) / scale);
+    }
+}
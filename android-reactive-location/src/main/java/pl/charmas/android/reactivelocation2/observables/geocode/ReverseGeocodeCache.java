@@ -0,0 +1,439 @@
+package pl.charmas.android.reactivelocation2.observables.geocode;
+
+import android.location.Address;
+import android.support.annotation.Nullable;
+import android.util.LruCache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Cache of reverse geocode results. Coordinates are snapped to cells of a fixed decimal degree
+ * precision, so every location within a cell is served by the same result. Please use builder to
+ * create an instance and pass it to
+ * {@link pl.charmas.android.reactivelocation2.ReactiveLocationProviderConfiguration.Builder#setReverseGeocodeCache(ReverseGeocodeCache)}.
+ * <p>
+ * Results are kept in memory and, when disk cache directory is set, on disk. Cells stored with
+ * coarser precision, for example by region warm-up, are used when there is no result for the
+ * cache precision.
+ */
+public class ReverseGeocodeCache {
+    static final int MAX_CELL_PRECISION = 6;
+    private static final long LAT_OFFSET = 90000000L;
+    private static final long LNG_OFFSET = 180000000L;
+    private static final int LNG_BITS = 30;
+    private static final int PRECISION_SHIFT = 58;
+    private static final int DISK_FORMAT_VERSION = 1;
+
+    private final int cellPrecision;
+    private final LruCache<CellKey, Entry> memory;
+    private final File diskDirectory;
+    private final Set<CellKey> pending = new HashSet<>();
+    private volatile int memoryPrecisions;
+
+    private ReverseGeocodeCache(Builder builder) {
+        this.cellPrecision = builder.cellPrecision;
+        this.memory = new LruCache<>(builder.maxEntries);
+        this.diskDirectory = builder.diskDirectory;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int getCellPrecision() {
+        return cellPrecision;
+    }
+
+    /**
+     * Returns cached addresses for cell containing given coordinates. When disk cache is enabled
+     * this method may perform I/O and should not be called on main thread.
+     *
+     * @return cached addresses or null when there is no result good enough for requested number of addresses
+     */
+    @Nullable
+    public List<Address> get(Locale locale, double lat, double lng, int maxResults) {
+        for (int precision = cellPrecision; precision >= 0; precision--) {
+            List<Address> addresses = get(locale, cellOf(lat, lng, precision), maxResults);
+            if (addresses != null) {
+                return addresses;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stores addresses obtained for given coordinates in the cell containing them.
+     */
+    public void put(Locale locale, double lat, double lng, int maxResults, List<Address> addresses) {
+        put(locale, cellOf(lat, lng, cellPrecision), maxResults, addresses);
+    }
+
+    /**
+     * Removes all results from memory and disk.
+     */
+    public void clear() {
+        memory.evictAll();
+        memoryPrecisions = 0;
+        if (diskDirectory != null) {
+            deleteRecursively(diskDirectory);
+        }
+    }
+
+    @Nullable
+    List<Address> get(Locale locale, long cell, int maxResults) {
+        CellKey key = new CellKey(cell, locale);
+        Entry entry = null;
+        if ((memoryPrecisions & (1 << precisionOf(cell))) != 0) {
+            entry = memory.get(key);
+        }
+        if (entry == null && diskDirectory != null) {
+            entry = readFromDisk(key);
+            if (entry != null) {
+                putInMemory(key, entry);
+            }
+        }
+        if (entry == null || !entry.satisfies(maxResults)) {
+            return null;
+        }
+        return entry.addresses.size() > maxResults ? entry.addresses.subList(0, maxResults) : entry.addresses;
+    }
+
+    void put(Locale locale, long cell, int maxResults, List<Address> addresses) {
+        CellKey key = new CellKey(cell, locale);
+        Entry entry = new Entry(maxResults, addresses);
+        putInMemory(key, entry);
+        if (diskDirectory != null) {
+            writeToDisk(key, entry);
+        }
+    }
+
+    /**
+     * Checks memory tier only, so it is safe to call on any thread.
+     */
+    boolean isInMemory(Locale locale, double lat, double lng, int maxResults) {
+        for (int precision = cellPrecision; precision >= 0; precision--) {
+            if ((memoryPrecisions & (1 << precision)) == 0) continue;
+            Entry entry = memory.get(new CellKey(cellOf(lat, lng, precision), locale));
+            if (entry != null && entry.satisfies(maxResults)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Marks cell as being fetched.
+     *
+     * @return false when cell is already being fetched
+     */
+    boolean markPending(Locale locale, double lat, double lng) {
+        synchronized (pending) {
+            return pending.add(new CellKey(cellOf(lat, lng, cellPrecision), locale));
+        }
+    }
+
+    void clearPending(Locale locale, double lat, double lng) {
+        synchronized (pending) {
+            pending.remove(new CellKey(cellOf(lat, lng, cellPrecision), locale));
+        }
+    }
+
+    private void putInMemory(CellKey key, Entry entry) {
+        memory.put(key, entry);
+        synchronized (this) {
+            memoryPrecisions |= 1 << precisionOf(key.cell);
+        }
+    }
+
+    /**
+     * Packs precision and cell indexes of given coordinates into single key.
+     */
+    static long cellOf(double lat, double lng, int precision) {
+        double scale = scale(precision);
+        long latIndex = (long) Math.floor(lat * scale);
+        long lngIndex = (long) Math.floor(lng * scale);
+        return cellOf(latIndex, lngIndex, precision);
+    }
+
+    static long cellOf(long latIndex, long lngIndex, int precision) {
+        return ((long) precision << PRECISION_SHIFT) | ((latIndex + LAT_OFFSET) << LNG_BITS) | (lngIndex + LNG_OFFSET);
+    }
+
+    static int precisionOf(long cell) {
+        return (int) (cell >>> PRECISION_SHIFT);
+    }
+
+    static double scale(int precision) {
+        double scale = 1;
+        for (int i = 0; i < precision; i++) {
+            scale *= 10;
+        }
+        return scale;
+    }
+
+    static void checkCellPrecision(int cellPrecision) {
+        if (cellPrecision < 0 || cellPrecision > MAX_CELL_PRECISION) {
+            throw new IllegalArgumentException("Cell precision must be between 0 and " + MAX_CELL_PRECISION);
+        }
+    }
+
+    private File fileFor(CellKey key) {
+        String localeDir = key.locale != null ? key.locale.toString() : "default";
+        return new File(new File(diskDirectory, localeDir), Long.toHexString(key.cell));
+    }
+
+    @Nullable
+    private Entry readFromDisk(CellKey key) {
+        File file = fileFor(key);
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != DISK_FORMAT_VERSION) {
+                return null;
+            }
+            int maxResults = in.readInt();
+            int count = in.readInt();
+            List<Address> addresses = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                addresses.add(readAddress(in, key.locale));
+            }
+            return new Entry(maxResults, Collections.unmodifiableList(addresses));
+        } catch (IOException e) {
+            // corrupted entry is treated as missing and overwritten with next result
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private void writeToDisk(CellKey key, Entry entry) {
+        File file = fileFor(key);
+        File dir = file.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            return;
+        }
+        // prefetcher and warm-up may write the same cell at once, each write gets own temporary
+        // file so only complete entries are renamed into place
+        File tmp;
+        try {
+            tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        } catch (IOException e) {
+            return;
+        }
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeInt(DISK_FORMAT_VERSION);
+            out.writeInt(entry.maxResults);
+            out.writeInt(entry.addresses.size());
+            for (Address address : entry.addresses) {
+                writeAddress(out, address);
+            }
+            out.close();
+            out = null;
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+            }
+        } catch (IOException e) {
+            // disk tier is best effort, memory tier still holds the result
+            tmp.delete();
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private static void writeAddress(DataOutputStream out, Address address) throws IOException {
+        int lines = address.getMaxAddressLineIndex() + 1;
+        out.writeInt(lines);
+        for (int i = 0; i < lines; i++) {
+            writeString(out, address.getAddressLine(i));
+        }
+        writeString(out, address.getFeatureName());
+        writeString(out, address.getAdminArea());
+        writeString(out, address.getSubAdminArea());
+        writeString(out, address.getLocality());
+        writeString(out, address.getSubLocality());
+        writeString(out, address.getThoroughfare());
+        writeString(out, address.getSubThoroughfare());
+        writeString(out, address.getPremises());
+        writeString(out, address.getPostalCode());
+        writeString(out, address.getCountryCode());
+        writeString(out, address.getCountryName());
+        out.writeBoolean(address.hasLatitude() && address.hasLongitude());
+        if (address.hasLatitude() && address.hasLongitude()) {
+            out.writeDouble(address.getLatitude());
+            out.writeDouble(address.getLongitude());
+        }
+    }
+
+    private static Address readAddress(DataInputStream in, Locale locale) throws IOException {
+        Address address = new Address(locale != null ? locale : Locale.getDefault());
+        int lines = in.readInt();
+        for (int i = 0; i < lines; i++) {
+            address.setAddressLine(i, readString(in));
+        }
+        address.setFeatureName(readString(in));
+        address.setAdminArea(readString(in));
+        address.setSubAdminArea(readString(in));
+        address.setLocality(readString(in));
+        address.setSubLocality(readString(in));
+        address.setThoroughfare(readString(in));
+        address.setSubThoroughfare(readString(in));
+        address.setPremises(readString(in));
+        address.setPostalCode(readString(in));
+        address.setCountryCode(readString(in));
+        address.setCountryName(readString(in));
+        if (in.readBoolean()) {
+            address.setLatitude(in.readDouble());
+            address.setLongitude(in.readDouble());
+        }
+        return address;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static class Entry {
+        private final int maxResults;
+        private final List<Address> addresses;
+
+        Entry(int maxResults, List<Address> addresses) {
+            this.maxResults = maxResults;
+            this.addresses = addresses != null ? addresses : Collections.<Address>emptyList();
+        }
+
+        boolean satisfies(int requestedResults) {
+            // fewer addresses than asked for means there are no more to fetch
+            return maxResults >= requestedResults || addresses.size() < maxResults;
+        }
+    }
+
+    private static class CellKey {
+        private final long cell;
+        private final Locale locale;
+
+        CellKey(long cell, Locale locale) {
+            this.cell = cell;
+            this.locale = locale;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CellKey)) return false;
+            CellKey other = (CellKey) o;
+            return cell == other.cell && (locale != null ? locale.equals(other.locale) : other.locale == null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = (int) (cell ^ (cell >>> 32));
+            return 31 * result + (locale != null ? locale.hashCode() : 0);
+        }
+    }
+
+    public static class Builder {
+        private int cellPrecision = 4;
+        private int maxEntries = 256;
+        private File diskDirectory = null;
+
+        /**
+         * Number of decimal places of latitude and longitude that identify a cell. Precision 4 gives
+         * cells of roughly 11 meters, precision 3 of roughly 110 meters.
+         * <p>
+         * Default: 4
+         *
+         * @param cellPrecision number of decimal places, 0 to 6
+         * @return builder instance
+         */
+        public Builder setCellPrecision(int cellPrecision) {
+            checkCellPrecision(cellPrecision);
+            this.cellPrecision = cellPrecision;
+            return this;
+        }
+
+        /**
+         * Maximal number of cells kept in memory.
+         * <p>
+         * Default: 256
+         *
+         * @param maxEntries number of cells
+         * @return builder instance
+         */
+        public Builder setMaxEntries(int maxEntries) {
+            if (maxEntries <= 0) {
+                throw new IllegalArgumentException("Max entries must be positive");
+            }
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * Directory in which results are persisted, for example subdirectory of
+         * {@link android.content.Context#getCacheDir()}. Results survive process restarts and
+         * are promoted to memory when read.
+         * <p>
+         * Default: null, results are kept in memory only
+         *
+         * @param diskDirectory directory owned by the cache
+         * @return builder instance
+         */
+        public Builder setDiskCacheDirectory(@Nullable File diskDirectory) {
+            this.diskDirectory = diskDirectory;
+            return this;
+        }
+
+        /**
+         * Builds cache instance
+         *
+         * @return cache instance
+         */
+        public ReverseGeocodeCache build() {
+            return new ReverseGeocodeCache(this);
+        }
+    }
+}
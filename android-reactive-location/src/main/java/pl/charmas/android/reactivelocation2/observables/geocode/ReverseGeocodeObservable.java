@@ -11,6 +11,7 @@ import java.util.Locale;
 import io.reactivex.Observable;
 import io.reactivex.ObservableEmitter;
 import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.functions.Consumer;
 import io.reactivex.schedulers.Schedulers;
 import pl.charmas.android.reactivelocation2.observables.ObservableEmitterWrapper;
 import pl.charmas.android.reactivelocation2.observables.ObservableFactory;
@@ -22,13 +23,19 @@ public class ReverseGeocodeObservable implements ObservableOnSubscribe<List<Addr
     private final double latitude;
     private final double longitude;
     private final int maxResults;
+    private final ReverseGeocodeCache cache;
 
     public static Observable<List<Address>> createObservable(Context ctx, ObservableFactory factory, Locale locale, double latitude, double longitude, int maxResults) {
-        return factory.createObservable(new ReverseGeocodeObservable(ctx, locale, latitude, longitude, maxResults));
+        return createObservable(ctx, factory, null, locale, latitude, longitude, maxResults);
     }
 
-    private ReverseGeocodeObservable(Context ctx, Locale locale, double latitude, double longitude, int maxResults) {
+    public static Observable<List<Address>> createObservable(Context ctx, ObservableFactory factory, ReverseGeocodeCache cache, Locale locale, double latitude, double longitude, int maxResults) {
+        return factory.createObservable(new ReverseGeocodeObservable(ctx, cache, locale, latitude, longitude, maxResults));
+    }
+
+    private ReverseGeocodeObservable(Context ctx, ReverseGeocodeCache cache, Locale locale, double latitude, double longitude, int maxResults) {
         this.ctx = ctx;
+        this.cache = cache;
         this.latitude = latitude;
         this.longitude = longitude;
         this.maxResults = maxResults;
@@ -37,9 +44,20 @@ public class ReverseGeocodeObservable implements ObservableOnSubscribe<List<Addr
 
     @Override
     public void subscribe(ObservableEmitter<List<Address>> emitter) throws Exception {
+        if (cache != null) {
+            List<Address> cached = cache.get(locale, latitude, longitude, maxResults);
+            if (cached != null) {
+                if (!emitter.isDisposed()) {
+                    emitter.onNext(cached);
+                    emitter.onComplete();
+                }
+                return;
+            }
+        }
         Geocoder geocoder = new Geocoder(ctx, locale);
         try {
             List<Address> addresses = geocoder.getFromLocation(latitude, longitude, maxResults);
+            storeInCache(addresses);
             if (!emitter.isDisposed()) {
                 emitter.onNext(addresses);
                 emitter.onComplete();
@@ -50,8 +68,20 @@ public class ReverseGeocodeObservable implements ObservableOnSubscribe<List<Addr
                 Observable
                         .create(new FallbackReverseGeocodeObservable(locale, latitude, longitude, maxResults))
                         .subscribeOn(Schedulers.io())
+                        .doOnNext(new Consumer<List<Address>>() {
+                            @Override
+                            public void accept(List<Address> addresses) throws Exception {
+                                storeInCache(addresses);
+                            }
+                        })
                         .subscribe(new ObservableEmitterWrapper<>(emitter));
             }
         }
     }
+
+    private void storeInCache(List<Address> addresses) {
+        if (cache != null) {
+            cache.put(locale, latitude, longitude, maxResults, addresses);
+        }
+    }
 }
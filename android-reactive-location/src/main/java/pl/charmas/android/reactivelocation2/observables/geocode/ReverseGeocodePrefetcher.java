@@ -0,0 +1,164 @@
+package pl.charmas.android.reactivelocation2.observables.geocode;
+
+import android.content.Context;
+import android.location.Address;
+import android.location.Location;
+import android.os.SystemClock;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.observers.DisposableObserver;
+import io.reactivex.schedulers.Schedulers;
+import pl.charmas.android.reactivelocation2.observables.GeoMath;
+import pl.charmas.android.reactivelocation2.observables.ObservableContext;
+import pl.charmas.android.reactivelocation2.observables.ObservableFactory;
+
+/**
+ * Passes locations through and warms up {@link ReverseGeocodeCache} for cells lying ahead of the
+ * device. Position is extrapolated from speed and bearing of every location, so locations without
+ * them or below walking speed do not trigger any requests. Every cell crossed by the extrapolated
+ * path is prefetched in path order until the request budget runs out.
+ */
+public class ReverseGeocodePrefetcher implements ObservableTransformer<Location, Location> {
+    private static final float MIN_SPEED_METERS_PER_SECOND = 1f;
+    // bounds work per location when the path is long and its cells are already cached
+    private static final int MAX_CELLS_PER_LOCATION = 1024;
+    private static final long BUDGET_WINDOW_MILLIS = 60 * 1000;
+
+    private final Context ctx;
+    private final ObservableFactory factory;
+    private final ReverseGeocodeCache cache;
+    private final Locale locale;
+    private final int maxResults;
+    private final long lookaheadMillis;
+    private final int maxRequestsPerMinute;
+    private final double cellScale;
+
+    private long budgetWindowStart;
+    private int budgetUsed;
+
+    public static ReverseGeocodePrefetcher create(ObservableContext ctx, ObservableFactory factory, Locale locale, int maxResults, long lookaheadMillis, int maxRequestsPerMinute) {
+        ReverseGeocodeCache cache = ctx.getReverseGeocodeCache();
+        if (cache == null) {
+            throw new IllegalStateException("Reverse geocode cache has to be configured to prefetch addresses.");
+        }
+        return new ReverseGeocodePrefetcher(ctx.getContext(), factory, cache, locale, maxResults, lookaheadMillis, maxRequestsPerMinute);
+    }
+
+    private ReverseGeocodePrefetcher(Context ctx, ObservableFactory factory, ReverseGeocodeCache cache, Locale locale, int maxResults, long lookaheadMillis, int maxRequestsPerMinute) {
+        this.ctx = ctx;
+        this.factory = factory;
+        this.cache = cache;
+        this.locale = locale;
+        this.maxResults = maxResults;
+        this.lookaheadMillis = lookaheadMillis;
+        this.maxRequestsPerMinute = maxRequestsPerMinute;
+        this.cellScale = ReverseGeocodeCache.scale(cache.getCellPrecision());
+    }
+
+    @Override
+    public ObservableSource<Location> apply(final Observable<Location> upstream) {
+        return Observable.defer(new Callable<ObservableSource<Location>>() {
+            @Override
+            public ObservableSource<Location> call() throws Exception {
+                final CompositeDisposable prefetches = new CompositeDisposable();
+                return upstream
+                        .doOnNext(new Consumer<Location>() {
+                            @Override
+                            public void accept(Location location) throws Exception {
+                                prefetch(location, prefetches);
+                            }
+                        })
+                        .doFinally(new Action() {
+                            @Override
+                            public void run() throws Exception {
+                                prefetches.dispose();
+                            }
+                        });
+            }
+        });
+    }
+
+    private void prefetch(Location location, CompositeDisposable prefetches) {
+        if (!location.hasSpeed() || !location.hasBearing() || location.getSpeed() < MIN_SPEED_METERS_PER_SECOND) {
+            return;
+        }
+        double horizon = location.getSpeed() * lookaheadMillis / 1000.0;
+        double[] end = new double[2];
+        GeoMath.destination(location.getLatitude(), location.getLongitude(), location.getBearing(), horizon, end);
+        // cell of the device itself is left to on demand lookup
+        PathCells cells = new PathCells(cellScale);
+        cells.start(location.getLatitude(), location.getLongitude(), end[0], end[1]);
+        for (int i = 0; i < MAX_CELLS_PER_LOCATION && cells.next(); i++) {
+            double lat = cells.latitude();
+            double lng = cells.longitude();
+            if (cache.isInMemory(locale, lat, lng, maxResults) || !cache.markPending(locale, lat, lng)) {
+                continue;
+            }
+            if (!acquireBudget()) {
+                cache.clearPending(locale, lat, lng);
+                return;
+            }
+            fetch(lat, lng, prefetches);
+        }
+    }
+
+    private void fetch(final double lat, final double lng, CompositeDisposable prefetches) {
+        PrefetchObserver observer = new PrefetchObserver(prefetches);
+        prefetches.add(observer);
+        ReverseGeocodeObservable.createObservable(ctx, factory, cache, locale, lat, lng, maxResults)
+                .subscribeOn(Schedulers.io())
+                .doFinally(new Action() {
+                    @Override
+                    public void run() throws Exception {
+                        cache.clearPending(locale, lat, lng);
+                    }
+                })
+                .subscribe(observer);
+    }
+
+    private synchronized boolean acquireBudget() {
+        long now = SystemClock.elapsedRealtime();
+        if (now - budgetWindowStart >= BUDGET_WINDOW_MILLIS) {
+            budgetWindowStart = now;
+            budgetUsed = 0;
+        }
+        if (budgetUsed >= maxRequestsPerMinute) {
+            return false;
+        }
+        budgetUsed++;
+        return true;
+    }
+
+    private static class PrefetchObserver extends DisposableObserver<List<Address>> {
+        private final CompositeDisposable prefetches;
+
+        PrefetchObserver(CompositeDisposable prefetches) {
+            this.prefetches = prefetches;
+        }
+
+        @Override
+        public void onNext(List<Address> addresses) {
+            // result is already stored by the cache aware observable
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            // prefetching is best effort, on demand lookup will retry
+            prefetches.delete(this);
+        }
+
+        @Override
+        public void onComplete() {
+            prefetches.delete(this);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package pl.charmas.android.reactivelocation2.observables.geocode;
+
+import android.content.Context;
+import android.location.Address;
+import android.location.Geocoder;
+import android.os.SystemClock;
+
+import com.google.android.gms.maps.model.LatLngBounds;
+
+import org.reactivestreams.Publisher;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.functions.BiFunction;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import pl.charmas.android.reactivelocation2.observables.GeoMath;
+import pl.charmas.android.reactivelocation2.observables.ObservableContext;
+import pl.charmas.android.reactivelocation2.observables.geocode.ReverseGeocodeWarmUpProgress.CellResult;
+
+/**
+ * Fills {@link ReverseGeocodeCache} with results for every cell of a region. Cells are enumerated
+ * lazily, at most maxConcurrency of them are geocoded at once and consecutive requests are spaced
+ * by at least minRequestIntervalMillis.
+ */
+public class ReverseGeocodeWarmUp {
+    private final Context ctx;
+    private final ReverseGeocodeCache cache;
+    private final Locale locale;
+    private final int cellPrecision;
+    private final int maxResults;
+    private final int maxConcurrency;
+    private final long minRequestIntervalMillis;
+    private final double scale;
+    private final long latStart;
+    private final long lngStart;
+    private final long lngCount;
+    private final long totalCells;
+
+    private long nextRequestSlot;
+
+    public static Observable<ReverseGeocodeWarmUpProgress> createObservable(ObservableContext ctx, Locale locale, LatLngBounds bounds, int cellPrecision,
+                                                                            int maxResults, int maxConcurrency, long minRequestIntervalMillis) {
+        ReverseGeocodeCache cache = ctx.getReverseGeocodeCache();
+        if (cache == null) {
+            throw new IllegalStateException("Reverse geocode cache has to be configured to warm it up.");
+        }
+        ReverseGeocodeCache.checkCellPrecision(cellPrecision);
+        if (cellPrecision > cache.getCellPrecision()) {
+            // lookups walk from cache precision to coarser cells, finer cells would never be read
+            throw new IllegalArgumentException("Warm-up cell precision " + cellPrecision
+                    + " cannot be finer than cache cell precision " + cache.getCellPrecision());
+        }
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("Max concurrency must be positive");
+        }
+        return new ReverseGeocodeWarmUp(ctx.getContext(), cache, locale, bounds, cellPrecision, maxResults, maxConcurrency, minRequestIntervalMillis).observable();
+    }
+
+    private ReverseGeocodeWarmUp(Context ctx, ReverseGeocodeCache cache, Locale locale, LatLngBounds bounds, int cellPrecision,
+                                 int maxResults, int maxConcurrency, long minRequestIntervalMillis) {
+        this.ctx = ctx;
+        this.cache = cache;
+        this.locale = locale;
+        this.cellPrecision = cellPrecision;
+        this.maxResults = maxResults;
+        this.maxConcurrency = maxConcurrency;
+        this.minRequestIntervalMillis = minRequestIntervalMillis;
+        this.scale = ReverseGeocodeCache.scale(cellPrecision);
+
+        this.latStart = (long) Math.floor(bounds.southwest.latitude * scale);
+        long latEnd = Math.min((long) Math.floor(bounds.northeast.latitude * scale), (long) (90 * scale) - 1);
+        double east = bounds.northeast.longitude;
+        if (east < bounds.southwest.longitude) {
+            // bounds cross antimeridian
+            east += 360;
+        }
+        this.lngStart = (long) Math.floor(bounds.southwest.longitude * scale);
+        this.lngCount = (long) Math.floor(east * scale) - lngStart + 1;
+        this.totalCells = Math.max(0, latEnd - latStart + 1) * lngCount;
+    }
+
+    private Observable<ReverseGeocodeWarmUpProgress> observable() {
+        return Flowable.rangeLong(0, totalCells)
+                .flatMap(new Function<Long, Publisher<CellResult>>() {
+                    @Override
+                    public Publisher<CellResult> apply(Long cellIndex) {
+                        return Flowable.fromCallable(new CellWarmUp(cellIndex)).subscribeOn(Schedulers.io());
+                    }
+                }, maxConcurrency)
+                .scan(new ReverseGeocodeWarmUpProgress(totalCells, 0, 0, 0), new BiFunction<ReverseGeocodeWarmUpProgress, CellResult, ReverseGeocodeWarmUpProgress>() {
+                    @Override
+                    public ReverseGeocodeWarmUpProgress apply(ReverseGeocodeWarmUpProgress progress, CellResult result) {
+                        return progress.with(result);
+                    }
+                })
+                .toObservable();
+    }
+
+    private void awaitRequestSlot() throws InterruptedException {
+        long delay;
+        synchronized (this) {
+            long now = SystemClock.elapsedRealtime();
+            long slot = Math.max(now, nextRequestSlot);
+            nextRequestSlot = slot + minRequestIntervalMillis;
+            delay = slot - now;
+        }
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+    }
+
+    private List<Address> geocode(double lat, double lng) throws IOException {
+        try {
+            return new Geocoder(ctx, locale).getFromLocation(lat, lng, maxResults);
+        } catch (IOException e) {
+            // same as on demand lookups, try web api when geocoder service is not available
+            return Observable.create(new FallbackReverseGeocodeObservable(locale, lat, lng, maxResults)).blockingFirst();
+        }
+    }
+
+    private class CellWarmUp implements Callable<CellResult> {
+        private final long cellIndex;
+
+        CellWarmUp(long cellIndex) {
+            this.cellIndex = cellIndex;
+        }
+
+        @Override
+        public CellResult call() {
+            double lat = (latStart + cellIndex / lngCount + 0.5) / scale;
+            double lng = GeoMath.normalizeLongitude((lngStart + cellIndex % lngCount + 0.5) / scale);
+            long cell = ReverseGeocodeCache.cellOf(lat, lng, cellPrecision);
+            if (cache.get(locale, cell, maxResults) != null) {
+                return CellResult.CACHED;
+            }
+            try {
+                awaitRequestSlot();
+                cache.put(locale, cell, maxResults, geocode(lat, lng));
+                return CellResult.FETCHED;
+            } catch (InterruptedException e) {
+                // warm-up was disposed
+                Thread.currentThread().interrupt();
+                return CellResult.FAILED;
+            } catch (Exception e) {
+                return CellResult.FAILED;
+            }
+        }
+    }
+}
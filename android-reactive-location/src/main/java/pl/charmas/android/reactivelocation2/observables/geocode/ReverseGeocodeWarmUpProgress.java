@@ -0,0 +1,79 @@
+package pl.charmas.android.reactivelocation2.observables.geocode;
+
+/**
+ * Progress of reverse geocode cache warm-up for a region.
+ */
+public class ReverseGeocodeWarmUpProgress {
+    private final long totalCells;
+    private final long cachedCells;
+    private final long fetchedCells;
+    private final long failedCells;
+
+    ReverseGeocodeWarmUpProgress(long totalCells, long cachedCells, long fetchedCells, long failedCells) {
+        this.totalCells = totalCells;
+        this.cachedCells = cachedCells;
+        this.fetchedCells = fetchedCells;
+        this.failedCells = failedCells;
+    }
+
+    /**
+     * @return number of cells in the region
+     */
+    public long getTotalCells() {
+        return totalCells;
+    }
+
+    /**
+     * @return number of cells that already had a result in cache
+     */
+    public long getCachedCells() {
+        return cachedCells;
+    }
+
+    /**
+     * @return number of cells geocoded during warm-up
+     */
+    public long getFetchedCells() {
+        return fetchedCells;
+    }
+
+    /**
+     * @return number of cells that could not be geocoded
+     */
+    public long getFailedCells() {
+        return failedCells;
+    }
+
+    public long getProcessedCells() {
+        return cachedCells + fetchedCells + failedCells;
+    }
+
+    public boolean isComplete() {
+        return getProcessedCells() == totalCells;
+    }
+
+    ReverseGeocodeWarmUpProgress with(CellResult result) {
+        switch (result) {
+            case CACHED:
+                return new ReverseGeocodeWarmUpProgress(totalCells, cachedCells + 1, fetchedCells, failedCells);
+            case FETCHED:
+                return new ReverseGeocodeWarmUpProgress(totalCells, cachedCells, fetchedCells + 1, failedCells);
+            default:
+                return new ReverseGeocodeWarmUpProgress(totalCells, cachedCells, fetchedCells, failedCells + 1);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ReverseGeocodeWarmUpProgress{" +
+                "totalCells=" + totalCells +
+                ", cachedCells=" + cachedCells +
+                ", fetchedCells=" + fetchedCells +
+                ", failedCells=" + failedCells +
+                '}';
+    }
+
+    enum CellResult {
+        CACHED, FETCHED, FAILED
+    }
+}
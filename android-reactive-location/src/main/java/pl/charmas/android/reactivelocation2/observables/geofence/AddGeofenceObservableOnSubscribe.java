@@ -3,11 +3,9 @@ package pl.charmas.android.reactivelocation2.observables.geofence;
 import android.app.PendingIntent;
 import android.support.annotation.NonNull;
 
-import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
 import com.google.android.gms.common.api.Status;
 import com.google.android.gms.location.GeofencingRequest;
-import com.google.android.gms.location.LocationServices;
 
 import io.reactivex.Observable;
 import io.reactivex.ObservableEmitter;
@@ -15,6 +13,7 @@ import pl.charmas.android.reactivelocation2.observables.BaseLocationObservableOn
 import pl.charmas.android.reactivelocation2.observables.ObservableContext;
 import pl.charmas.android.reactivelocation2.observables.ObservableFactory;
 import pl.charmas.android.reactivelocation2.observables.StatusException;
+import pl.charmas.android.reactivelocation2.observables.backend.PlayServicesClient;
 
 
 @SuppressWarnings("MissingPermission")
@@ -33,21 +32,20 @@ public class AddGeofenceObservableOnSubscribe extends BaseLocationObservableOnSu
     }
 
     @Override
-    protected void onGoogleApiClientReady(GoogleApiClient apiClient, final ObservableEmitter<? super Status> emitter) {
-        LocationServices.GeofencingApi.addGeofences(apiClient, request, geofenceTransitionPendingIntent)
-                .setResultCallback(new ResultCallback<Status>() {
-                    @Override
-                    public void onResult(@NonNull Status status) {
-                        if (emitter.isDisposed()) return;
-                        if (status.isSuccess()) {
-                            emitter.onNext(status);
-                            emitter.onComplete();
-
-                        } else {
-                            emitter.onError(new StatusException(status));
-                        }
-                    }
-                });
+    protected void onClientReady(PlayServicesClient client, final ObservableEmitter<? super Status> emitter) {
+        client.addGeofences(request, geofenceTransitionPendingIntent, new ResultCallback<Status>() {
+            @Override
+            public void onResult(@NonNull Status status) {
+                if (emitter.isDisposed()) return;
+                if (status.isSuccess()) {
+                    emitter.onNext(status);
+                    emitter.onComplete();
+
+                } else {
+                    emitter.onError(new StatusException(status));
+                }
+            }
+        });
     }
 
 }
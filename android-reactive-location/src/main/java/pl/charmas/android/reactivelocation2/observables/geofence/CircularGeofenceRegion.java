@@ -0,0 +1,89 @@
+package pl.charmas.android.reactivelocation2.observables.geofence;
+
+import pl.charmas.android.reactivelocation2.observables.GeoMath;
+
+/**
+ * Circle evaluated in equirectangular projection around its center, which is accurate for radii
+ * used for geofencing and needs no trigonometry per check.
+ */
+class CircularGeofenceRegion implements GeofenceRegion {
+    private final double latitude;
+    private final double longitude;
+    private final double radius;
+    private final double radiusSquared;
+    private final double metersPerDegreeLng;
+    private final double latitudeSpan;
+    private final double longitudeSpan;
+
+    CircularGeofenceRegion(double latitude, double longitude, float radius) {
+        if (radius <= 0) {
+            throw new IllegalArgumentException("Radius must be positive");
+        }
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.radius = radius;
+        this.radiusSquared = (double) radius * radius;
+        this.metersPerDegreeLng = GeoMath.METERS_PER_DEGREE * Math.max(Math.cos(Math.toRadians(latitude)), 1e-6);
+        this.latitudeSpan = radius / GeoMath.METERS_PER_DEGREE;
+        this.longitudeSpan = radius / metersPerDegreeLng;
+    }
+
+    double getLatitude() {
+        return latitude;
+    }
+
+    double getLongitude() {
+        return longitude;
+    }
+
+    float getRadius() {
+        return (float) radius;
+    }
+
+    @Override
+    public double getMinLatitude() {
+        return latitude - latitudeSpan;
+    }
+
+    @Override
+    public double getMaxLatitude() {
+        return latitude + latitudeSpan;
+    }
+
+    @Override
+    public double getMinLongitude() {
+        return longitude - longitudeSpan;
+    }
+
+    @Override
+    public double getMaxLongitude() {
+        return longitude + longitudeSpan;
+    }
+
+    @Override
+    public int getPartCount() {
+        return 1;
+    }
+
+    @Override
+    public void getPartBounds(int part, double[] out) {
+        out[0] = getMinLatitude();
+        out[1] = getMaxLatitude();
+        out[2] = getMinLongitude();
+        out[3] = getMaxLongitude();
+    }
+
+    @Override
+    public double distanceTo(double lat, double lng) {
+        double dy = (lat - latitude) * GeoMath.METERS_PER_DEGREE;
+        double dx = GeoMath.normalizeLongitude(lng - longitude) * metersPerDegreeLng;
+        return Math.sqrt(dx * dx + dy * dy) - radius;
+    }
+
+    @Override
+    public boolean contains(double lat, double lng) {
+        double dy = (lat - latitude) * GeoMath.METERS_PER_DEGREE;
+        double dx = GeoMath.normalizeLongitude(lng - longitude) * metersPerDegreeLng;
+        return dx * dx + dy * dy <= radiusSquared;
+    }
+}
@@ -0,0 +1,146 @@
+package pl.charmas.android.reactivelocation2.observables.geofence;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.List;
+
+import pl.charmas.android.reactivelocation2.observables.GeoMath;
+
+/**
+ * Polyline buffered by given distance, e.g. a route corridor. Every segment is evaluated in
+ * equirectangular projection around its start point, segments are indexed in latitude bands and
+ * prefiltered by their own longitude range. Corridor must not cross the antimeridian.
+ */
+class CorridorGeofenceRegion implements GeofenceRegion {
+    private static final int SEGMENT_STRIDE = 7;
+
+    // per segment: start lat, start lng, dx and dy in meters, meters per degree of longitude, min and max lng
+    private final double[] segments;
+    private final int segmentCount;
+    private final double radius;
+    private final double radiusSquared;
+    private final double[] segmentMinLatitudes;
+    private final double[] segmentMaxLatitudes;
+    private final LatitudeBandIndex segmentIndex;
+    private final double minLatitude;
+    private final double maxLatitude;
+    private final double minLongitude;
+    private final double maxLongitude;
+
+    CorridorGeofenceRegion(List<LatLng> polyline, float radius) {
+        if (polyline.isEmpty()) {
+            throw new IllegalArgumentException("Corridor needs at least 1 point");
+        }
+        if (radius <= 0) {
+            throw new IllegalArgumentException("Radius must be positive");
+        }
+        this.radius = radius;
+        this.radiusSquared = (double) radius * radius;
+        this.segmentCount = Math.max(1, polyline.size() - 1);
+        this.segments = new double[segmentCount * SEGMENT_STRIDE];
+        this.segmentMinLatitudes = new double[segmentCount];
+        this.segmentMaxLatitudes = new double[segmentCount];
+        double latitudeSpan = radius / GeoMath.METERS_PER_DEGREE;
+        double minLat = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        double minLng = Double.POSITIVE_INFINITY;
+        double maxLng = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < segmentCount; i++) {
+            LatLng start = polyline.get(i);
+            LatLng end = polyline.get(Math.min(i + 1, polyline.size() - 1));
+            double midLatitude = Math.toRadians((start.latitude + end.latitude) / 2);
+            double metersPerDegreeLng = GeoMath.METERS_PER_DEGREE * Math.max(Math.cos(midLatitude), 1e-6);
+            double longitudeSpan = radius / metersPerDegreeLng;
+            int offset = i * SEGMENT_STRIDE;
+            segments[offset] = start.latitude;
+            segments[offset + 1] = start.longitude;
+            segments[offset + 2] = (end.longitude - start.longitude) * metersPerDegreeLng;
+            segments[offset + 3] = (end.latitude - start.latitude) * GeoMath.METERS_PER_DEGREE;
+            segments[offset + 4] = metersPerDegreeLng;
+            segments[offset + 5] = Math.min(start.longitude, end.longitude) - longitudeSpan;
+            segments[offset + 6] = Math.max(start.longitude, end.longitude) + longitudeSpan;
+            segmentMinLatitudes[i] = Math.min(start.latitude, end.latitude) - latitudeSpan;
+            segmentMaxLatitudes[i] = Math.max(start.latitude, end.latitude) + latitudeSpan;
+            minLat = Math.min(minLat, segmentMinLatitudes[i]);
+            maxLat = Math.max(maxLat, segmentMaxLatitudes[i]);
+            minLng = Math.min(minLng, segments[offset + 5]);
+            maxLng = Math.max(maxLng, segments[offset + 6]);
+        }
+        this.minLatitude = minLat;
+        this.maxLatitude = maxLat;
+        this.minLongitude = minLng;
+        this.maxLongitude = maxLng;
+        this.segmentIndex = new LatitudeBandIndex(segmentMinLatitudes, segmentMaxLatitudes, minLat, maxLat);
+    }
+
+    @Override
+    public double getMinLatitude() {
+        return minLatitude;
+    }
+
+    @Override
+    public double getMaxLatitude() {
+        return maxLatitude;
+    }
+
+    @Override
+    public double getMinLongitude() {
+        return minLongitude;
+    }
+
+    @Override
+    public double getMaxLongitude() {
+        return maxLongitude;
+    }
+
+    @Override
+    public int getPartCount() {
+        return segmentCount;
+    }
+
+    @Override
+    public void getPartBounds(int part, double[] out) {
+        out[0] = segmentMinLatitudes[part];
+        out[1] = segmentMaxLatitudes[part];
+        out[2] = segments[part * SEGMENT_STRIDE + 5];
+        out[3] = segments[part * SEGMENT_STRIDE + 6];
+    }
+
+    @Override
+    public boolean contains(double lat, double lng) {
+        if (lat < minLatitude || lat > maxLatitude || lng < minLongitude || lng > maxLongitude) {
+            return false;
+        }
+        for (int segment : segmentIndex.items(lat)) {
+            int offset = segment * SEGMENT_STRIDE;
+            if (lng < segments[offset + 5] || lng > segments[offset + 6]) {
+                continue;
+            }
+            if (distanceSquared(offset, lat, lng) <= radiusSquared) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public double distanceTo(double lat, double lng) {
+        double minDistanceSquared = Double.POSITIVE_INFINITY;
+        for (int offset = 0; offset < segments.length; offset += SEGMENT_STRIDE) {
+            minDistanceSquared = Math.min(minDistanceSquared, distanceSquared(offset, lat, lng));
+        }
+        return Math.sqrt(minDistanceSquared) - radius;
+    }
+
+    private double distanceSquared(int offset, double lat, double lng) {
+        double px = (lng - segments[offset + 1]) * segments[offset + 4];
+        double py = (lat - segments[offset]) * GeoMath.METERS_PER_DEGREE;
+        double dx = segments[offset + 2];
+        double dy = segments[offset + 3];
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared > 0 ? Math.max(0, Math.min(1, (px * dx + py * dy) / lengthSquared)) : 0;
+        double ex = px - t * dx;
+        double ey = py - t * dy;
+        return ex * ex + ey * ey;
+    }
+}
@@ -0,0 +1,132 @@
+package pl.charmas.android.reactivelocation2.observables.geofence;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import pl.charmas.android.reactivelocation2.observables.GeoMath;
+
+/**
+ * Uniform grid over bounding boxes of geofence region parts. Every cell keeps indexes of regions
+ * with a part overlapping it, stored in an open addressing table so lookups do not allocate.
+ * Longitudes are wrapped into [-180, 180), so parts crossing the antimeridian are found from
+ * both of its sides.
+ */
+final class GeofenceGridIndex {
+    private static final int[] EMPTY = new int[0];
+
+    private final double cellSize;
+    private final long[] keys;
+    private final int[][] values;
+    private final int mask;
+
+    GeofenceGridIndex(GeofenceRegion[] regions, double cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        this.cellSize = cellSize;
+
+        Map<Long, List<Integer>> cells = new HashMap<>();
+        Set<Long> regionCells = new HashSet<>();
+        double[] bounds = new double[4];
+        for (int i = 0; i < regions.length; i++) {
+            GeofenceRegion region = regions[i];
+            regionCells.clear();
+            for (int part = 0; part < region.getPartCount(); part++) {
+                region.getPartBounds(part, bounds);
+                double minLat = Math.max(bounds[0], -90);
+                double maxLat = Math.min(bounds[1], 90);
+                double lngSpan = bounds[3] - bounds[2];
+                if (lngSpan >= 360) {
+                    addCells(cells, regionCells, i, minLat, maxLat, -180, 180);
+                    continue;
+                }
+                // parts crossing the antimeridian are indexed on both of its sides
+                double minLng = GeoMath.normalizeLongitude(bounds[2]);
+                double maxLng = minLng + lngSpan;
+                if (maxLng >= 180) {
+                    addCells(cells, regionCells, i, minLat, maxLat, minLng, 180);
+                    addCells(cells, regionCells, i, minLat, maxLat, -180, maxLng - 360);
+                } else {
+                    addCells(cells, regionCells, i, minLat, maxLat, minLng, maxLng);
+                }
+            }
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(cells.size(), 1) * 2) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity][];
+        this.mask = capacity - 1;
+        for (Map.Entry<Long, List<Integer>> entry : cells.entrySet()) {
+            List<Integer> cell = entry.getValue();
+            int[] indexes = new int[cell.size()];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = cell.get(i);
+            }
+            int slot = slot(entry.getKey());
+            while (values[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = entry.getKey();
+            values[slot] = indexes;
+        }
+    }
+
+    private void addCells(Map<Long, List<Integer>> cells, Set<Long> regionCells, int region,
+                          double minLat, double maxLat, double minLng, double maxLng) {
+        long maxLatIndex = index(maxLat);
+        long maxLngIndex = index(maxLng);
+        for (long latIndex = index(minLat); latIndex <= maxLatIndex; latIndex++) {
+            for (long lngIndex = index(minLng); lngIndex <= maxLngIndex; lngIndex++) {
+                Long key = key(latIndex, lngIndex);
+                if (!regionCells.add(key)) continue;
+                List<Integer> cell = cells.get(key);
+                if (cell == null) {
+                    cell = new ArrayList<>(4);
+                    cells.put(key, cell);
+                }
+                cell.add(region);
+            }
+        }
+    }
+
+    double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Returns indexes of regions that may contain given point. Returned array must not be modified.
+     */
+    int[] candidates(double lat, double lng) {
+        return cell(index(lat), index(GeoMath.normalizeLongitude(lng)));
+    }
+
+    int[] cell(long latIndex, long lngIndex) {
+        long key = key(latIndex, lngIndex);
+        int slot = slot(key);
+        int[] value;
+        while ((value = values[slot]) != null) {
+            if (keys[slot] == key) {
+                return value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return EMPTY;
+    }
+
+    long index(double degrees) {
+        return (long) Math.floor(degrees / cellSize);
+    }
+
+    private static long key(long latIndex, long lngIndex) {
+        return (latIndex << 32) ^ (lngIndex & 0xffffffffL);
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & mask;
+    }
+}
@@ -0,0 +1,32 @@
+package pl.charmas.android.reactivelocation2.observables.geofence;
+
+/**
+ * Shape of a locally evaluated geofence. Implementations are immutable and precompute everything
+ * that is needed to answer {@link #contains(double, double)} without allocation.
+ */
+interface GeofenceRegion {
+    double getMinLatitude();
+
+    double getMaxLatitude();
+
+    double getMinLongitude();
+
+    double getMaxLongitude();
+
+    /**
+     * @return number of parts whose bounding boxes together cover the region, used for indexing
+     */
+    int getPartCount();
+
+    /**
+     * @param out array receiving min latitude, max latitude, min longitude and max longitude of part
+     */
+    void getPartBounds(int part, double[] out);
+
+    boolean contains(double lat, double lng);
+
+    /**
+     * @return distance in meters from given point to region boundary, negative when point is inside
+     */
+    double distanceTo(double lat, double lng);
+}
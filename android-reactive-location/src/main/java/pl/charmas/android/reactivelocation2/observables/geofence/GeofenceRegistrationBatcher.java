@@ -0,0 +1,390 @@
+package pl.charmas.android.reactivelocation2.observables.geofence;
+
+import android.app.PendingIntent;
+import android.support.annotation.NonNull;
+import android.support.annotation.RequiresPermission;
+
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.location.GeofencingRequest;
+import com.google.android.gms.location.LocationServices;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.ObservableSource;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Cancellable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import pl.charmas.android.reactivelocation2.observables.ObservableContext;
+import pl.charmas.android.reactivelocation2.observables.ObservableFactory;
+import pl.charmas.android.reactivelocation2.observables.PlayServicesClientObservableOnSubscribe;
+import pl.charmas.android.reactivelocation2.observables.StatusException;
+import pl.charmas.android.reactivelocation2.observables.backend.PlayServicesClient;
+
+/**
+ * Coalesces geofence additions and removals issued within a short window into as few
+ * {@link com.google.android.gms.location.GeofencingApi} calls as possible. All calls of a window
+ * are executed in order over one client connection, additions are merged per pending intent and
+ * initial trigger and split into requests of at most {@link #MAX_GEOFENCES_PER_REQUEST} geofences.
+ * <p/>
+ * Every subscription still receives its own {@link Status}, or {@link StatusException} when any
+ * request carrying its geofences failed.
+ */
+@SuppressWarnings("MissingPermission")
+public class GeofenceRegistrationBatcher {
+    public static final int MAX_GEOFENCES_PER_REQUEST = 100;
+
+    private final ObservableContext ctx;
+    private final ObservableFactory factory;
+    private final long windowMillis;
+    private final Scheduler scheduler;
+
+    private final Object lock = new Object();
+    private List<Operation> pending = new ArrayList<>();
+    private boolean flushScheduled;
+    private boolean executing;
+
+    public static GeofenceRegistrationBatcher create(ObservableContext ctx, ObservableFactory factory, long windowMillis, Scheduler scheduler) {
+        return new GeofenceRegistrationBatcher(ctx, factory, windowMillis, scheduler);
+    }
+
+    private GeofenceRegistrationBatcher(ObservableContext ctx, ObservableFactory factory, long windowMillis, Scheduler scheduler) {
+        this.ctx = ctx;
+        this.factory = factory;
+        this.windowMillis = windowMillis;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Queues addition of geofences from given request. Request is sent with the next batch.
+     *
+     * @param geofenceTransitionPendingIntent pending intent to register on geofence transition
+     * @param request                         geofences to add
+     * @return observable that emits status of this addition and completes
+     */
+    @RequiresPermission("android.permission.ACCESS_FINE_LOCATION")
+    public Observable<Status> addGeofences(final PendingIntent geofenceTransitionPendingIntent, final GeofencingRequest request) {
+        return enqueue(new Callable<Operation>() {
+            @Override
+            public Operation call() throws Exception {
+                return Operation.add(geofenceTransitionPendingIntent, request);
+            }
+        });
+    }
+
+    /**
+     * Queues removal of geofences with given request ids. Removal is sent with the next batch.
+     *
+     * @param requestIds geofences to remove
+     * @return observable that emits status of this removal and completes
+     */
+    public Observable<Status> removeGeofences(final List<String> requestIds) {
+        return enqueue(new Callable<Operation>() {
+            @Override
+            public Operation call() throws Exception {
+                return Operation.remove(requestIds);
+            }
+        });
+    }
+
+    private Observable<Status> enqueue(final Callable<Operation> operationFactory) {
+        return Observable.create(new ObservableOnSubscribe<Status>() {
+            @Override
+            public void subscribe(ObservableEmitter<Status> emitter) throws Exception {
+                final Operation operation = operationFactory.call();
+                operation.emitter = emitter;
+                emitter.setCancellable(new Cancellable() {
+                    @Override
+                    public void cancel() throws Exception {
+                        operation.cancelled = true;
+                    }
+                });
+                synchronized (lock) {
+                    pending.add(operation);
+                    scheduleFlushLocked();
+                }
+            }
+        });
+    }
+
+    private void scheduleFlushLocked() {
+        if (flushScheduled || executing) return;
+        flushScheduled = true;
+        scheduler.scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        final List<Operation> operations;
+        synchronized (lock) {
+            flushScheduled = false;
+            operations = pending;
+            pending = new ArrayList<>();
+            executing = true;
+        }
+        final List<Batch> batches = createBatches(operations);
+        if (batches.isEmpty()) {
+            onExecuted();
+            return;
+        }
+        PlayServicesClientObservableOnSubscribe.create(ctx, factory, LocationServices.API)
+                .concatMap(new Function<PlayServicesClient, ObservableSource<Boolean>>() {
+                    @Override
+                    public ObservableSource<Boolean> apply(final PlayServicesClient client) throws Exception {
+                        return Observable.fromIterable(batches)
+                                .concatMap(new Function<Batch, ObservableSource<Status>>() {
+                                    @Override
+                                    public ObservableSource<Status> apply(Batch batch) throws Exception {
+                                        return execute(client, batch);
+                                    }
+                                })
+                                .ignoreElements()
+                                .andThen(Observable.just(Boolean.TRUE));
+                    }
+                })
+                .take(1)
+                .doFinally(new Action() {
+                    @Override
+                    public void run() throws Exception {
+                        onExecuted();
+                    }
+                })
+                .subscribe(new Consumer<Boolean>() {
+                    @Override
+                    public void accept(Boolean done) throws Exception {
+                    }
+                }, new Consumer<Throwable>() {
+                    @Override
+                    public void accept(Throwable throwable) throws Exception {
+                        for (Operation operation : operations) {
+                            operation.fail(throwable);
+                        }
+                    }
+                });
+    }
+
+    private void onExecuted() {
+        synchronized (lock) {
+            executing = false;
+            if (!pending.isEmpty()) {
+                scheduleFlushLocked();
+            }
+        }
+    }
+
+    private Observable<Status> execute(final PlayServicesClient client, final Batch batch) {
+        return Observable.create(new ObservableOnSubscribe<Status>() {
+            @Override
+            public void subscribe(final ObservableEmitter<Status> emitter) throws Exception {
+                ResultCallback<Status> callback = new ResultCallback<Status>() {
+                    @Override
+                    public void onResult(@NonNull Status status) {
+                        if (emitter.isDisposed()) return;
+                        emitter.onNext(status);
+                        emitter.onComplete();
+                    }
+                };
+                if (batch.geofences != null) {
+                    GeofencingRequest request = new GeofencingRequest.Builder()
+                            .setInitialTrigger(batch.initialTrigger)
+                            .addGeofences(batch.geofences)
+                            .build();
+                    client.addGeofences(request, batch.pendingIntent, callback);
+                } else {
+                    client.removeGeofences(new ArrayList<>(batch.requestIds), callback);
+                }
+            }
+        }).doOnNext(new Consumer<Status>() {
+            @Override
+            public void accept(Status status) throws Exception {
+                for (Operation operation : batch.operations) {
+                    operation.onBatchResult(status);
+                }
+            }
+        });
+    }
+
+    /**
+     * Groups consecutive operations of the same kind. Additions of a group are merged per pending
+     * intent and initial trigger, group is closed early when a request id repeats so the later
+     * registration still replaces the earlier one.
+     */
+    private static List<Batch> createBatches(List<Operation> operations) {
+        List<Batch> batches = new ArrayList<>();
+        List<Batch> group = new ArrayList<>();
+        Set<String> groupIds = new HashSet<>();
+        boolean groupAdds = false;
+        for (Operation operation : operations) {
+            if (operation.cancelled) continue;
+            boolean add = operation.request != null;
+            if (!group.isEmpty() && (add != groupAdds || (add && !canJoin(groupIds, operation.request)))) {
+                closeGroup(group, batches);
+                groupIds.clear();
+            }
+            groupAdds = add;
+            if (add) {
+                for (Geofence geofence : operation.request.getGeofences()) {
+                    groupIds.add(geofence.getRequestId());
+                }
+                batchFor(group, operation).addOperation(operation);
+            } else {
+                if (group.isEmpty()) group.add(new Batch(null, 0));
+                group.get(0).addOperation(operation);
+            }
+        }
+        closeGroup(group, batches);
+        return batches;
+    }
+
+    private static boolean canJoin(Set<String> groupIds, GeofencingRequest request) {
+        for (Geofence geofence : request.getGeofences()) {
+            if (groupIds.contains(geofence.getRequestId())) return false;
+        }
+        return true;
+    }
+
+    private static Batch batchFor(List<Batch> group, Operation operation) {
+        int initialTrigger = operation.request.getInitialTrigger();
+        for (Batch batch : group) {
+            if (batch.pendingIntent.equals(operation.pendingIntent) && batch.initialTrigger == initialTrigger) {
+                return batch;
+            }
+        }
+        Batch batch = new Batch(operation.pendingIntent, initialTrigger);
+        group.add(batch);
+        return batch;
+    }
+
+    private static void closeGroup(List<Batch> group, List<Batch> batches) {
+        for (Batch batch : group) {
+            if (batch.geofences == null) {
+                for (Operation operation : batch.operations) {
+                    operation.expectResults(1);
+                }
+                batches.add(batch);
+            } else {
+                splitIntoChunks(batch, batches);
+            }
+        }
+        group.clear();
+    }
+
+    private static void splitIntoChunks(Batch batch, List<Batch> batches) {
+        Batch chunk = null;
+        for (Operation operation : batch.operations) {
+            List<Geofence> geofences = operation.request.getGeofences();
+            int offset = 0;
+            do {
+                if (chunk == null || chunk.geofences.size() == MAX_GEOFENCES_PER_REQUEST) {
+                    chunk = new Batch(batch.pendingIntent, batch.initialTrigger);
+                    batches.add(chunk);
+                }
+                int count = Math.min(geofences.size() - offset, MAX_GEOFENCES_PER_REQUEST - chunk.geofences.size());
+                chunk.geofences.addAll(geofences.subList(offset, offset + count));
+                if (!chunk.operations.contains(operation)) {
+                    chunk.operations.add(operation);
+                    operation.expectResults(1);
+                }
+                offset += count;
+            } while (offset < geofences.size());
+        }
+    }
+
+    private static class Batch {
+        final PendingIntent pendingIntent;
+        final int initialTrigger;
+        final List<Geofence> geofences;
+        final Set<String> requestIds;
+        final List<Operation> operations = new ArrayList<>();
+
+        Batch(PendingIntent pendingIntent, int initialTrigger) {
+            this.pendingIntent = pendingIntent;
+            this.initialTrigger = initialTrigger;
+            this.geofences = pendingIntent != null ? new ArrayList<Geofence>() : null;
+            this.requestIds = pendingIntent != null ? null : new LinkedHashSet<String>();
+        }
+
+        void addOperation(Operation operation) {
+            operations.add(operation);
+            if (requestIds != null) {
+                requestIds.addAll(operation.requestIds);
+            }
+        }
+    }
+
+    private static class Operation {
+        final PendingIntent pendingIntent;
+        final GeofencingRequest request;
+        final List<String> requestIds;
+        volatile ObservableEmitter<Status> emitter;
+        volatile boolean cancelled;
+
+        private int remainingResults;
+        private Status result;
+        private boolean done;
+
+        static Operation add(PendingIntent pendingIntent, GeofencingRequest request) {
+            return new Operation(pendingIntent, request, null);
+        }
+
+        static Operation remove(List<String> requestIds) {
+            return new Operation(null, null, requestIds);
+        }
+
+        private Operation(PendingIntent pendingIntent, GeofencingRequest request, List<String> requestIds) {
+            this.pendingIntent = pendingIntent;
+            this.request = request;
+            this.requestIds = requestIds;
+        }
+
+        synchronized void expectResults(int count) {
+            remainingResults += count;
+        }
+
+        void onBatchResult(Status status) {
+            Status completed;
+            synchronized (this) {
+                if (done) return;
+                if (result == null || result.isSuccess()) {
+                    result = status;
+                }
+                if (--remainingResults > 0) return;
+                done = true;
+                completed = result;
+            }
+            if (emitter.isDisposed()) return;
+            if (completed.isSuccess()) {
+                emitter.onNext(completed);
+                emitter.onComplete();
+            } else {
+                emitter.onError(new StatusException(completed));
+            }
+        }
+
+        void fail(Throwable throwable) {
+            synchronized (this) {
+                if (done) return;
+                done = true;
+            }
+            if (!emitter.isDisposed()) {
+                emitter.onError(throwable);
+            }
+        }
+    }
+}
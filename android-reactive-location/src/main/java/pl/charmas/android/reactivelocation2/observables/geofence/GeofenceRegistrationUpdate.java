@@ -0,0 +1,43 @@
+package pl.charmas.android.reactivelocation2.observables.geofence;
+
+import java.util.List;
+
+/**
+ * Change of geofences registered with Play Services made by nearest geofences registration or
+ * {@link GeofenceRegistry} sync.
+ */
+public class GeofenceRegistrationUpdate {
+    private final List<String> addedRequestIds;
+    private final List<String> removedRequestIds;
+    private final int registeredCount;
+
+    GeofenceRegistrationUpdate(List<String> addedRequestIds, List<String> removedRequestIds, int registeredCount) {
+        this.addedRequestIds = addedRequestIds;
+        this.removedRequestIds = removedRequestIds;
+        this.registeredCount = registeredCount;
+    }
+
+    public List<String> getAddedRequestIds() {
+        return addedRequestIds;
+    }
+
+    public List<String> getRemovedRequestIds() {
+        return removedRequestIds;
+    }
+
+    /**
+     * @return number of geofences registered after this update
+     */
+    public int getRegisteredCount() {
+        return registeredCount;
+    }
+
+    @Override
+    public String toString() {
+        return "GeofenceRegistrationUpdate{" +
+                "added=" + addedRequestIds.size() +
+                ", removed=" + removedRequestIds.size() +
+                ", registered=" + registeredCount +
+                '}';
+    }
+}
@@ -0,0 +1,242 @@
+package pl.charmas.android.reactivelocation2.observables.geofence;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.NonNull;
+
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.location.GeofencingRequest;
+import com.google.android.gms.location.LocationServices;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.ObservableSource;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Function;
+import pl.charmas.android.reactivelocation2.observables.ObservableContext;
+import pl.charmas.android.reactivelocation2.observables.ObservableFactory;
+import pl.charmas.android.reactivelocation2.observables.PlayServicesClientObservableOnSubscribe;
+import pl.charmas.android.reactivelocation2.observables.StatusException;
+import pl.charmas.android.reactivelocation2.observables.backend.PlayServicesClient;
+
+/**
+ * Remembers geofences registered with Play Services for one pending intent, so the desired set
+ * can be synced with minimal number of calls. State is persisted in {@link SharedPreferences} and
+ * survives process death.
+ * <p/>
+ * Pending intents cannot be persisted, so every sync is given a key that identifies target of the
+ * pending intent, for example its action and request code. When the key differs from the one of
+ * last sync all desired geofences are added again, which moves them to the new pending intent.
+ * <p/>
+ * Play Services forget all geofences after reboot, after location is turned off and when their
+ * data is cleared. Call {@link #invalidate()} in such case, next sync adds all geofences again
+ * without removing anything.
+ */
+@SuppressWarnings("MissingPermission")
+public class GeofenceRegistry {
+    private static final String PREFERENCES_PREFIX = "pl.charmas.android.reactivelocation2.geofence_registry.";
+    private static final String INTENT_PREFERENCES_SUFFIX = ".intent";
+    private static final String KEY_PENDING_INTENT = "pending_intent";
+
+    private final ObservableContext ctx;
+    private final ObservableFactory factory;
+    private final SharedPreferences preferences;
+    private final SharedPreferences intentPreferences;
+
+    public static GeofenceRegistry create(ObservableContext ctx, ObservableFactory factory, String name) {
+        Context context = ctx.getContext();
+        // request ids can be any strings, so pending intent key is kept apart from them
+        SharedPreferences preferences = context.getSharedPreferences(PREFERENCES_PREFIX + name, Context.MODE_PRIVATE);
+        SharedPreferences intentPreferences = context.getSharedPreferences(PREFERENCES_PREFIX + name + INTENT_PREFERENCES_SUFFIX, Context.MODE_PRIVATE);
+        return new GeofenceRegistry(ctx, factory, preferences, intentPreferences);
+    }
+
+    private GeofenceRegistry(ObservableContext ctx, ObservableFactory factory, SharedPreferences preferences, SharedPreferences intentPreferences) {
+        this.ctx = ctx;
+        this.factory = factory;
+        this.preferences = preferences;
+        this.intentPreferences = intentPreferences;
+    }
+
+    /**
+     * Makes geofences registered with given pending intent equal to given collection. Geofences
+     * missing from collection are removed with one call, new and changed ones are added in
+     * requests of at most {@link GeofenceRegistrationBatcher#MAX_GEOFENCES_PER_REQUEST} geofences.
+     * All calls of a sync are made over one client connection.
+     * Registry is updated after every successful call, so sync that failed can simply be repeated.
+     * <p/>
+     * When pending intent key differs from the one of last sync, all desired geofences are added
+     * with the new pending intent. Adding geofence with registered request id replaces it, so
+     * none of them stays with the old pending intent. Geofences no longer desired are removed by
+     * request id, which does not need the old pending intent.
+     *
+     * @param geofenceTransitionPendingIntent pending intent geofences are registered with
+     * @param pendingIntentKey                identifies target of the pending intent, for example its action and request code
+     * @param geofences                       desired geofences, only circular ones are supported
+     * @param initialTrigger                  initial trigger of added geofences
+     * @return observable that emits change made by sync and completes
+     */
+    public Observable<GeofenceRegistrationUpdate> sync(final PendingIntent geofenceTransitionPendingIntent, final String pendingIntentKey,
+                                                       final Collection<LocalGeofence> geofences, final int initialTrigger) {
+        return Observable.defer(new Callable<ObservableSource<GeofenceRegistrationUpdate>>() {
+            @Override
+            public ObservableSource<GeofenceRegistrationUpdate> call() throws Exception {
+                Map<String, ?> registered = preferences.getAll();
+                boolean intentChanged = !pendingIntentKey.equals(intentPreferences.getString(KEY_PENDING_INTENT, null));
+                Map<String, LocalGeofence> desired = new LinkedHashMap<>();
+                for (LocalGeofence geofence : geofences) {
+                    desired.put(geofence.getRequestId(), geofence);
+                }
+
+                final List<String> removed = new ArrayList<>();
+                for (String requestId : registered.keySet()) {
+                    if (!desired.containsKey(requestId)) {
+                        removed.add(requestId);
+                    }
+                }
+                // adding geofence with registered request id replaces it, so changed ones are only added
+                final List<LocalGeofence> added = new ArrayList<>();
+                for (LocalGeofence geofence : desired.values()) {
+                    if (intentChanged || !geofence.fingerprint().equals(registered.get(geofence.getRequestId()))) {
+                        added.add(geofence);
+                    }
+                }
+
+                Observable<Boolean> calls = Observable.just(Boolean.TRUE);
+                if (!removed.isEmpty() || !added.isEmpty()) {
+                    calls = PlayServicesClientObservableOnSubscribe.create(ctx, factory, LocationServices.API)
+                            .concatMap(new Function<PlayServicesClient, ObservableSource<Boolean>>() {
+                                @Override
+                                public ObservableSource<Boolean> apply(PlayServicesClient client) throws Exception {
+                                    return removeGeofences(client, removed)
+                                            .concatWith(addGeofences(client, geofenceTransitionPendingIntent, added, initialTrigger))
+                                            .ignoreElements()
+                                            .andThen(Observable.just(Boolean.TRUE));
+                                }
+                            })
+                            // client is disconnected once all calls are done
+                            .take(1);
+                }
+                return calls
+                        .doOnComplete(new Action() {
+                            @Override
+                            public void run() throws Exception {
+                                // stored only after every desired geofence is added with this intent
+                                intentPreferences.edit().putString(KEY_PENDING_INTENT, pendingIntentKey).apply();
+                            }
+                        })
+                        .ignoreElements()
+                        .andThen(Observable.fromCallable(new Callable<GeofenceRegistrationUpdate>() {
+                            @Override
+                            public GeofenceRegistrationUpdate call() throws Exception {
+                                return new GeofenceRegistrationUpdate(requestIds(added), removed, preferences.getAll().size());
+                            }
+                        }));
+            }
+        });
+    }
+
+    /**
+     * Forgets all registered geofences without removing them from Play Services. Should be called
+     * when Play Services dropped them, e.g. on device boot.
+     */
+    public void invalidate() {
+        preferences.edit().clear().apply();
+        intentPreferences.edit().clear().apply();
+    }
+
+    /**
+     * @return request ids of geofences registered with last syncs
+     */
+    public Collection<String> getRegisteredRequestIds() {
+        return Collections.unmodifiableCollection(new ArrayList<>(preferences.getAll().keySet()));
+    }
+
+    private Observable<Status> removeGeofences(final PlayServicesClient client, final List<String> requestIds) {
+        if (requestIds.isEmpty()) {
+            return Observable.empty();
+        }
+        return Observable.create(new ObservableOnSubscribe<Status>() {
+            @Override
+            public void subscribe(ObservableEmitter<Status> emitter) throws Exception {
+                client.removeGeofences(requestIds, statusCallback(emitter));
+            }
+        }).doOnComplete(new Action() {
+            @Override
+            public void run() throws Exception {
+                SharedPreferences.Editor editor = preferences.edit();
+                for (String requestId : requestIds) {
+                    editor.remove(requestId);
+                }
+                editor.apply();
+            }
+        });
+    }
+
+    private Observable<Status> addGeofences(final PlayServicesClient client, final PendingIntent pendingIntent, List<LocalGeofence> geofences,
+                                            final int initialTrigger) {
+        List<List<LocalGeofence>> chunks = new ArrayList<>();
+        for (int i = 0; i < geofences.size(); i += GeofenceRegistrationBatcher.MAX_GEOFENCES_PER_REQUEST) {
+            chunks.add(geofences.subList(i, Math.min(geofences.size(), i + GeofenceRegistrationBatcher.MAX_GEOFENCES_PER_REQUEST)));
+        }
+        return Observable.fromIterable(chunks)
+                .concatMap(new Function<List<LocalGeofence>, ObservableSource<Status>>() {
+                    @Override
+                    public ObservableSource<Status> apply(final List<LocalGeofence> chunk) throws Exception {
+                        final GeofencingRequest.Builder request = new GeofencingRequest.Builder().setInitialTrigger(initialTrigger);
+                        for (LocalGeofence geofence : chunk) {
+                            request.addGeofence(geofence.toGeofence());
+                        }
+                        return Observable.create(new ObservableOnSubscribe<Status>() {
+                            @Override
+                            public void subscribe(ObservableEmitter<Status> emitter) throws Exception {
+                                client.addGeofences(request.build(), pendingIntent, statusCallback(emitter));
+                            }
+                        }).doOnComplete(new Action() {
+                            @Override
+                            public void run() throws Exception {
+                                SharedPreferences.Editor editor = preferences.edit();
+                                for (LocalGeofence geofence : chunk) {
+                                    editor.putString(geofence.getRequestId(), geofence.fingerprint());
+                                }
+                                editor.apply();
+                            }
+                        });
+                    }
+                });
+    }
+
+    private static ResultCallback<Status> statusCallback(final ObservableEmitter<Status> emitter) {
+        return new ResultCallback<Status>() {
+            @Override
+            public void onResult(@NonNull Status status) {
+                if (emitter.isDisposed()) return;
+                if (status.isSuccess()) {
+                    emitter.onNext(status);
+                    emitter.onComplete();
+                } else {
+                    emitter.onError(new StatusException(status));
+                }
+            }
+        };
+    }
+
+    private static List<String> requestIds(List<LocalGeofence> geofences) {
+        List<String> requestIds = new ArrayList<>(geofences.size());
+        for (LocalGeofence geofence : geofences) {
+            requestIds.add(geofence.getRequestId());
+        }
+        return requestIds;
+    }
+}
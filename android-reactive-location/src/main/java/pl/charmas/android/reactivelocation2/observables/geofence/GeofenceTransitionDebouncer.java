@@ -0,0 +1,340 @@
+package pl.charmas.android.reactivelocation2.observables.geofence;
+
+import android.location.Location;
+
+import com.google.android.gms.location.Geofence;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Filters out unstable geofence transitions caused by location jitter near geofence boundaries.
+ * Works with transitions from {@link LocalGeofenceEngine} and with Play Services transitions
+ * converted by {@link GeofenceTransitionEvent#fromGeofencingEvent(com.google.android.gms.location.GeofencingEvent)}.
+ * <p>
+ * A transition is held instead of being emitted right away when:
+ * <ul>
+ * <li>it is an enter and minimal dwell time is set,</li>
+ * <li>its location is closer to boundary than hysteresis distance, it is held for settle time,</li>
+ * <li>it reverts previous transition of the same geofence emitted within dedupe window.</li>
+ * </ul>
+ * Held transition is dropped together with the opposite transition that arrives before it is
+ * emitted. Repeated transitions that do not change state of a geofence are dropped, dwell is
+ * emitted once per stay. Only a constant amount of state is kept per geofence.
+ * <p>
+ * Distance to boundary is known only for local geofences, Play Services transitions are always
+ * treated as close to boundary when hysteresis distance is set. Please use builder to create an
+ * instance.
+ */
+public class GeofenceTransitionDebouncer implements ObservableTransformer<GeofenceTransitionEvent, GeofenceTransitionEvent> {
+    private static final int STATE_UNKNOWN = 0;
+    private static final int STATE_INSIDE = 1;
+    private static final int STATE_OUTSIDE = 2;
+
+    private final float hysteresisDistance;
+    private final long settleTime;
+    private final long minDwellTime;
+    private final long dedupeWindow;
+    private final Scheduler scheduler;
+
+    private GeofenceTransitionDebouncer(Builder builder) {
+        this.hysteresisDistance = builder.hysteresisDistance;
+        this.settleTime = builder.settleTime;
+        this.minDwellTime = builder.minDwellTime;
+        this.dedupeWindow = builder.dedupeWindow;
+        this.scheduler = builder.scheduler;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public ObservableSource<GeofenceTransitionEvent> apply(final Observable<GeofenceTransitionEvent> upstream) {
+        return Observable.create(new ObservableOnSubscribe<GeofenceTransitionEvent>() {
+            @Override
+            public void subscribe(ObservableEmitter<GeofenceTransitionEvent> emitter) throws Exception {
+                final DebounceState state = new DebounceState(emitter, scheduler.createWorker());
+                CompositeDisposable disposables = new CompositeDisposable(state.worker);
+                emitter.setDisposable(disposables);
+                disposables.add(upstream.subscribe(new Consumer<GeofenceTransitionEvent>() {
+                    @Override
+                    public void accept(GeofenceTransitionEvent event) throws Exception {
+                        state.onTransition(event);
+                    }
+                }, new Consumer<Throwable>() {
+                    @Override
+                    public void accept(Throwable throwable) throws Exception {
+                        state.onError(throwable);
+                    }
+                }, new Action() {
+                    @Override
+                    public void run() throws Exception {
+                        state.onComplete();
+                    }
+                }));
+            }
+        });
+    }
+
+    private static class FenceState {
+        int reported = STATE_UNKNOWN;
+        boolean dwellReported;
+        long lastEmittedTime = Long.MIN_VALUE;
+        GeofenceTransitionEvent pending;
+        Disposable pendingTimer;
+    }
+
+    /**
+     * State of single subscription. Upstream transitions and timers are handled under one lock, so
+     * transitions are emitted in order.
+     */
+    private class DebounceState {
+        private final ObservableEmitter<GeofenceTransitionEvent> emitter;
+        private final Scheduler.Worker worker;
+        private final Map<String, FenceState> fences = new HashMap<>();
+
+        DebounceState(ObservableEmitter<GeofenceTransitionEvent> emitter, Scheduler.Worker worker) {
+            this.emitter = emitter;
+            this.worker = worker;
+        }
+
+        synchronized void onTransition(GeofenceTransitionEvent event) {
+            FenceState fence = fences.get(event.getRequestId());
+            if (fence == null) {
+                fence = new FenceState();
+                fences.put(event.getRequestId(), fence);
+            }
+            switch (event.getTransition()) {
+                case Geofence.GEOFENCE_TRANSITION_ENTER:
+                    onStateChange(fence, event, STATE_INSIDE, Geofence.GEOFENCE_TRANSITION_EXIT, minDwellTime);
+                    break;
+                case Geofence.GEOFENCE_TRANSITION_EXIT:
+                    onStateChange(fence, event, STATE_OUTSIDE, Geofence.GEOFENCE_TRANSITION_ENTER, 0);
+                    break;
+                case Geofence.GEOFENCE_TRANSITION_DWELL:
+                    onDwell(fence, event);
+                    break;
+                default:
+                    emitter.onNext(event);
+            }
+        }
+
+        private void onStateChange(FenceState fence, GeofenceTransitionEvent event, int newState, int oppositeTransition, long minHoldTime) {
+            if (fence.pending != null) {
+                if (fence.pending.getTransition() == oppositeTransition) {
+                    // reverted before it was emitted, both transitions are jitter
+                    cancelPending(fence);
+                }
+                return;
+            }
+            if (fence.reported == newState) {
+                return;
+            }
+            long now = now();
+            long holdTime = minHoldTime;
+            if (isCloseToBoundary(event)) {
+                holdTime = Math.max(holdTime, settleTime);
+            }
+            if (fence.reported != STATE_UNKNOWN && fence.lastEmittedTime != Long.MIN_VALUE) {
+                holdTime = Math.max(holdTime, fence.lastEmittedTime + dedupeWindow - now);
+            }
+            if (holdTime <= 0) {
+                emit(fence, event, now);
+            } else {
+                hold(fence, event, holdTime);
+            }
+        }
+
+        private void onDwell(FenceState fence, GeofenceTransitionEvent event) {
+            if (fence.pending != null) {
+                if (fence.pending.getTransition() != Geofence.GEOFENCE_TRANSITION_ENTER) {
+                    return;
+                }
+                // dwelling confirms the enter
+                GeofenceTransitionEvent enter = fence.pending;
+                cancelPending(fence);
+                emit(fence, enter, now());
+            }
+            if (fence.reported == STATE_OUTSIDE || fence.dwellReported) {
+                return;
+            }
+            fence.dwellReported = true;
+            emitter.onNext(event);
+        }
+
+        private boolean isCloseToBoundary(GeofenceTransitionEvent event) {
+            if (hysteresisDistance <= 0) {
+                return false;
+            }
+            LocalGeofence geofence = event.getGeofence();
+            Location location = event.getLocation();
+            if (geofence == null || location == null) {
+                return true;
+            }
+            double distance = geofence.distanceTo(location.getLatitude(), location.getLongitude());
+            double margin = event.getTransition() == Geofence.GEOFENCE_TRANSITION_ENTER ? -distance : distance;
+            return margin < hysteresisDistance;
+        }
+
+        private void hold(final FenceState fence, final GeofenceTransitionEvent event, long holdTime) {
+            fence.pending = event;
+            fence.pendingTimer = worker.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    onHoldElapsed(fence, event);
+                }
+            }, holdTime, TimeUnit.MILLISECONDS);
+        }
+
+        private synchronized void onHoldElapsed(FenceState fence, GeofenceTransitionEvent event) {
+            if (fence.pending != event) {
+                return;
+            }
+            fence.pending = null;
+            fence.pendingTimer = null;
+            emit(fence, event, now());
+        }
+
+        private void cancelPending(FenceState fence) {
+            fence.pendingTimer.dispose();
+            fence.pending = null;
+            fence.pendingTimer = null;
+        }
+
+        private void emit(FenceState fence, GeofenceTransitionEvent event, long now) {
+            if (event.getTransition() == Geofence.GEOFENCE_TRANSITION_ENTER) {
+                fence.reported = STATE_INSIDE;
+                fence.dwellReported = false;
+            } else {
+                fence.reported = STATE_OUTSIDE;
+            }
+            fence.lastEmittedTime = now;
+            if (!emitter.isDisposed()) {
+                emitter.onNext(event);
+            }
+        }
+
+        private long now() {
+            return scheduler.now(TimeUnit.MILLISECONDS);
+        }
+
+        synchronized void onError(Throwable throwable) {
+            worker.dispose();
+            emitter.onError(throwable);
+        }
+
+        /**
+         * Held transitions can no longer be reverted, so they are emitted before completion.
+         */
+        synchronized void onComplete() {
+            worker.dispose();
+            long now = now();
+            for (FenceState fence : fences.values()) {
+                if (fence.pending != null) {
+                    GeofenceTransitionEvent event = fence.pending;
+                    fence.pending = null;
+                    emit(fence, event, now);
+                }
+            }
+            emitter.onComplete();
+        }
+    }
+
+    public static class Builder {
+        private float hysteresisDistance = 0;
+        private long settleTime = 10000;
+        private long minDwellTime = 0;
+        private long dedupeWindow = 0;
+        private Scheduler scheduler = Schedulers.computation();
+
+        /**
+         * Sets distance from geofence boundary below which transition is considered uncertain and
+         * is held for settle time.
+         * <p>
+         * Default: 0, no transition is held because of distance
+         *
+         * @param meters distance in meters
+         * @return builder instance
+         */
+        public Builder setHysteresisDistance(float meters) {
+            this.hysteresisDistance = meters;
+            return this;
+        }
+
+        /**
+         * Sets time for which transitions close to boundary are held.
+         * <p>
+         * Default: 10 seconds
+         *
+         * @param settleTimeMillis time in milliseconds
+         * @return builder instance
+         */
+        public Builder setSettleTime(long settleTimeMillis) {
+            this.settleTime = settleTimeMillis;
+            return this;
+        }
+
+        /**
+         * Sets time device has to stay inside geofence before enter is emitted.
+         * <p>
+         * Default: 0
+         *
+         * @param minDwellTimeMillis time in milliseconds
+         * @return builder instance
+         */
+        public Builder setMinDwellTime(long minDwellTimeMillis) {
+            this.minDwellTime = minDwellTimeMillis;
+            return this;
+        }
+
+        /**
+         * Sets minimal time between two emitted transitions of the same geofence. Transition
+         * reverting the previous one sooner is held until the window ends.
+         * <p>
+         * Default: 0
+         *
+         * @param dedupeWindowMillis time in milliseconds
+         * @return builder instance
+         */
+        public Builder setDedupeWindow(long dedupeWindowMillis) {
+            this.dedupeWindow = dedupeWindowMillis;
+            return this;
+        }
+
+        /**
+         * Sets scheduler used for hold timers and as a clock.
+         * <p>
+         * Default: {@link Schedulers#computation()}
+         *
+         * @param scheduler scheduler
+         * @return builder instance
+         */
+        public Builder setScheduler(Scheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Builds debouncer instance
+         *
+         * @return debouncer instance
+         */
+        public GeofenceTransitionDebouncer build() {
+            return new GeofenceTransitionDebouncer(this);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package pl.charmas.android.reactivelocation2.observables.geofence;
+
+import android.location.Location;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.location.GeofencingEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single geofence transition. Transition is one of
+ * {@link com.google.android.gms.location.Geofence#GEOFENCE_TRANSITION_ENTER},
+ * {@link com.google.android.gms.location.Geofence#GEOFENCE_TRANSITION_EXIT} or
+ * {@link com.google.android.gms.location.Geofence#GEOFENCE_TRANSITION_DWELL}.
+ */
+public class GeofenceTransitionEvent {
+    private final String requestId;
+    private final int transition;
+    private final Location location;
+    private final LocalGeofence geofence;
+
+    GeofenceTransitionEvent(String requestId, int transition, Location location, @Nullable LocalGeofence geofence) {
+        this.requestId = requestId;
+        this.transition = transition;
+        this.location = location;
+        this.geofence = geofence;
+    }
+
+    /**
+     * Converts transition delivered by Play Services, so it can be processed the same way as
+     * transitions detected locally, e.g. by {@link GeofenceTransitionDebouncer}.
+     *
+     * @param event geofencing event without error
+     * @return one transition for every triggering geofence
+     */
+    public static List<GeofenceTransitionEvent> fromGeofencingEvent(GeofencingEvent event) {
+        List<Geofence> geofences = event.getTriggeringGeofences();
+        List<GeofenceTransitionEvent> events = new ArrayList<>(geofences.size());
+        for (Geofence geofence : geofences) {
+            events.add(new GeofenceTransitionEvent(geofence.getRequestId(), event.getGeofenceTransition(), event.getTriggeringLocation(), null));
+        }
+        return events;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public int getTransition() {
+        return transition;
+    }
+
+    /**
+     * @return location that triggered the transition
+     */
+    public Location getLocation() {
+        return location;
+    }
+
+    /**
+     * @return geofence definition when transition was detected locally, null otherwise
+     */
+    @Nullable
+    public LocalGeofence getGeofence() {
+        return geofence;
+    }
+
+    @Override
+    public String toString() {
+        return "GeofenceTransitionEvent{" +
+                "requestId='" + requestId + '\'' +
+                ", transition=" + transition +
+                ", location=" + location +
+                '}';
+    }
+}
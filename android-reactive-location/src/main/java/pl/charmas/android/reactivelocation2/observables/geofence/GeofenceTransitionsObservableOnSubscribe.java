@@ -0,0 +1,75 @@
+package pl.charmas.android.reactivelocation2.observables.geofence;
+
+import android.support.annotation.NonNull;
+
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.location.GeofencingEvent;
+import com.google.android.gms.location.GeofencingRequest;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import pl.charmas.android.reactivelocation2.observables.BaseLocationObservableOnSubscribe;
+import pl.charmas.android.reactivelocation2.observables.ObservableContext;
+import pl.charmas.android.reactivelocation2.observables.ObservableFactory;
+import pl.charmas.android.reactivelocation2.observables.StatusException;
+import pl.charmas.android.reactivelocation2.observables.backend.PlayServicesClient;
+
+
+@SuppressWarnings("MissingPermission")
+public class GeofenceTransitionsObservableOnSubscribe extends BaseLocationObservableOnSubscribe<GeofencingEvent> {
+    private final GeofencingRequest request;
+    private GeofenceTransitionsListener listener;
+
+    public static Observable<GeofencingEvent> createObservable(ObservableContext ctx, ObservableFactory factory, GeofencingRequest request) {
+        return factory.createObservable(new GeofenceTransitionsObservableOnSubscribe(ctx, request));
+    }
+
+    private GeofenceTransitionsObservableOnSubscribe(ObservableContext ctx, GeofencingRequest request) {
+        super(ctx);
+        this.request = request;
+    }
+
+    @Override
+    protected void onClientReady(PlayServicesClient client, final ObservableEmitter<? super GeofencingEvent> emitter) {
+        // every subscription gets its own listener, backend gives it own intent so removing one
+        // does not touch others
+        listener = new GeofenceTransitionsListener(emitter);
+        client.addGeofences(request, listener, new ResultCallback<Status>() {
+            @Override
+            public void onResult(@NonNull Status status) {
+                if (emitter.isDisposed()) return;
+                if (!status.isSuccess()) {
+                    emitter.onError(new StatusException(status));
+                }
+            }
+        });
+    }
+
+    @Override
+    protected void onDisposed(PlayServicesClient client) {
+        if (listener != null) {
+            client.removeGeofences(listener, null);
+            listener = null;
+        }
+    }
+
+    private static class GeofenceTransitionsListener implements PlayServicesClient.GeofenceListener {
+        private final ObservableEmitter<? super GeofencingEvent> emitter;
+
+        GeofenceTransitionsListener(ObservableEmitter<? super GeofencingEvent> emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void onGeofencingEvent(GeofencingEvent event) {
+            if (emitter.isDisposed()) return;
+            if (event.hasError()) {
+                // geofences are removed by the system, e.g. when location was turned off
+                emitter.onError(new StatusException(new Status(event.getErrorCode())));
+            } else {
+                emitter.onNext(event);
+            }
+        }
+    }
+}
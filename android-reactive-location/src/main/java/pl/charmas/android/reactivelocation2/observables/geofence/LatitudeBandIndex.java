@@ -0,0 +1,50 @@
+package pl.charmas.android.reactivelocation2.observables.geofence;
+
+/**
+ * Splits latitude range of a region into equal bands, every band keeps indexes of items (polygon
+ * edges or corridor segments) whose latitude range overlaps it. Point checks then visit only
+ * items of a single band.
+ */
+final class LatitudeBandIndex {
+    private static final int MAX_BANDS = 512;
+
+    private final double minLatitude;
+    private final double bandHeight;
+    private final int[][] bands;
+
+    LatitudeBandIndex(double[] itemMinLatitudes, double[] itemMaxLatitudes, double minLatitude, double maxLatitude) {
+        int itemCount = itemMinLatitudes.length;
+        int bandCount = Math.max(1, Math.min(MAX_BANDS, itemCount / 2));
+        this.minLatitude = minLatitude;
+        this.bandHeight = Math.max(maxLatitude - minLatitude, 1e-9) / bandCount;
+        this.bands = new int[bandCount][];
+
+        int[] sizes = new int[bandCount];
+        for (int i = 0; i < itemCount; i++) {
+            for (int band = band(itemMinLatitudes[i]), last = band(itemMaxLatitudes[i]); band <= last; band++) {
+                sizes[band]++;
+            }
+        }
+        for (int band = 0; band < bandCount; band++) {
+            bands[band] = new int[sizes[band]];
+            sizes[band] = 0;
+        }
+        for (int i = 0; i < itemCount; i++) {
+            for (int band = band(itemMinLatitudes[i]), last = band(itemMaxLatitudes[i]); band <= last; band++) {
+                bands[band][sizes[band]++] = i;
+            }
+        }
+    }
+
+    /**
+     * Returns indexes of items that may overlap given latitude. Returned array must not be modified.
+     */
+    int[] items(double latitude) {
+        return bands[band(latitude)];
+    }
+
+    private int band(double latitude) {
+        int band = (int) ((latitude - minLatitude) / bandHeight);
+        return Math.max(0, Math.min(bands.length - 1, band));
+    }
+}
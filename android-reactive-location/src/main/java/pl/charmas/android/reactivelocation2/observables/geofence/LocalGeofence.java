@@ -0,0 +1,221 @@
+package pl.charmas.android.reactivelocation2.observables.geofence;
+
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.List;
+
+/**
+ * Geofence evaluated in process by {@link LocalGeofenceEngine}. It is described the same way as
+ * {@link Geofence} and transition types use {@link Geofence} constants. Besides circles, regions
+ * can be polygons and corridors along polylines, which cannot be registered with Play Services.
+ * Please use builder to create an instance.
+ */
+public class LocalGeofence {
+    private final String requestId;
+    private final GeofenceRegion region;
+    private final int transitionTypes;
+    private final int loiteringDelay;
+    private final long expirationDuration;
+
+    private LocalGeofence(Builder builder) {
+        this.requestId = builder.requestId;
+        this.region = builder.region;
+        this.transitionTypes = builder.transitionTypes;
+        this.loiteringDelay = builder.loiteringDelay;
+        this.expirationDuration = builder.expirationDuration;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public int getTransitionTypes() {
+        return transitionTypes;
+    }
+
+    public int getLoiteringDelay() {
+        return loiteringDelay;
+    }
+
+    public long getExpirationDuration() {
+        return expirationDuration;
+    }
+
+    /**
+     * Checks if point lies inside geofence region.
+     *
+     * @param lat latitude
+     * @param lng longitude
+     * @return true if point is inside
+     */
+    public boolean contains(double lat, double lng) {
+        return region.contains(lat, lng);
+    }
+
+    /**
+     * Signed distance from point to geofence boundary.
+     *
+     * @param lat latitude
+     * @param lng longitude
+     * @return distance in meters, negative when point is inside
+     */
+    public double distanceTo(double lat, double lng) {
+        return region.distanceTo(lat, lng);
+    }
+
+    GeofenceRegion getRegion() {
+        return region;
+    }
+
+    /**
+     * Describes every property passed to Play Services, so changed geofences can be told apart
+     * from already registered ones.
+     */
+    String fingerprint() {
+        CircularGeofenceRegion circle = circularRegion();
+        return circle.getLatitude() + "," + circle.getLongitude() + "," + circle.getRadius()
+                + "," + transitionTypes + "," + loiteringDelay + "," + expirationDuration;
+    }
+
+    /**
+     * Converts geofence to its Play Services counterpart, so the same definition can be passed
+     * in {@link com.google.android.gms.location.GeofencingRequest}.
+     *
+     * @return Play Services geofence
+     * @throws IllegalStateException when geofence region is not a circle
+     */
+    public Geofence toGeofence() {
+        CircularGeofenceRegion circle = circularRegion();
+        Geofence.Builder builder = new Geofence.Builder()
+                .setRequestId(requestId)
+                .setCircularRegion(circle.getLatitude(), circle.getLongitude(), circle.getRadius())
+                .setExpirationDuration(expirationDuration)
+                .setTransitionTypes(transitionTypes);
+        if ((transitionTypes & Geofence.GEOFENCE_TRANSITION_DWELL) != 0) {
+            builder.setLoiteringDelay(loiteringDelay);
+        }
+        return builder.build();
+    }
+
+    private CircularGeofenceRegion circularRegion() {
+        if (!(region instanceof CircularGeofenceRegion)) {
+            throw new IllegalStateException("Only circular geofences can be registered with Play Services.");
+        }
+        return (CircularGeofenceRegion) region;
+    }
+
+    public static class Builder {
+        private String requestId;
+        private GeofenceRegion region;
+        private int transitionTypes = Geofence.GEOFENCE_TRANSITION_ENTER | Geofence.GEOFENCE_TRANSITION_EXIT;
+        private int loiteringDelay = 0;
+        private long expirationDuration = Geofence.NEVER_EXPIRE;
+
+        /**
+         * Sets the request ID of the geofence.
+         *
+         * @param requestId request id
+         * @return builder instance
+         */
+        public Builder setRequestId(String requestId) {
+            this.requestId = requestId;
+            return this;
+        }
+
+        /**
+         * Sets the region of this geofence to a circular area.
+         *
+         * @param latitude  latitude in degrees
+         * @param longitude longitude in degrees
+         * @param radius    radius in meters
+         * @return builder instance
+         */
+        public Builder setCircularRegion(double latitude, double longitude, float radius) {
+            this.region = new CircularGeofenceRegion(latitude, longitude, radius);
+            return this;
+        }
+
+        /**
+         * Sets the region of this geofence to a simple polygon. Polygon is closed automatically
+         * and must not cross the antimeridian.
+         *
+         * @param vertices polygon vertices, at least 3
+         * @return builder instance
+         */
+        public Builder setPolygonRegion(List<LatLng> vertices) {
+            this.region = new PolygonGeofenceRegion(vertices);
+            return this;
+        }
+
+        /**
+         * Sets the region of this geofence to all points within given distance from a polyline,
+         * e.g. a corridor along a route. Polyline must not cross the antimeridian.
+         *
+         * @param polyline polyline points
+         * @param radius   distance from polyline in meters
+         * @return builder instance
+         */
+        public Builder setCorridorRegion(List<LatLng> polyline, float radius) {
+            this.region = new CorridorGeofenceRegion(polyline, radius);
+            return this;
+        }
+
+        /**
+         * Sets the transition types of interest, combination of {@link Geofence#GEOFENCE_TRANSITION_ENTER},
+         * {@link Geofence#GEOFENCE_TRANSITION_EXIT} and {@link Geofence#GEOFENCE_TRANSITION_DWELL}.
+         * <p>
+         * Default: enter and exit
+         *
+         * @param transitionTypes transition types
+         * @return builder instance
+         */
+        public Builder setTransitionTypes(int transitionTypes) {
+            this.transitionTypes = transitionTypes;
+            return this;
+        }
+
+        /**
+         * Sets the delay between entering and dwelling inside the geofence.
+         * <p>
+         * Default: 0
+         *
+         * @param loiteringDelayMs delay in milliseconds
+         * @return builder instance
+         */
+        public Builder setLoiteringDelay(int loiteringDelayMs) {
+            this.loiteringDelay = loiteringDelayMs;
+            return this;
+        }
+
+        /**
+         * Sets the expiration duration of geofence counted from time of the first location of every
+         * stream evaluated by {@link LocalGeofenceEngine}, so expiry follows location time the same
+         * way as dwell does. Expired geofence is dropped without an exit transition.
+         * <p>
+         * Default: {@link Geofence#NEVER_EXPIRE}
+         *
+         * @param durationMillis duration in milliseconds
+         * @return builder instance
+         */
+        public Builder setExpirationDuration(long durationMillis) {
+            this.expirationDuration = durationMillis;
+            return this;
+        }
+
+        /**
+         * Builds geofence instance
+         *
+         * @return geofence instance
+         */
+        public LocalGeofence build() {
+            if (requestId == null) {
+                throw new IllegalArgumentException("Request ID not set.");
+            }
+            if (region == null) {
+                throw new IllegalArgumentException("Geofence region not set.");
+            }
+            return new LocalGeofence(this);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package pl.charmas.android.reactivelocation2.observables.geofence;
+
+import android.location.Location;
+
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.location.GeofencingRequest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.functions.Function;
+
+/**
+ * Evaluates any number of {@link LocalGeofence} against a location stream in process. Geofences
+ * are indexed in a uniform grid, so every location is checked only against geofences overlapping
+ * its grid cell and geofences it is currently inside.
+ * <p>
+ * Engine itself is immutable and can be composed with many location streams, each subscription
+ * keeps its own transition state, and expiration durations are counted from time of its first
+ * location. Use it with {@link Observable#compose(ObservableTransformer)}:
+ * <pre>
+ * locationProvider.getUpdatedLocation(request).compose(engine)
+ * </pre>
+ * Please use builder to create an instance.
+ */
+public class LocalGeofenceEngine implements ObservableTransformer<Location, GeofenceTransitionEvent> {
+    private final LocalGeofence[] geofences;
+    private final GeofenceRegion[] regions;
+    private final long[] expirationDurations;
+    private final GeofenceGridIndex index;
+    private final int initialTrigger;
+
+    private LocalGeofenceEngine(Builder builder) {
+        this.geofences = builder.geofences.toArray(new LocalGeofence[builder.geofences.size()]);
+        this.regions = new GeofenceRegion[geofences.length];
+        this.expirationDurations = new long[geofences.length];
+        for (int i = 0; i < geofences.length; i++) {
+            regions[i] = geofences[i].getRegion();
+            long duration = geofences[i].getExpirationDuration();
+            expirationDurations[i] = duration < 0 ? Long.MAX_VALUE : duration;
+        }
+        this.index = new GeofenceGridIndex(regions, builder.cellSizeDegrees);
+        this.initialTrigger = builder.initialTrigger;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int getGeofenceCount() {
+        return geofences.length;
+    }
+
+    @Override
+    public ObservableSource<GeofenceTransitionEvent> apply(final Observable<Location> upstream) {
+        return Observable.defer(new Callable<ObservableSource<GeofenceTransitionEvent>>() {
+            @Override
+            public ObservableSource<GeofenceTransitionEvent> call() throws Exception {
+                final EvaluationState state = new EvaluationState();
+                return upstream.flatMapIterable(new Function<Location, Iterable<GeofenceTransitionEvent>>() {
+                    @Override
+                    public Iterable<GeofenceTransitionEvent> apply(Location location) {
+                        return state.evaluate(location);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Transition state of single subscription. Allocates only when transitions are reported.
+     */
+    private class EvaluationState {
+        private final boolean[] inside = new boolean[geofences.length];
+        private final boolean[] dwelled = new boolean[geofences.length];
+        private final boolean[] expired = new boolean[geofences.length];
+        private final long[] enterTimes = new long[geofences.length];
+        private final int[] evaluationStamps = new int[geofences.length];
+        private final int[] insideIndexes = new int[geofences.length];
+        private int insideCount = 0;
+        private int stamp = 0;
+        private boolean initialized = false;
+        private long firstTime;
+
+        List<GeofenceTransitionEvent> evaluate(Location location) {
+            double lat = location.getLatitude();
+            double lng = location.getLongitude();
+            long time = location.getTime();
+            List<GeofenceTransitionEvent> events = null;
+            stamp++;
+            if (!initialized) {
+                firstTime = time;
+            }
+
+            int[] candidates = index.candidates(lat, lng);
+            for (int candidate : candidates) {
+                events = evaluate(candidate, lat, lng, time, location, events);
+            }
+            // geofences from other cells still need an exit check
+            for (int i = insideCount - 1; i >= 0; i--) {
+                events = evaluate(insideIndexes[i], lat, lng, time, location, events);
+            }
+            initialized = true;
+            return events != null ? events : Collections.<GeofenceTransitionEvent>emptyList();
+        }
+
+        private List<GeofenceTransitionEvent> evaluate(int i, double lat, double lng, long time, Location location, List<GeofenceTransitionEvent> events) {
+            if (evaluationStamps[i] == stamp) {
+                return events;
+            }
+            evaluationStamps[i] = stamp;
+            if (expired[i]) {
+                return events;
+            }
+            if (time - firstTime >= expirationDurations[i]) {
+                // like Play Services, expired geofence is removed without a transition
+                expired[i] = true;
+                if (inside[i]) {
+                    inside[i] = false;
+                    removeInside(i);
+                }
+                return events;
+            }
+            boolean nowInside = regions[i].contains(lat, lng);
+            if (nowInside && !inside[i]) {
+                inside[i] = true;
+                dwelled[i] = false;
+                enterTimes[i] = time;
+                insideIndexes[insideCount++] = i;
+                if (!initialized && (initialTrigger & GeofencingRequest.INITIAL_TRIGGER_ENTER) == 0) {
+                    return events;
+                }
+                events = report(i, Geofence.GEOFENCE_TRANSITION_ENTER, location, events);
+            } else if (!nowInside && inside[i]) {
+                inside[i] = false;
+                removeInside(i);
+                events = report(i, Geofence.GEOFENCE_TRANSITION_EXIT, location, events);
+            }
+            if (inside[i] && !dwelled[i] && time - enterTimes[i] >= geofences[i].getLoiteringDelay()) {
+                if (initialized || (initialTrigger & GeofencingRequest.INITIAL_TRIGGER_DWELL) != 0) {
+                    dwelled[i] = true;
+                    events = report(i, Geofence.GEOFENCE_TRANSITION_DWELL, location, events);
+                }
+            }
+            return events;
+        }
+
+        private void removeInside(int geofenceIndex) {
+            for (int i = 0; i < insideCount; i++) {
+                if (insideIndexes[i] == geofenceIndex) {
+                    insideIndexes[i] = insideIndexes[--insideCount];
+                    return;
+                }
+            }
+        }
+
+        private List<GeofenceTransitionEvent> report(int i, int transition, Location location, List<GeofenceTransitionEvent> events) {
+            if ((geofences[i].getTransitionTypes() & transition) == 0) {
+                return events;
+            }
+            if (events == null) {
+                events = new ArrayList<>(2);
+            }
+            events.add(new GeofenceTransitionEvent(geofences[i].getRequestId(), transition, location, geofences[i]));
+            return events;
+        }
+    }
+
+    public static class Builder {
+        private final List<LocalGeofence> geofences = new ArrayList<>();
+        private double cellSizeDegrees = 0.01;
+        private int initialTrigger = GeofencingRequest.INITIAL_TRIGGER_ENTER | GeofencingRequest.INITIAL_TRIGGER_DWELL;
+
+        /**
+         * Adds geofence to be evaluated.
+         *
+         * @param geofence geofence
+         * @return builder instance
+         */
+        public Builder addGeofence(LocalGeofence geofence) {
+            geofences.add(geofence);
+            return this;
+        }
+
+        /**
+         * Adds geofences to be evaluated.
+         *
+         * @param geofences geofences
+         * @return builder instance
+         */
+        public Builder addGeofences(Collection<LocalGeofence> geofences) {
+            this.geofences.addAll(geofences);
+            return this;
+        }
+
+        /**
+         * Sets transitions reported for geofences that first location of a stream is inside of,
+         * combination of {@link GeofencingRequest#INITIAL_TRIGGER_ENTER} and {@link GeofencingRequest#INITIAL_TRIGGER_DWELL}.
+         * <p>
+         * Default: enter and dwell, same as in {@link GeofencingRequest}
+         *
+         * @param initialTrigger initial trigger
+         * @return builder instance
+         */
+        public Builder setInitialTrigger(int initialTrigger) {
+            this.initialTrigger = initialTrigger;
+            return this;
+        }
+
+        /**
+         * Sets size of spatial index cell. Cells should be comparable to typical geofence size:
+         * larger cells mean more geofences checked per location, smaller ones more memory.
+         * <p>
+         * Default: 0.01 degree, roughly 1 km
+         *
+         * @param cellSizeDegrees cell size in degrees
+         * @return builder instance
+         */
+        public Builder setCellSize(double cellSizeDegrees) {
+            this.cellSizeDegrees = cellSizeDegrees;
+            return this;
+        }
+
+        /**
+         * Builds engine instance
+         *
+         * @return engine instance
+         */
+        public LocalGeofenceEngine build() {
+            return new LocalGeofenceEngine(this);
+        }
+    }
+}
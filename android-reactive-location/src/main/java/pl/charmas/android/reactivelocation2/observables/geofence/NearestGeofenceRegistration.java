@@ -0,0 +1,259 @@
+package pl.charmas.android.reactivelocation2.observables.geofence;
+
+import android.app.PendingIntent;
+import android.location.Location;
+
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.location.GeofencingRequest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.functions.Predicate;
+import pl.charmas.android.reactivelocation2.observables.GeoMath;
+import pl.charmas.android.reactivelocation2.observables.ObservableContext;
+import pl.charmas.android.reactivelocation2.observables.ObservableFactory;
+
+/**
+ * Keeps geofences nearest to the device registered with Play Services, while the full set is kept
+ * in a local grid index. Registration is recomputed only after device moved by more than minimal
+ * displacement and only the difference is removed and added. Geofences registered by a subscription
+ * are removed when it is disposed, including those of an add still in flight.
+ */
+@SuppressWarnings("MissingPermission")
+public class NearestGeofenceRegistration {
+    private static final double CELL_SIZE_DEGREES = 0.01;
+    private static final int MAX_SEARCH_RINGS = 32;
+
+    private final ObservableContext ctx;
+    private final ObservableFactory factory;
+    private final PendingIntent pendingIntent;
+    private final LocalGeofence[] geofences;
+    private final CircularGeofenceRegion[] regions;
+    private final GeofenceGridIndex index;
+    private final int maxRegistered;
+    private final float minDisplacementMeters;
+
+    public static Observable<GeofenceRegistrationUpdate> createObservable(ObservableContext ctx, ObservableFactory factory, Observable<Location> locations,
+                                                                          PendingIntent pendingIntent, Collection<LocalGeofence> geofences,
+                                                                          int maxRegistered, float minDisplacementMeters) {
+        return new NearestGeofenceRegistration(ctx, factory, pendingIntent, geofences, maxRegistered, minDisplacementMeters).observable(locations);
+    }
+
+    private NearestGeofenceRegistration(ObservableContext ctx, ObservableFactory factory, PendingIntent pendingIntent, Collection<LocalGeofence> geofences,
+                                        int maxRegistered, float minDisplacementMeters) {
+        if (maxRegistered <= 0 || maxRegistered > GeofenceRegistrationBatcher.MAX_GEOFENCES_PER_REQUEST) {
+            throw new IllegalArgumentException("Max registered geofences must be between 1 and "
+                    + GeofenceRegistrationBatcher.MAX_GEOFENCES_PER_REQUEST);
+        }
+        this.ctx = ctx;
+        this.factory = factory;
+        this.pendingIntent = pendingIntent;
+        this.geofences = geofences.toArray(new LocalGeofence[geofences.size()]);
+        this.regions = new CircularGeofenceRegion[this.geofences.length];
+        for (int i = 0; i < regions.length; i++) {
+            GeofenceRegion region = this.geofences[i].getRegion();
+            if (!(region instanceof CircularGeofenceRegion)) {
+                throw new IllegalArgumentException("Only circular geofences can be registered with Play Services: " + this.geofences[i].getRequestId());
+            }
+            regions[i] = (CircularGeofenceRegion) region;
+        }
+        this.index = new GeofenceGridIndex(regions, CELL_SIZE_DEGREES);
+        this.maxRegistered = maxRegistered;
+        this.minDisplacementMeters = minDisplacementMeters;
+    }
+
+    private Observable<GeofenceRegistrationUpdate> observable(final Observable<Location> locations) {
+        return Observable.defer(new Callable<ObservableSource<GeofenceRegistrationUpdate>>() {
+            @Override
+            public ObservableSource<GeofenceRegistrationUpdate> call() throws Exception {
+                final Set<String> registered = Collections.synchronizedSet(new HashSet<String>());
+                return locations
+                        .filter(new DisplacementFilter())
+                        .concatMap(new Function<Location, Observable<GeofenceRegistrationUpdate>>() {
+                            @Override
+                            public Observable<GeofenceRegistrationUpdate> apply(Location location) {
+                                return update(location, registered);
+                            }
+                        })
+                        .doFinally(new Action() {
+                            @Override
+                            public void run() throws Exception {
+                                unregister(registered);
+                            }
+                        });
+            }
+        });
+    }
+
+    private Observable<GeofenceRegistrationUpdate> update(Location location, final Set<String> registered) {
+        int[] nearest = new int[Math.min(maxRegistered, geofences.length)];
+        int count = nearest(location.getLatitude(), location.getLongitude(), nearest);
+
+        Set<String> desired = new HashSet<>(count * 2);
+        final List<String> added = new ArrayList<>();
+        List<Geofence> geofencesToAdd = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            LocalGeofence geofence = geofences[nearest[i]];
+            desired.add(geofence.getRequestId());
+            if (!registered.contains(geofence.getRequestId())) {
+                added.add(geofence.getRequestId());
+                geofencesToAdd.add(geofence.toGeofence());
+            }
+        }
+        final List<String> removed = new ArrayList<>();
+        synchronized (registered) {
+            for (String requestId : registered) {
+                if (!desired.contains(requestId)) {
+                    removed.add(requestId);
+                }
+            }
+        }
+        if (added.isEmpty() && removed.isEmpty()) {
+            return Observable.empty();
+        }
+
+        Observable<Status> operations = Observable.empty();
+        if (!removed.isEmpty()) {
+            // removal goes first so added geofences fit in Play Services limit
+            operations = operations.concatWith(RemoveGeofenceObservableOnSubscribe.createObservable(ctx, factory, removed)
+                    .doOnComplete(new Action() {
+                        @Override
+                        public void run() throws Exception {
+                            registered.removeAll(removed);
+                        }
+                    }));
+        }
+        if (!geofencesToAdd.isEmpty()) {
+            GeofencingRequest request = new GeofencingRequest.Builder().addGeofences(geofencesToAdd).build();
+            // marked before the add is issued, Play Services may register geofences of a request
+            // whose subscription was disposed meanwhile, so unregister has to remove them too
+            operations = operations.concatWith(AddGeofenceObservableOnSubscribe.createObservable(ctx, factory, request, pendingIntent)
+                    .doOnSubscribe(new Consumer<Disposable>() {
+                        @Override
+                        public void accept(Disposable disposable) throws Exception {
+                            registered.addAll(added);
+                        }
+                    }));
+        }
+        return operations
+                .ignoreElements()
+                .andThen(Observable.fromCallable(new Callable<GeofenceRegistrationUpdate>() {
+                    @Override
+                    public GeofenceRegistrationUpdate call() throws Exception {
+                        return new GeofenceRegistrationUpdate(added, removed, registered.size());
+                    }
+                }));
+    }
+
+    private void unregister(Set<String> registered) {
+        List<String> requestIds;
+        synchronized (registered) {
+            requestIds = new ArrayList<>(registered);
+            registered.clear();
+        }
+        if (!requestIds.isEmpty()) {
+            RemoveGeofenceObservableOnSubscribe.createObservable(ctx, factory, requestIds)
+                    .subscribe(new Consumer<Status>() {
+                        @Override
+                        public void accept(Status status) throws Exception {
+                        }
+                    }, new Consumer<Throwable>() {
+                        @Override
+                        public void accept(Throwable throwable) throws Exception {
+                            // nobody is listening anymore, geofences will expire with Play Services data
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Finds geofences with boundaries nearest to given point by searching grid cells in rings of
+     * growing size, falling back to full scan when geofences are far away.
+     *
+     * @return number of indexes written to out, sorted by distance
+     */
+    int nearest(double lat, double lng, int[] out) {
+        int limit = out.length;
+        if (regions.length <= limit) {
+            for (int i = 0; i < regions.length; i++) {
+                out[i] = i;
+            }
+            return regions.length;
+        }
+        double[] distances = new double[limit];
+        boolean[] visited = new boolean[regions.length];
+        int found = 0;
+        long latIndex = index.index(lat);
+        long lngIndex = index.index(lng);
+        double ringMeters = index.getCellSize() * GeoMath.METERS_PER_DEGREE * Math.cos(Math.toRadians(lat));
+
+        for (int ring = 0; ring <= MAX_SEARCH_RINGS; ring++) {
+            if (found == limit && (ring - 1) * ringMeters >= distances[limit - 1]) {
+                return found;
+            }
+            for (int dy = -ring; dy <= ring; dy++) {
+                int step = (dy == -ring || dy == ring) ? 1 : 2 * ring;
+                for (int dx = -ring; dx <= ring; dx += step) {
+                    for (int candidate : index.cell(latIndex + dy, lngIndex + dx)) {
+                        if (!visited[candidate]) {
+                            visited[candidate] = true;
+                            found = insert(candidate, regions[candidate].distanceTo(lat, lng), out, distances, found);
+                        }
+                    }
+                }
+            }
+        }
+
+        found = 0;
+        for (int i = 0; i < regions.length; i++) {
+            found = insert(i, regions[i].distanceTo(lat, lng), out, distances, found);
+        }
+        return found;
+    }
+
+    private static int insert(int candidate, double distance, int[] out, double[] distances, int found) {
+        int limit = out.length;
+        if (found == limit && distance >= distances[limit - 1]) {
+            return found;
+        }
+        int position = found < limit ? found++ : limit - 1;
+        while (position > 0 && distances[position - 1] > distance) {
+            out[position] = out[position - 1];
+            distances[position] = distances[position - 1];
+            position--;
+        }
+        out[position] = candidate;
+        distances[position] = distance;
+        return found;
+    }
+
+    private class DisplacementFilter implements Predicate<Location> {
+        private boolean hasAnchor = false;
+        private double anchorLatitude;
+        private double anchorLongitude;
+
+        @Override
+        public boolean test(Location location) {
+            if (hasAnchor && GeoMath.distanceMeters(anchorLatitude, anchorLongitude, location.getLatitude(), location.getLongitude()) < minDisplacementMeters) {
+                return false;
+            }
+            hasAnchor = true;
+            anchorLatitude = location.getLatitude();
+            anchorLongitude = location.getLongitude();
+            return true;
+        }
+    }
+}
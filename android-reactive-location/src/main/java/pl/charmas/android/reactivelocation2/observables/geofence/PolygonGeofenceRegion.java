@@ -0,0 +1,131 @@
+package pl.charmas.android.reactivelocation2.observables.geofence;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.List;
+
+import pl.charmas.android.reactivelocation2.observables.GeoMath;
+
+/**
+ * Simple polygon tested with crossing number rule in plain latitude and longitude, edges are
+ * indexed in latitude bands so a check visits only edges crossing latitude of the point. Polygon
+ * must not cross the antimeridian.
+ */
+class PolygonGeofenceRegion implements GeofenceRegion {
+    private final double[] edges;
+    private final LatitudeBandIndex edgeIndex;
+    private final double minLatitude;
+    private final double maxLatitude;
+    private final double minLongitude;
+    private final double maxLongitude;
+
+    PolygonGeofenceRegion(List<LatLng> vertices) {
+        int count = vertices.size();
+        if (count > 1 && vertices.get(0).latitude == vertices.get(count - 1).latitude
+                && vertices.get(0).longitude == vertices.get(count - 1).longitude) {
+            count--;
+        }
+        if (count < 3) {
+            throw new IllegalArgumentException("Polygon needs at least 3 vertices");
+        }
+        this.edges = new double[count * 4];
+        double[] edgeMinLatitudes = new double[count];
+        double[] edgeMaxLatitudes = new double[count];
+        double minLat = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        double minLng = Double.POSITIVE_INFINITY;
+        double maxLng = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            LatLng start = vertices.get(i);
+            LatLng end = vertices.get((i + 1) % count);
+            edges[i * 4] = start.latitude;
+            edges[i * 4 + 1] = start.longitude;
+            edges[i * 4 + 2] = end.latitude;
+            edges[i * 4 + 3] = end.longitude;
+            edgeMinLatitudes[i] = Math.min(start.latitude, end.latitude);
+            edgeMaxLatitudes[i] = Math.max(start.latitude, end.latitude);
+            minLat = Math.min(minLat, start.latitude);
+            maxLat = Math.max(maxLat, start.latitude);
+            minLng = Math.min(minLng, start.longitude);
+            maxLng = Math.max(maxLng, start.longitude);
+        }
+        this.minLatitude = minLat;
+        this.maxLatitude = maxLat;
+        this.minLongitude = minLng;
+        this.maxLongitude = maxLng;
+        this.edgeIndex = new LatitudeBandIndex(edgeMinLatitudes, edgeMaxLatitudes, minLat, maxLat);
+    }
+
+    @Override
+    public double getMinLatitude() {
+        return minLatitude;
+    }
+
+    @Override
+    public double getMaxLatitude() {
+        return maxLatitude;
+    }
+
+    @Override
+    public double getMinLongitude() {
+        return minLongitude;
+    }
+
+    @Override
+    public double getMaxLongitude() {
+        return maxLongitude;
+    }
+
+    @Override
+    public int getPartCount() {
+        return 1;
+    }
+
+    @Override
+    public void getPartBounds(int part, double[] out) {
+        out[0] = minLatitude;
+        out[1] = maxLatitude;
+        out[2] = minLongitude;
+        out[3] = maxLongitude;
+    }
+
+    @Override
+    public boolean contains(double lat, double lng) {
+        if (lat < minLatitude || lat > maxLatitude || lng < minLongitude || lng > maxLongitude) {
+            return false;
+        }
+        boolean inside = false;
+        for (int edge : edgeIndex.items(lat)) {
+            int offset = edge * 4;
+            double lat1 = edges[offset];
+            double lat2 = edges[offset + 2];
+            if ((lat1 > lat) != (lat2 > lat)) {
+                double lng1 = edges[offset + 1];
+                double crossing = lng1 + (lat - lat1) * (edges[offset + 3] - lng1) / (lat2 - lat1);
+                if (lng < crossing) {
+                    inside = !inside;
+                }
+            }
+        }
+        return inside;
+    }
+
+    @Override
+    public double distanceTo(double lat, double lng) {
+        double metersPerDegreeLng = GeoMath.METERS_PER_DEGREE * Math.max(Math.cos(Math.toRadians(lat)), 1e-6);
+        double minDistanceSquared = Double.POSITIVE_INFINITY;
+        for (int offset = 0; offset < edges.length; offset += 4) {
+            double px = (lng - edges[offset + 1]) * metersPerDegreeLng;
+            double py = (lat - edges[offset]) * GeoMath.METERS_PER_DEGREE;
+            double dx = (edges[offset + 3] - edges[offset + 1]) * metersPerDegreeLng;
+            double dy = (edges[offset + 2] - edges[offset]) * GeoMath.METERS_PER_DEGREE;
+            double lengthSquared = dx * dx + dy * dy;
+            double t = lengthSquared > 0 ? Math.max(0, Math.min(1, (px * dx + py * dy) / lengthSquared)) : 0;
+            double ex = px - t * dx;
+            double ey = py - t * dy;
+            minDistanceSquared = Math.min(minDistanceSquared, ex * ex + ey * ey);
+        }
+        double distance = Math.sqrt(minDistanceSquared);
+        return contains(lat, lng) ? -distance : distance;
+    }
+}
@@ -3,14 +3,13 @@ package pl.charmas.android.reactivelocation2.observables.geofence;
 import android.app.PendingIntent;
 import android.support.annotation.NonNull;
 
-import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
 import com.google.android.gms.common.api.Status;
-import com.google.android.gms.location.LocationServices;
 
 import io.reactivex.ObservableEmitter;
 import pl.charmas.android.reactivelocation2.observables.ObservableContext;
 import pl.charmas.android.reactivelocation2.observables.StatusException;
+import pl.charmas.android.reactivelocation2.observables.backend.PlayServicesClient;
 
 
 class RemoveGeofenceByPendingIntentObservableOnSubscribe extends RemoveGeofenceObservableOnSubscribe<Status> {
@@ -22,19 +21,18 @@ class RemoveGeofenceByPendingIntentObservableOnSubscribe extends RemoveGeofenceO
     }
 
     @Override
-    protected void removeGeofences(GoogleApiClient locationClient, final ObservableEmitter<? super Status> emitter) {
-        LocationServices.GeofencingApi.removeGeofences(locationClient, pendingIntent)
-                .setResultCallback(new ResultCallback<Status>() {
-                    @Override
-                    public void onResult(@NonNull Status status) {
-                        if (emitter.isDisposed()) return;
-                        if (status.isSuccess()) {
-                            emitter.onNext(status);
-                            emitter.onComplete();
-                        } else {
-                            emitter.onError(new StatusException(status));
-                        }
-                    }
-                });
+    protected void removeGeofences(PlayServicesClient client, final ObservableEmitter<? super Status> emitter) {
+        client.removeGeofences(pendingIntent, new ResultCallback<Status>() {
+            @Override
+            public void onResult(@NonNull Status status) {
+                if (emitter.isDisposed()) return;
+                if (status.isSuccess()) {
+                    emitter.onNext(status);
+                    emitter.onComplete();
+                } else {
+                    emitter.onError(new StatusException(status));
+                }
+            }
+        });
     }
 }
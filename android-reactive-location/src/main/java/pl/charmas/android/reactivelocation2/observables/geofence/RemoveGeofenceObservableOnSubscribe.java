@@ -2,7 +2,6 @@ package pl.charmas.android.reactivelocation2.observables.geofence;
 
 import android.app.PendingIntent;
 
-import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.Status;
 
 import java.util.List;
@@ -12,6 +11,7 @@ import io.reactivex.ObservableEmitter;
 import pl.charmas.android.reactivelocation2.observables.BaseLocationObservableOnSubscribe;
 import pl.charmas.android.reactivelocation2.observables.ObservableContext;
 import pl.charmas.android.reactivelocation2.observables.ObservableFactory;
+import pl.charmas.android.reactivelocation2.observables.backend.PlayServicesClient;
 
 
 public abstract class RemoveGeofenceObservableOnSubscribe<T> extends BaseLocationObservableOnSubscribe<T> {
@@ -29,10 +29,10 @@ public abstract class RemoveGeofenceObservableOnSubscribe<T> extends BaseLocatio
     }
 
     @Override
-    protected void onGoogleApiClientReady(GoogleApiClient apiClient, final ObservableEmitter<? super T> emitter) {
-        removeGeofences(apiClient, emitter);
+    protected void onClientReady(PlayServicesClient client, final ObservableEmitter<? super T> emitter) {
+        removeGeofences(client, emitter);
     }
 
-    protected abstract void removeGeofences(GoogleApiClient locationClient, ObservableEmitter<? super T> emitter);
+    protected abstract void removeGeofences(PlayServicesClient client, ObservableEmitter<? super T> emitter);
 
 }
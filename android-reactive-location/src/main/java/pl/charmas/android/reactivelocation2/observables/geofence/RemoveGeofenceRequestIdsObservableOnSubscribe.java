@@ -2,16 +2,15 @@ package pl.charmas.android.reactivelocation2.observables.geofence;
 
 import android.support.annotation.NonNull;
 
-import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
 import com.google.android.gms.common.api.Status;
-import com.google.android.gms.location.LocationServices;
 
 import java.util.List;
 
 import io.reactivex.ObservableEmitter;
 import pl.charmas.android.reactivelocation2.observables.ObservableContext;
 import pl.charmas.android.reactivelocation2.observables.StatusException;
+import pl.charmas.android.reactivelocation2.observables.backend.PlayServicesClient;
 
 
 class RemoveGeofenceRequestIdsObservableOnSubscribe extends RemoveGeofenceObservableOnSubscribe<Status> {
@@ -23,19 +22,18 @@ class RemoveGeofenceRequestIdsObservableOnSubscribe extends RemoveGeofenceObserv
     }
 
     @Override
-    protected void removeGeofences(GoogleApiClient locationClient, final ObservableEmitter<? super Status> emitter) {
-        LocationServices.GeofencingApi.removeGeofences(locationClient, geofenceRequestIds)
-                .setResultCallback(new ResultCallback<Status>() {
-                    @Override
-                    public void onResult(@NonNull Status status) {
-                        if (emitter.isDisposed()) return;
-                        if (status.isSuccess()) {
-                            emitter.onNext(status);
-                            emitter.onComplete();
-                        } else {
-                            emitter.onError(new StatusException(status));
-                        }
-                    }
-                });
+    protected void removeGeofences(PlayServicesClient client, final ObservableEmitter<? super Status> emitter) {
+        client.removeGeofences(geofenceRequestIds, new ResultCallback<Status>() {
+            @Override
+            public void onResult(@NonNull Status status) {
+                if (emitter.isDisposed()) return;
+                if (status.isSuccess()) {
+                    emitter.onNext(status);
+                    emitter.onComplete();
+                } else {
+                    emitter.onError(new StatusException(status));
+                }
+            }
+        });
     }
 }
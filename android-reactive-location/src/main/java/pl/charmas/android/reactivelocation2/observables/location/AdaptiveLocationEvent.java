@@ -0,0 +1,83 @@
+package pl.charmas.android.reactivelocation2.observables.location;
+
+import android.location.Location;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.location.LocationRequest;
+
+/**
+ * Event of adaptive location stream, either a location or a switch of active {@link LocationRequest}.
+ * Switch events report how long previous request was active, so time spent in every mode can be
+ * measured.
+ */
+public class AdaptiveLocationEvent {
+    public static final int TYPE_LOCATION = 0;
+    public static final int TYPE_REQUEST_CHANGED = 1;
+
+    private final int type;
+    private final Location location;
+    private final LocationRequest request;
+    private final int activityType;
+    private final long previousRequestDuration;
+
+    private AdaptiveLocationEvent(int type, Location location, LocationRequest request, int activityType, long previousRequestDuration) {
+        this.type = type;
+        this.location = location;
+        this.request = request;
+        this.activityType = activityType;
+        this.previousRequestDuration = previousRequestDuration;
+    }
+
+    static AdaptiveLocationEvent location(Location location, LocationRequest request, int activityType) {
+        return new AdaptiveLocationEvent(TYPE_LOCATION, location, request, activityType, 0);
+    }
+
+    static AdaptiveLocationEvent requestChanged(LocationRequest request, int activityType, long previousRequestDuration) {
+        return new AdaptiveLocationEvent(TYPE_REQUEST_CHANGED, null, request, activityType, previousRequestDuration);
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * @return location for {@link #TYPE_LOCATION} events, null otherwise
+     */
+    @Nullable
+    public Location getLocation() {
+        return location;
+    }
+
+    /**
+     * @return request active when event was emitted, null when location updates are stopped
+     */
+    @Nullable
+    public LocationRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * @return activity type from {@link com.google.android.gms.location.DetectedActivity} active request was chosen for,
+     * -1 when initial request is active
+     */
+    public int getActivityType() {
+        return activityType;
+    }
+
+    /**
+     * @return for {@link #TYPE_REQUEST_CHANGED} events time in milliseconds previous request was active
+     */
+    public long getPreviousRequestDuration() {
+        return previousRequestDuration;
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveLocationEvent{" +
+                "type=" + type +
+                ", location=" + location +
+                ", activityType=" + activityType +
+                ", previousRequestDuration=" + previousRequestDuration +
+                '}';
+    }
+}
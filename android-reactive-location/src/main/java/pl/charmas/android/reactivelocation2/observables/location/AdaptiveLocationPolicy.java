@@ -0,0 +1,139 @@
+package pl.charmas.android.reactivelocation2.observables.location;
+
+import android.support.annotation.Nullable;
+import android.util.SparseArray;
+
+import com.google.android.gms.location.DetectedActivity;
+import com.google.android.gms.location.LocationRequest;
+
+/**
+ * Describes which {@link LocationRequest} should be active for every detected activity. Activity
+ * without configured request does not cause a switch, request configured as null stops location
+ * updates while the activity lasts. Please use builder to create an instance.
+ */
+public class AdaptiveLocationPolicy {
+    static final int NO_ACTIVITY = -1;
+
+    private final SparseArray<LocationRequest> requests;
+    private final int[] activityTypes;
+    private final LocationRequest initialRequest;
+    private final int minConfidence;
+    private final long switchDelay;
+    private final int activityDetectionInterval;
+
+    private AdaptiveLocationPolicy(Builder builder) {
+        this.requests = builder.requests.clone();
+        this.activityTypes = new int[requests.size()];
+        for (int i = 0; i < activityTypes.length; i++) {
+            activityTypes[i] = requests.keyAt(i);
+        }
+        this.initialRequest = builder.initialRequest;
+        this.minConfidence = builder.minConfidence;
+        this.switchDelay = builder.switchDelay;
+        this.activityDetectionInterval = builder.activityDetectionInterval;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    int[] getActivityTypes() {
+        return activityTypes;
+    }
+
+    @Nullable
+    LocationRequest getRequest(int activityType) {
+        return activityType == NO_ACTIVITY ? initialRequest : requests.get(activityType);
+    }
+
+    int getMinConfidence() {
+        return minConfidence;
+    }
+
+    long getSwitchDelay() {
+        return switchDelay;
+    }
+
+    public int getActivityDetectionInterval() {
+        return activityDetectionInterval;
+    }
+
+    public static class Builder {
+        private final SparseArray<LocationRequest> requests = new SparseArray<>();
+        private LocationRequest initialRequest;
+        private int minConfidence = 70;
+        private long switchDelay = 30000;
+        private int activityDetectionInterval = 10000;
+
+        /**
+         * Sets request used while given activity is detected.
+         *
+         * @param activityType activity type from {@link DetectedActivity}
+         * @param request      request or null to stop location updates
+         * @return builder instance
+         */
+        public Builder setRequest(int activityType, @Nullable LocationRequest request) {
+            requests.put(activityType, request);
+            return this;
+        }
+
+        /**
+         * Sets request used before any activity is confirmed.
+         *
+         * @param request request or null to wait for activity before requesting updates
+         * @return builder instance
+         */
+        public Builder setInitialRequest(@Nullable LocationRequest request) {
+            this.initialRequest = request;
+            return this;
+        }
+
+        /**
+         * Sets confidence activity needs to be taken into account.
+         * <p>
+         * Default: 70
+         *
+         * @param minConfidence confidence between 0 and 100
+         * @return builder instance
+         */
+        public Builder setMinConfidence(int minConfidence) {
+            this.minConfidence = minConfidence;
+            return this;
+        }
+
+        /**
+         * Sets time new activity has to be detected without interruption before request is switched.
+         * <p>
+         * Default: 30 seconds
+         *
+         * @param switchDelayMillis time in milliseconds
+         * @return builder instance
+         */
+        public Builder setSwitchDelay(long switchDelayMillis) {
+            this.switchDelay = switchDelayMillis;
+            return this;
+        }
+
+        /**
+         * Sets interval of activity detection.
+         * <p>
+         * Default: 10 seconds
+         *
+         * @param intervalMillis interval in milliseconds
+         * @return builder instance
+         */
+        public Builder setActivityDetectionInterval(int intervalMillis) {
+            this.activityDetectionInterval = intervalMillis;
+            return this;
+        }
+
+        /**
+         * Builds policy instance
+         *
+         * @return policy instance
+         */
+        public AdaptiveLocationPolicy build() {
+            return new AdaptiveLocationPolicy(this);
+        }
+    }
+}
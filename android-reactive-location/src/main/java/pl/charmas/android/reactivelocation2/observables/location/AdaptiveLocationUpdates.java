@@ -0,0 +1,135 @@
+package pl.charmas.android.reactivelocation2.observables.location;
+
+import android.location.Location;
+import android.os.SystemClock;
+
+import com.google.android.gms.location.ActivityRecognitionResult;
+import com.google.android.gms.location.LocationRequest;
+
+import java.util.concurrent.Callable;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.functions.Function;
+import io.reactivex.functions.Predicate;
+import pl.charmas.android.reactivelocation2.observables.ObservableContext;
+import pl.charmas.android.reactivelocation2.observables.ObservableFactory;
+
+/**
+ * Location stream that switches its {@link LocationRequest} according to detected activity. New
+ * activity has to reach minimal confidence and last for switch delay of the policy before the
+ * request is switched, so short or uncertain detections do not cause switching back and forth.
+ */
+public class AdaptiveLocationUpdates {
+
+    private AdaptiveLocationUpdates() {
+        //no instance
+    }
+
+    public static Observable<AdaptiveLocationEvent> createObservable(final ObservableContext ctx, final ObservableFactory factory,
+                                                                     final Observable<ActivityRecognitionResult> activities, final AdaptiveLocationPolicy policy) {
+        return Observable.defer(new Callable<ObservableSource<AdaptiveLocationEvent>>() {
+            @Override
+            public ObservableSource<AdaptiveLocationEvent> call() throws Exception {
+                final ModeSelector selector = new ModeSelector(policy);
+                return activities
+                        .filter(new Predicate<ActivityRecognitionResult>() {
+                            @Override
+                            public boolean test(ActivityRecognitionResult result) throws Exception {
+                                return selector.update(result);
+                            }
+                        })
+                        .map(new Function<ActivityRecognitionResult, Integer>() {
+                            @Override
+                            public Integer apply(ActivityRecognitionResult result) throws Exception {
+                                return selector.getActivityType();
+                            }
+                        })
+                        .startWith(AdaptiveLocationPolicy.NO_ACTIVITY)
+                        .switchMap(new Function<Integer, ObservableSource<AdaptiveLocationEvent>>() {
+                            @Override
+                            public ObservableSource<AdaptiveLocationEvent> apply(Integer activityType) throws Exception {
+                                return updatesFor(ctx, factory, policy.getRequest(activityType), activityType, selector.onRequestSwitched());
+                            }
+                        });
+            }
+        });
+    }
+
+    private static Observable<AdaptiveLocationEvent> updatesFor(ObservableContext ctx, ObservableFactory factory, final LocationRequest request,
+                                                                final int activityType, long previousRequestDuration) {
+        AdaptiveLocationEvent change = AdaptiveLocationEvent.requestChanged(request, activityType, previousRequestDuration);
+        if (request == null) {
+            return Observable.<AdaptiveLocationEvent>never().startWith(change);
+        }
+        return LocationUpdatesObservableOnSubscribe.createObservable(ctx, factory, request)
+                .map(new Function<Location, AdaptiveLocationEvent>() {
+                    @Override
+                    public AdaptiveLocationEvent apply(Location location) throws Exception {
+                        return AdaptiveLocationEvent.location(location, request, activityType);
+                    }
+                })
+                .startWith(change);
+    }
+
+    /**
+     * Confirms activity of single subscription. Activity becomes a candidate when it is the most
+     * confident of configured ones and reaches minimal confidence, candidate is confirmed after it
+     * lasted for switch delay.
+     */
+    private static class ModeSelector {
+        private final AdaptiveLocationPolicy policy;
+        private int activityType = AdaptiveLocationPolicy.NO_ACTIVITY;
+        private int candidate = AdaptiveLocationPolicy.NO_ACTIVITY;
+        private long candidateSince;
+        private long requestSince = -1;
+
+        ModeSelector(AdaptiveLocationPolicy policy) {
+            this.policy = policy;
+        }
+
+        /**
+         * @return true when confirmed activity changed
+         */
+        boolean update(ActivityRecognitionResult result) {
+            int best = AdaptiveLocationPolicy.NO_ACTIVITY;
+            int bestConfidence = policy.getMinConfidence() - 1;
+            for (int type : policy.getActivityTypes()) {
+                int confidence = result.getActivityConfidence(type);
+                if (confidence > bestConfidence) {
+                    best = type;
+                    bestConfidence = confidence;
+                }
+            }
+            if (best == AdaptiveLocationPolicy.NO_ACTIVITY || best == activityType) {
+                candidate = AdaptiveLocationPolicy.NO_ACTIVITY;
+                return false;
+            }
+            long time = result.getElapsedRealtimeMillis();
+            if (best != candidate) {
+                candidate = best;
+                candidateSince = time;
+            }
+            if (time - candidateSince < policy.getSwitchDelay()) {
+                return false;
+            }
+            activityType = candidate;
+            candidate = AdaptiveLocationPolicy.NO_ACTIVITY;
+            return true;
+        }
+
+        int getActivityType() {
+            return activityType;
+        }
+
+        /**
+         * @return time in milliseconds previous request was active, 0 for the first one
+         */
+        long onRequestSwitched() {
+            long now = SystemClock.elapsedRealtime();
+            long duration = requestSince < 0 ? 0 : now - requestSince;
+            requestSince = now;
+            return duration;
+        }
+    }
+}
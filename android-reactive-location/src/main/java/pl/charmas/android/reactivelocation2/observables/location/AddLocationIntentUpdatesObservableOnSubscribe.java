@@ -3,11 +3,9 @@ package pl.charmas.android.reactivelocation2.observables.location;
 import android.app.PendingIntent;
 import android.support.annotation.NonNull;
 
-import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
 import com.google.android.gms.common.api.Status;
 import com.google.android.gms.location.LocationRequest;
-import com.google.android.gms.location.LocationServices;
 
 import io.reactivex.Observable;
 import io.reactivex.ObservableEmitter;
@@ -15,6 +13,7 @@ import pl.charmas.android.reactivelocation2.observables.BaseLocationObservableOn
 import pl.charmas.android.reactivelocation2.observables.ObservableContext;
 import pl.charmas.android.reactivelocation2.observables.ObservableFactory;
 import pl.charmas.android.reactivelocation2.observables.StatusException;
+import pl.charmas.android.reactivelocation2.observables.backend.PlayServicesClient;
 
 
 @SuppressWarnings("MissingPermission")
@@ -33,20 +32,19 @@ public class AddLocationIntentUpdatesObservableOnSubscribe extends BaseLocationO
     }
 
     @Override
-    protected void onGoogleApiClientReady(GoogleApiClient apiClient, final ObservableEmitter<? super Status> emitter) {
-        LocationServices.FusedLocationApi.requestLocationUpdates(apiClient, locationRequest, intent)
-                .setResultCallback(new ResultCallback<Status>() {
-                    @Override
-                    public void onResult(@NonNull Status status) {
-                        if (emitter.isDisposed()) return;
-                        if (!status.isSuccess()) {
-                            emitter.onError(new StatusException(status));
-                        } else {
-                            emitter.onNext(status);
-                            emitter.onComplete();
-                        }
-                    }
-                });
+    protected void onClientReady(PlayServicesClient client, final ObservableEmitter<? super Status> emitter) {
+        client.requestLocationUpdates(locationRequest, intent, new ResultCallback<Status>() {
+            @Override
+            public void onResult(@NonNull Status status) {
+                if (emitter.isDisposed()) return;
+                if (!status.isSuccess()) {
+                    emitter.onError(new StatusException(status));
+                } else {
+                    emitter.onNext(status);
+                    emitter.onComplete();
+                }
+            }
+        });
 
     }
 }
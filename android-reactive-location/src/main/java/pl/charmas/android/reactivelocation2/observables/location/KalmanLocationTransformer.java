@@ -0,0 +1,213 @@
+package pl.charmas.android.reactivelocation2.observables.location;
+
+import android.location.Location;
+
+import java.util.concurrent.Callable;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.functions.Function;
+import pl.charmas.android.reactivelocation2.observables.GeoMath;
+
+/**
+ * Smooths location updates with a constant velocity Kalman filter. Fixes are projected to local
+ * metric coordinates around a moving origin and accuracy of every fix is used as its measurement
+ * noise, so inaccurate fixes move the estimate less than accurate ones.
+ * <p>
+ * Both axes have the same measurement and process noise, so they share one 2x2 covariance. Whole
+ * state is kept in primitive fields and only emitted {@link Location} is allocated per fix.
+ * Emitted location is a copy of the fix with filtered position, accuracy, speed and bearing.
+ * Please use builder to create an instance.
+ */
+public class KalmanLocationTransformer implements ObservableTransformer<Location, Location> {
+    // used for fixes that do not have accuracy
+    private static final float DEFAULT_ACCURACY = 30;
+    private static final float MIN_ACCURACY = 1;
+    // velocity of the first fix is unknown, up to a fast car
+    private static final double INITIAL_VELOCITY_VARIANCE = 30 * 30;
+    // origin is moved before projection error of the equirectangular projection becomes noticeable
+    private static final double MAX_ORIGIN_DISTANCE = 10000;
+    private static final float MIN_BEARING_SPEED = 1;
+
+    private final double accelerationVariance;
+    private final long maxGapNanos;
+
+    private KalmanLocationTransformer(Builder builder) {
+        this.accelerationVariance = builder.acceleration * builder.acceleration;
+        this.maxGapNanos = builder.maxGap * 1000000L;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public ObservableSource<Location> apply(final Observable<Location> upstream) {
+        return Observable.defer(new Callable<ObservableSource<Location>>() {
+            @Override
+            public ObservableSource<Location> call() throws Exception {
+                final FilterState state = new FilterState();
+                return upstream.map(new Function<Location, Location>() {
+                    @Override
+                    public Location apply(Location location) throws Exception {
+                        return state.update(location);
+                    }
+                });
+            }
+        });
+    }
+
+    private class FilterState {
+        private boolean initialized = false;
+        private long lastTime;
+        private double originLat;
+        private double originLng;
+        private double metersPerDegreeLng;
+        private double x;
+        private double y;
+        private double vx;
+        private double vy;
+        // covariance of position and velocity, same for both axes
+        private double p00;
+        private double p01;
+        private double p11;
+
+        Location update(Location location) {
+            long time = LocationTime.nanos(location);
+            float accuracy = location.hasAccuracy() ? Math.max(location.getAccuracy(), MIN_ACCURACY) : DEFAULT_ACCURACY;
+            double measurementVariance = (double) accuracy * accuracy;
+            long dt = time - lastTime;
+            if (!initialized || dt > maxGapNanos) {
+                reset(location, time, measurementVariance);
+            } else {
+                if (dt > 0) {
+                    // fixes with the same or older time only refine current estimate
+                    predict(dt / 1e9);
+                    lastTime = time;
+                }
+                correct(location, measurementVariance);
+                if (Math.abs(x) > MAX_ORIGIN_DISTANCE || Math.abs(y) > MAX_ORIGIN_DISTANCE) {
+                    moveOrigin();
+                }
+            }
+            return toLocation(location);
+        }
+
+        private void reset(Location location, long time, double measurementVariance) {
+            initialized = true;
+            lastTime = time;
+            setOrigin(location.getLatitude(), location.getLongitude());
+            x = 0;
+            y = 0;
+            vx = 0;
+            vy = 0;
+            p00 = measurementVariance;
+            p01 = 0;
+            p11 = INITIAL_VELOCITY_VARIANCE;
+        }
+
+        private void predict(double dt) {
+            double dt2 = dt * dt;
+            x += vx * dt;
+            y += vy * dt;
+            // P = F P F' + Q, Q of a random acceleration constant during dt
+            p00 += dt * (2 * p01 + dt * p11) + accelerationVariance * dt2 * dt2 / 4;
+            p01 += dt * p11 + accelerationVariance * dt2 * dt / 2;
+            p11 += accelerationVariance * dt2;
+        }
+
+        private void correct(Location location, double measurementVariance) {
+            double innovationX = (location.getLongitude() - originLng) * metersPerDegreeLng - x;
+            double innovationY = (location.getLatitude() - originLat) * GeoMath.METERS_PER_DEGREE - y;
+            double s = p00 + measurementVariance;
+            double k0 = p00 / s;
+            double k1 = p01 / s;
+            x += k0 * innovationX;
+            y += k0 * innovationY;
+            vx += k1 * innovationX;
+            vy += k1 * innovationY;
+            p11 -= k1 * p01;
+            p01 -= k0 * p01;
+            p00 -= k0 * p00;
+        }
+
+        private void moveOrigin() {
+            setOrigin(latitude(), longitude());
+            x = 0;
+            y = 0;
+        }
+
+        private void setOrigin(double lat, double lng) {
+            originLat = lat;
+            originLng = lng;
+            metersPerDegreeLng = GeoMath.METERS_PER_DEGREE * Math.cos(Math.toRadians(lat));
+        }
+
+        private double latitude() {
+            return originLat + y / GeoMath.METERS_PER_DEGREE;
+        }
+
+        private double longitude() {
+            return GeoMath.normalizeLongitude(originLng + x / metersPerDegreeLng);
+        }
+
+        private Location toLocation(Location fix) {
+            Location filtered = new Location(fix);
+            filtered.setLatitude(latitude());
+            filtered.setLongitude(longitude());
+            filtered.setAccuracy((float) Math.sqrt(p00));
+            float speed = (float) Math.sqrt(vx * vx + vy * vy);
+            filtered.setSpeed(speed);
+            if (speed >= MIN_BEARING_SPEED) {
+                float bearing = (float) Math.toDegrees(Math.atan2(vx, vy));
+                filtered.setBearing(bearing < 0 ? bearing + 360 : bearing);
+            } else {
+                // direction of a slow estimate is mostly noise
+                filtered.removeBearing();
+            }
+            return filtered;
+        }
+    }
+
+    public static class Builder {
+        private float acceleration = 3;
+        private long maxGap = 60000;
+
+        /**
+         * Sets expected acceleration, used as process noise. Higher values follow turns and speed
+         * changes faster, lower values smooth more.
+         * <p>
+         * Default: 3 m/s^2
+         *
+         * @param metersPerSecondSquared standard deviation of acceleration
+         * @return builder instance
+         */
+        public Builder setAcceleration(float metersPerSecondSquared) {
+            this.acceleration = metersPerSecondSquared;
+            return this;
+        }
+
+        /**
+         * Sets time between fixes after which filter starts again from the next fix.
+         * <p>
+         * Default: 60 seconds
+         *
+         * @param maxGapMillis time in milliseconds
+         * @return builder instance
+         */
+        public Builder setMaxGap(long maxGapMillis) {
+            this.maxGap = maxGapMillis;
+            return this;
+        }
+
+        /**
+         * Builds transformer instance
+         *
+         * @return transformer instance
+         */
+        public KalmanLocationTransformer build() {
+            return new KalmanLocationTransformer(this);
+        }
+    }
+}
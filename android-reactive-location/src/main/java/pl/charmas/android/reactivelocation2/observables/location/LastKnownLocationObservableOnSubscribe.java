@@ -2,14 +2,12 @@ package pl.charmas.android.reactivelocation2.observables.location;
 
 import android.location.Location;
 
-import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.location.LocationServices;
-
 import io.reactivex.Observable;
 import io.reactivex.ObservableEmitter;
 import pl.charmas.android.reactivelocation2.observables.BaseLocationObservableOnSubscribe;
 import pl.charmas.android.reactivelocation2.observables.ObservableContext;
 import pl.charmas.android.reactivelocation2.observables.ObservableFactory;
+import pl.charmas.android.reactivelocation2.observables.backend.PlayServicesClient;
 
 @SuppressWarnings("MissingPermission")
 public class LastKnownLocationObservableOnSubscribe extends BaseLocationObservableOnSubscribe<Location> {
@@ -22,8 +20,8 @@ public class LastKnownLocationObservableOnSubscribe extends BaseLocationObservab
     }
 
     @Override
-    protected void onGoogleApiClientReady(GoogleApiClient apiClient, ObservableEmitter<? super Location> emitter) {
-        Location location = LocationServices.FusedLocationApi.getLastLocation(apiClient);
+    protected void onClientReady(PlayServicesClient client, ObservableEmitter<? super Location> emitter) {
+        Location location = client.getLastLocation();
         if (emitter.isDisposed()) return;
         if (location != null) {
             emitter.onNext(location);
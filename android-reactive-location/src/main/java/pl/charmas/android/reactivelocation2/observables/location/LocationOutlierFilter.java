@@ -0,0 +1,255 @@
+package pl.charmas.android.reactivelocation2.observables.location;
+
+import android.location.Location;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.functions.Predicate;
+import pl.charmas.android.reactivelocation2.observables.GeoMath;
+
+/**
+ * Drops location fixes that cannot be right. A fix is dropped when:
+ * <ul>
+ * <li>it is not newer than the last accepted fix,</li>
+ * <li>reaching it from the last accepted fix requires speed higher than allowed, even when both
+ * fixes are moved by their accuracy towards each other,</li>
+ * <li>its accuracy is worse than median accuracy of recently accepted fixes times given factor.</li>
+ * </ul>
+ * After given number of consecutive drops filter starts again from the next fix, so a wrong first
+ * fix or a permanent change of conditions does not block the stream.
+ * <p>
+ * Work and memory per fix are constant. Counts of dropped fixes are summed over all subscriptions
+ * of the instance. Please use builder to create an instance.
+ */
+public class LocationOutlierFilter implements ObservableTransformer<Location, Location> {
+    // accuracy gate is not applied until median is known from a few fixes
+    private static final int MIN_ACCURACY_SAMPLES = 3;
+    // fixes this accurate are never dropped by accuracy gate, even when median is much lower
+    private static final float MAX_ALWAYS_ACCEPTED_ACCURACY = 20;
+
+    private final float maxSpeed;
+    private final float accuracyFactor;
+    private final int accuracyWindow;
+    private final int maxConsecutiveDrops;
+
+    private final AtomicLong droppedBySpeed = new AtomicLong();
+    private final AtomicLong droppedByAccuracy = new AtomicLong();
+    private final AtomicLong droppedOutOfOrder = new AtomicLong();
+
+    private LocationOutlierFilter(Builder builder) {
+        this.maxSpeed = builder.maxSpeed;
+        this.accuracyFactor = builder.accuracyFactor;
+        this.accuracyWindow = builder.accuracyWindow;
+        this.maxConsecutiveDrops = builder.maxConsecutiveDrops;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public ObservableSource<Location> apply(final Observable<Location> upstream) {
+        return Observable.defer(new Callable<ObservableSource<Location>>() {
+            @Override
+            public ObservableSource<Location> call() throws Exception {
+                final FilterState state = new FilterState();
+                return upstream.filter(new Predicate<Location>() {
+                    @Override
+                    public boolean test(Location location) throws Exception {
+                        return state.accept(location);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @return number of fixes dropped because of too high implied speed
+     */
+    public long getDroppedBySpeed() {
+        return droppedBySpeed.get();
+    }
+
+    /**
+     * @return number of fixes dropped because of accuracy worse than recent median
+     */
+    public long getDroppedByAccuracy() {
+        return droppedByAccuracy.get();
+    }
+
+    /**
+     * @return number of fixes dropped because they were not newer than the last accepted fix
+     */
+    public long getDroppedOutOfOrder() {
+        return droppedOutOfOrder.get();
+    }
+
+    /**
+     * @return total number of dropped fixes
+     */
+    public long getDroppedCount() {
+        return getDroppedBySpeed() + getDroppedByAccuracy() + getDroppedOutOfOrder();
+    }
+
+    private class FilterState {
+        private final float[] accuracies = new float[accuracyWindow];
+        private final float[] sorted = new float[accuracyWindow];
+        private int head = 0;
+        private int size = 0;
+        private boolean hasLast = false;
+        private long lastTime;
+        private double lastLat;
+        private double lastLng;
+        private float lastAccuracy;
+        private int consecutiveDrops = 0;
+
+        boolean accept(Location location) {
+            if (hasLast && consecutiveDrops >= maxConsecutiveDrops) {
+                reset();
+            }
+            long time = LocationTime.nanos(location);
+            if (hasLast) {
+                AtomicLong reason = check(location, time);
+                if (reason != null) {
+                    reason.incrementAndGet();
+                    consecutiveDrops++;
+                    return false;
+                }
+            }
+            consecutiveDrops = 0;
+            hasLast = true;
+            lastTime = time;
+            lastLat = location.getLatitude();
+            lastLng = location.getLongitude();
+            lastAccuracy = location.getAccuracy();
+            if (location.hasAccuracy()) {
+                addAccuracy(location.getAccuracy());
+            }
+            return true;
+        }
+
+        /**
+         * @return counter of the reason to drop the fix, null when it is accepted
+         */
+        private AtomicLong check(Location location, long time) {
+            long dt = time - lastTime;
+            if (dt <= 0) {
+                return droppedOutOfOrder;
+            }
+            double distance = GeoMath.distanceMeters(lastLat, lastLng, location.getLatitude(), location.getLongitude());
+            double minDistance = distance - lastAccuracy - location.getAccuracy();
+            if (minDistance > maxSpeed * (dt / 1e9)) {
+                return droppedBySpeed;
+            }
+            if (location.hasAccuracy() && size >= MIN_ACCURACY_SAMPLES
+                    && location.getAccuracy() > MAX_ALWAYS_ACCEPTED_ACCURACY
+                    && location.getAccuracy() > accuracyFactor * medianAccuracy()) {
+                return droppedByAccuracy;
+            }
+            return null;
+        }
+
+        private void addAccuracy(float accuracy) {
+            accuracies[head] = accuracy;
+            head = (head + 1) % accuracyWindow;
+            size = Math.min(size + 1, accuracyWindow);
+        }
+
+        private float medianAccuracy() {
+            // window is small and fixed, insertion sort of a copy keeps the work per fix constant
+            for (int i = 0; i < size; i++) {
+                float value = accuracies[i];
+                int j = i - 1;
+                while (j >= 0 && sorted[j] > value) {
+                    sorted[j + 1] = sorted[j];
+                    j--;
+                }
+                sorted[j + 1] = value;
+            }
+            return sorted[size / 2];
+        }
+
+        private void reset() {
+            hasLast = false;
+            size = 0;
+            head = 0;
+            consecutiveDrops = 0;
+        }
+    }
+
+    public static class Builder {
+        private float maxSpeed = 70;
+        private float accuracyFactor = 3;
+        private int accuracyWindow = 9;
+        private int maxConsecutiveDrops = 5;
+
+        /**
+         * Sets highest speed device can move with.
+         * <p>
+         * Default: 70 m/s
+         *
+         * @param metersPerSecond speed in meters per second
+         * @return builder instance
+         */
+        public Builder setMaxSpeed(float metersPerSecond) {
+            this.maxSpeed = metersPerSecond;
+            return this;
+        }
+
+        /**
+         * Sets how many times accuracy of a fix can be worse than recent median.
+         * <p>
+         * Default: 3
+         *
+         * @param accuracyFactor factor of median accuracy
+         * @return builder instance
+         */
+        public Builder setAccuracyFactor(float accuracyFactor) {
+            this.accuracyFactor = accuracyFactor;
+            return this;
+        }
+
+        /**
+         * Sets number of recently accepted fixes median accuracy is computed from.
+         * <p>
+         * Default: 9
+         *
+         * @param fixCount number of fixes, at least 1
+         * @return builder instance
+         */
+        public Builder setAccuracyWindow(int fixCount) {
+            if (fixCount < 1) {
+                throw new IllegalArgumentException("Accuracy window must be at least 1");
+            }
+            this.accuracyWindow = fixCount;
+            return this;
+        }
+
+        /**
+         * Sets number of consecutive dropped fixes after which filter starts again from the next
+         * fix.
+         * <p>
+         * Default: 5
+         *
+         * @param maxConsecutiveDrops number of fixes
+         * @return builder instance
+         */
+        public Builder setMaxConsecutiveDrops(int maxConsecutiveDrops) {
+            this.maxConsecutiveDrops = maxConsecutiveDrops;
+            return this;
+        }
+
+        /**
+         * Builds filter instance
+         *
+         * @return filter instance
+         */
+        public LocationOutlierFilter build() {
+            return new LocationOutlierFilter(this);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package pl.charmas.android.reactivelocation2.observables.location;
+
+import android.location.Location;
+import android.os.Build;
+
+class LocationTime {
+    private LocationTime() {
+    }
+
+    /**
+     * @return elapsed realtime of the fix when available, its UTC time otherwise, in nanoseconds
+     */
+    static long nanos(Location location) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 && location.getElapsedRealtimeNanos() > 0) {
+            return location.getElapsedRealtimeNanos();
+        }
+        return location.getTime() * 1000000L;
+    }
+}
@@ -2,10 +2,8 @@ package pl.charmas.android.reactivelocation2.observables.location;
 
 import android.location.Location;
 
-import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.location.LocationListener;
 import com.google.android.gms.location.LocationRequest;
-import com.google.android.gms.location.LocationServices;
 
 import java.lang.ref.WeakReference;
 
@@ -14,6 +12,7 @@ import io.reactivex.ObservableEmitter;
 import pl.charmas.android.reactivelocation2.observables.BaseLocationObservableOnSubscribe;
 import pl.charmas.android.reactivelocation2.observables.ObservableContext;
 import pl.charmas.android.reactivelocation2.observables.ObservableFactory;
+import pl.charmas.android.reactivelocation2.observables.backend.PlayServicesClient;
 
 
 @SuppressWarnings("MissingPermission")
@@ -36,15 +35,15 @@ public class LocationUpdatesObservableOnSubscribe extends BaseLocationObservable
     }
 
     @Override
-    protected void onGoogleApiClientReady(GoogleApiClient apiClient, final ObservableEmitter<? super Location> emitter) {
+    protected void onClientReady(PlayServicesClient client, final ObservableEmitter<? super Location> emitter) {
         listener = new LocationUpdatesLocationListener(emitter);
-        LocationServices.FusedLocationApi.requestLocationUpdates(apiClient, locationRequest, listener);
+        client.requestLocationUpdates(locationRequest, listener, null);
     }
 
     @Override
-    protected void onDisposed(GoogleApiClient locationClient) {
-        if (locationClient.isConnected()) {
-            LocationServices.FusedLocationApi.removeLocationUpdates(locationClient, listener);
+    protected void onDisposed(PlayServicesClient client) {
+        if (listener != null && client.isConnected()) {
+            client.removeLocationUpdates(listener, null);
         }
     }
 
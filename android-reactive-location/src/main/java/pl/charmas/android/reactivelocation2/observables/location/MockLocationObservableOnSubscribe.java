@@ -3,10 +3,8 @@ package pl.charmas.android.reactivelocation2.observables.location;
 import android.location.Location;
 import android.support.annotation.NonNull;
 
-import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
 import com.google.android.gms.common.api.Status;
-import com.google.android.gms.location.LocationServices;
 
 import io.reactivex.Observable;
 import io.reactivex.ObservableEmitter;
@@ -17,6 +15,7 @@ import pl.charmas.android.reactivelocation2.observables.BaseLocationObservableOn
 import pl.charmas.android.reactivelocation2.observables.ObservableContext;
 import pl.charmas.android.reactivelocation2.observables.ObservableFactory;
 import pl.charmas.android.reactivelocation2.observables.StatusException;
+import pl.charmas.android.reactivelocation2.observables.backend.PlayServicesClient;
 
 @SuppressWarnings("MissingPermission")
 public class MockLocationObservableOnSubscribe extends BaseLocationObservableOnSubscribe<Status> {
@@ -33,38 +32,36 @@ public class MockLocationObservableOnSubscribe extends BaseLocationObservableOnS
     }
 
     @Override
-    protected void onGoogleApiClientReady(final GoogleApiClient apiClient, final ObservableEmitter<? super Status> emitter) {
+    protected void onClientReady(final PlayServicesClient client, final ObservableEmitter<? super Status> emitter) {
         // this throws SecurityException if permissions are bad or mock locations are not enabled,
         // which is passed to observer's onError by BaseObservable
-        LocationServices.FusedLocationApi.setMockMode(apiClient, true)
-                .setResultCallback(new ResultCallback<Status>() {
-                    @Override
-                    public void onResult(@NonNull Status status) {
-                        if (status.isSuccess()) {
-                            startLocationMocking(apiClient, emitter);
-                        } else {
-                            emitter.onError(new StatusException(status));
-                        }
-                    }
-                });
+        client.setMockMode(true, new ResultCallback<Status>() {
+            @Override
+            public void onResult(@NonNull Status status) {
+                if (status.isSuccess()) {
+                    startLocationMocking(client, emitter);
+                } else {
+                    emitter.onError(new StatusException(status));
+                }
+            }
+        });
     }
 
-    private void startLocationMocking(final GoogleApiClient apiClient, final ObservableEmitter<? super Status> emitter) {
+    private void startLocationMocking(final PlayServicesClient client, final ObservableEmitter<? super Status> emitter) {
         mockLocationSubscription = locationObservable
                 .subscribe(new Consumer<Location>() {
                                @Override
                                public void accept(Location location) throws Exception {
-                                   LocationServices.FusedLocationApi.setMockLocation(apiClient, location)
-                                           .setResultCallback(new ResultCallback<Status>() {
-                                               @Override
-                                               public void onResult(@NonNull Status status) {
-                                                   if (status.isSuccess()) {
-                                                       emitter.onNext(status);
-                                                   } else {
-                                                       emitter.onError(new StatusException(status));
-                                                   }
-                                               }
-                                           });
+                                   client.setMockLocation(location, new ResultCallback<Status>() {
+                                       @Override
+                                       public void onResult(@NonNull Status status) {
+                                           if (status.isSuccess()) {
+                                               emitter.onNext(status);
+                                           } else {
+                                               emitter.onError(new StatusException(status));
+                                           }
+                                       }
+                                   });
                                }
                            },
 
@@ -84,10 +81,10 @@ public class MockLocationObservableOnSubscribe extends BaseLocationObservableOnS
     }
 
     @Override
-    protected void onDisposed(GoogleApiClient locationClient) {
-        if (locationClient.isConnected()) {
+    protected void onDisposed(PlayServicesClient client) {
+        if (client.isConnected()) {
             try {
-                LocationServices.FusedLocationApi.setMockMode(locationClient, false);
+                client.setMockMode(false, null);
             } catch (SecurityException e) {
                 // if this happens then we couldn't have switched mock mode on in the first place,
                 // and the observer's onError will already have been called
@@ -0,0 +1,96 @@
+package pl.charmas.android.reactivelocation2.observables.location;
+
+/**
+ * Flow control of pipelined mock locations. Please use builder to create an instance.
+ */
+public class MockLocationOptions {
+    private final int maxInFlight;
+    private final boolean coalesce;
+    private final int reportInterval;
+
+    private MockLocationOptions(Builder builder) {
+        this.maxInFlight = builder.maxInFlight;
+        this.coalesce = builder.coalesce;
+        this.reportInterval = builder.reportInterval;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public boolean isCoalesce() {
+        return coalesce;
+    }
+
+    public int getReportInterval() {
+        return reportInterval;
+    }
+
+    public static class Builder {
+        private int maxInFlight = 4;
+        private boolean coalesce = false;
+        private int reportInterval = 100;
+
+        /**
+         * Sets number of mock locations sent to Google Play Services without waiting for their
+         * results.
+         * <p>
+         * Default: 4
+         *
+         * @param maxInFlight number of locations, at least 1
+         * @return builder instance
+         */
+        public Builder setMaxInFlight(int maxInFlight) {
+            if (maxInFlight < 1) {
+                throw new IllegalArgumentException("At least one location has to be in flight");
+            }
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * Sets whether source is requested without limit and only the newest location is kept
+         * while the window is full. Otherwise source is requested one location per free slot and
+         * all locations are sent in order.
+         * <p>
+         * Default: false
+         *
+         * @param coalesce true to drop intermediate locations
+         * @return builder instance
+         */
+        public Builder setCoalesce(boolean coalesce) {
+            this.coalesce = coalesce;
+            return this;
+        }
+
+        /**
+         * Sets number of completed locations after which a report is emitted. Final report is
+         * emitted when source completes.
+         * <p>
+         * Default: 100
+         *
+         * @param locations number of locations, at least 1
+         * @return builder instance
+         */
+        public Builder setReportInterval(int locations) {
+            if (locations < 1) {
+                throw new IllegalArgumentException("Report interval must be at least 1");
+            }
+            this.reportInterval = locations;
+            return this;
+        }
+
+        /**
+         * Builds options instance
+         *
+         * @return options instance
+         */
+        public MockLocationOptions build() {
+            return new MockLocationOptions(this);
+        }
+    }
+}
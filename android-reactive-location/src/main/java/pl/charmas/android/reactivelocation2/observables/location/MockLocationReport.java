@@ -0,0 +1,78 @@
+package pl.charmas.android.reactivelocation2.observables.location;
+
+import com.google.android.gms.common.api.Status;
+
+/**
+ * Progress of pipelined mock locations since mocking started.
+ */
+public class MockLocationReport {
+    private final long succeededCount;
+    private final long coalescedCount;
+    private final int queuedCount;
+    private final long elapsedMillis;
+    private final Status lastStatus;
+    private final boolean complete;
+
+    MockLocationReport(long succeededCount, long coalescedCount, int queuedCount, long elapsedMillis, Status lastStatus, boolean complete) {
+        this.succeededCount = succeededCount;
+        this.coalescedCount = coalescedCount;
+        this.queuedCount = queuedCount;
+        this.elapsedMillis = elapsedMillis;
+        this.lastStatus = lastStatus;
+        this.complete = complete;
+    }
+
+    /**
+     * @return number of locations accepted by Google Play Services
+     */
+    public long getSucceededCount() {
+        return succeededCount;
+    }
+
+    /**
+     * @return number of locations dropped because newer one arrived while the window was full
+     */
+    public long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * @return number of locations waiting for a free slot in the window
+     */
+    public int getQueuedCount() {
+        return queuedCount;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return accepted locations per second
+     */
+    public double getThroughput() {
+        return elapsedMillis > 0 ? succeededCount * 1000.0 / elapsedMillis : 0;
+    }
+
+    public Status getLastStatus() {
+        return lastStatus;
+    }
+
+    /**
+     * @return true for the final report emitted after source completed
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public String toString() {
+        return "MockLocationReport{" +
+                "succeededCount=" + succeededCount +
+                ", coalescedCount=" + coalescedCount +
+                ", queuedCount=" + queuedCount +
+                ", elapsedMillis=" + elapsedMillis +
+                ", complete=" + complete +
+                '}';
+    }
+}
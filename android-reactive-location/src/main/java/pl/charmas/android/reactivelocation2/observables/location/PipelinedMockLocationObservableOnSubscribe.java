@@ -0,0 +1,171 @@
+package pl.charmas.android.reactivelocation2.observables.location;
+
+import android.location.Location;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.api.Status;
+
+import java.util.ArrayDeque;
+
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.subscribers.DisposableSubscriber;
+import pl.charmas.android.reactivelocation2.observables.BaseLocationObservableOnSubscribe;
+import pl.charmas.android.reactivelocation2.observables.ObservableContext;
+import pl.charmas.android.reactivelocation2.observables.ObservableFactory;
+import pl.charmas.android.reactivelocation2.observables.StatusException;
+import pl.charmas.android.reactivelocation2.observables.backend.PlayServicesClient;
+
+/**
+ * Mock locations with a bounded number of {@code setMockLocation} calls waiting for results. Source
+ * is requested one location per free slot of the window, so lazy sources are read only as fast as
+ * Google Play Services accept locations. When coalescing is enabled, source is requested without
+ * limit and only the newest location is kept while the window is full. Instead of a status per
+ * location, {@link MockLocationReport} is emitted periodically and once more when source completes
+ * and all sent locations were accepted.
+ */
+@SuppressWarnings("MissingPermission")
+public class PipelinedMockLocationObservableOnSubscribe extends BaseLocationObservableOnSubscribe<MockLocationReport> {
+    private final Flowable<Location> locationFlowable;
+    private final MockLocationOptions options;
+    private Disposable mockLocationSubscription;
+
+    public static Observable<MockLocationReport> createObservable(ObservableContext context, ObservableFactory factory,
+                                                                  Flowable<Location> locationFlowable, MockLocationOptions options) {
+        return factory.createObservable(new PipelinedMockLocationObservableOnSubscribe(context, locationFlowable, options));
+    }
+
+    private PipelinedMockLocationObservableOnSubscribe(ObservableContext ctx, Flowable<Location> locationFlowable, MockLocationOptions options) {
+        super(ctx);
+        this.locationFlowable = locationFlowable;
+        this.options = options;
+    }
+
+    @Override
+    protected void onClientReady(final PlayServicesClient client, final ObservableEmitter<? super MockLocationReport> emitter) {
+        // this throws SecurityException if permissions are bad or mock locations are not enabled,
+        // which is passed to observer's onError by BaseObservable
+        client.setMockMode(true, new ResultCallback<Status>() {
+            @Override
+            public void onResult(@NonNull Status status) {
+                if (emitter.isDisposed()) return;
+                if (status.isSuccess()) {
+                    startLocationMocking(client, emitter);
+                } else {
+                    emitter.onError(new StatusException(status));
+                }
+            }
+        });
+    }
+
+    private void startLocationMocking(PlayServicesClient client, ObservableEmitter<? super MockLocationReport> emitter) {
+        Pipeline pipeline = new Pipeline(client, emitter);
+        mockLocationSubscription = pipeline;
+        locationFlowable.subscribe(pipeline);
+    }
+
+    @Override
+    protected void onDisposed(PlayServicesClient client) {
+        if (client.isConnected()) {
+            try {
+                client.setMockMode(false, null);
+            } catch (SecurityException e) {
+                // if this happens then we couldn't have switched mock mode on in the first place,
+                // and the observer's onError will already have been called
+            }
+        }
+        if (mockLocationSubscription != null && !mockLocationSubscription.isDisposed()) {
+            mockLocationSubscription.dispose();
+        }
+    }
+
+    /**
+     * Source locations and results are handled under one lock, results come on the callback
+     * thread of the client. Queue holds at most one location when coalescing, otherwise only
+     * locations of a source that ignores requests.
+     */
+    private class Pipeline extends DisposableSubscriber<Location> implements ResultCallback<Status> {
+        private final PlayServicesClient client;
+        private final ObservableEmitter<? super MockLocationReport> emitter;
+        private final ArrayDeque<Location> queue = new ArrayDeque<>();
+        private final long startTime = SystemClock.elapsedRealtime();
+        private int inFlight = 0;
+        private long succeeded = 0;
+        private long coalesced = 0;
+        private Status lastStatus;
+        private boolean sourceComplete = false;
+
+        Pipeline(PlayServicesClient client, ObservableEmitter<? super MockLocationReport> emitter) {
+            this.client = client;
+            this.emitter = emitter;
+        }
+
+        @Override
+        protected void onStart() {
+            request(options.isCoalesce() ? Long.MAX_VALUE : options.getMaxInFlight());
+        }
+
+        @Override
+        public synchronized void onNext(Location location) {
+            if (inFlight < options.getMaxInFlight()) {
+                send(location);
+            } else {
+                if (options.isCoalesce() && !queue.isEmpty()) {
+                    queue.poll();
+                    coalesced++;
+                }
+                queue.add(location);
+            }
+        }
+
+        private void send(Location location) {
+            inFlight++;
+            client.setMockLocation(location, this);
+        }
+
+        @Override
+        public synchronized void onResult(@NonNull Status status) {
+            if (emitter.isDisposed()) return;
+            if (!status.isSuccess()) {
+                emitter.onError(new StatusException(status));
+                return;
+            }
+            inFlight--;
+            succeeded++;
+            lastStatus = status;
+            if (!queue.isEmpty()) {
+                send(queue.poll());
+            } else if (!options.isCoalesce()) {
+                request(1);
+            }
+            if (sourceComplete && inFlight == 0) {
+                emitter.onNext(report(true));
+                emitter.onComplete();
+            } else if (succeeded % options.getReportInterval() == 0) {
+                emitter.onNext(report(false));
+            }
+        }
+
+        @Override
+        public synchronized void onComplete() {
+            sourceComplete = true;
+            if (inFlight == 0) {
+                emitter.onNext(report(true));
+                emitter.onComplete();
+            }
+        }
+
+        @Override
+        public synchronized void onError(Throwable throwable) {
+            emitter.onError(throwable);
+        }
+
+        private MockLocationReport report(boolean complete) {
+            return new MockLocationReport(succeeded, coalesced, queue.size(), SystemClock.elapsedRealtime() - startTime, lastStatus, complete);
+        }
+    }
+}
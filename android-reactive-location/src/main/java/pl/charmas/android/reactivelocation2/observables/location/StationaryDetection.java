@@ -0,0 +1,141 @@
+package pl.charmas.android.reactivelocation2.observables.location;
+
+import com.google.android.gms.location.LocationRequest;
+
+/**
+ * Configuration of stationary aware location updates. Please use builder to create an instance.
+ */
+public class StationaryDetection {
+    private final float radius;
+    private final int fixCount;
+    private final LocationRequest stationaryRequest;
+    private final int activityDetectionInterval;
+    private final int minActivityConfidence;
+
+    private StationaryDetection(Builder builder) {
+        this.radius = builder.radius;
+        this.fixCount = builder.fixCount;
+        this.stationaryRequest = builder.stationaryRequest;
+        this.activityDetectionInterval = builder.activityDetectionInterval;
+        this.minActivityConfidence = builder.minActivityConfidence;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    float getRadius() {
+        return radius;
+    }
+
+    int getFixCount() {
+        return fixCount;
+    }
+
+    LocationRequest getStationaryRequest(LocationRequest movingRequest) {
+        if (stationaryRequest != null) {
+            return stationaryRequest;
+        }
+        return LocationRequest.create()
+                .setPriority(LocationRequest.PRIORITY_NO_POWER)
+                .setInterval(movingRequest.getInterval())
+                .setFastestInterval(movingRequest.getFastestInterval());
+    }
+
+    /**
+     * @return activity detection interval, 0 when activity recognition is not used
+     */
+    public int getActivityDetectionInterval() {
+        return activityDetectionInterval;
+    }
+
+    int getMinActivityConfidence() {
+        return minActivityConfidence;
+    }
+
+    public static class Builder {
+        private float radius = 50;
+        private int fixCount = 10;
+        private LocationRequest stationaryRequest;
+        private int activityDetectionInterval = 0;
+        private int minActivityConfidence = 75;
+
+        /**
+         * Sets radius fixes have to stay in for device to be stationary.
+         * <p>
+         * Default: 50 meters
+         *
+         * @param radiusMeters radius in meters
+         * @return builder instance
+         */
+        public Builder setRadius(float radiusMeters) {
+            this.radius = radiusMeters;
+            return this;
+        }
+
+        /**
+         * Sets number of consecutive fixes within radius after which device is stationary.
+         * <p>
+         * Default: 10
+         *
+         * @param fixCount number of fixes
+         * @return builder instance
+         */
+        public Builder setFixCount(int fixCount) {
+            this.fixCount = fixCount;
+            return this;
+        }
+
+        /**
+         * Sets request used while device is stationary.
+         * <p>
+         * Default: {@link LocationRequest#PRIORITY_NO_POWER} with intervals of original request
+         *
+         * @param request request used while stationary
+         * @return builder instance
+         */
+        public Builder setStationaryRequest(LocationRequest request) {
+            this.stationaryRequest = request;
+            return this;
+        }
+
+        /**
+         * Enables activity recognition. Confident still activity makes device stationary at once
+         * and confident activity other than still, tilting or unknown makes it moving.
+         * <p>
+         * Default: 0, activity recognition is not used
+         *
+         * @param intervalMillis detection interval in milliseconds
+         * @return builder instance
+         */
+        public Builder setActivityDetectionInterval(int intervalMillis) {
+            this.activityDetectionInterval = intervalMillis;
+            return this;
+        }
+
+        /**
+         * Sets confidence activity needs to change stationary state.
+         * <p>
+         * Default: 75
+         *
+         * @param minConfidence confidence between 0 and 100
+         * @return builder instance
+         */
+        public Builder setMinActivityConfidence(int minConfidence) {
+            this.minActivityConfidence = minConfidence;
+            return this;
+        }
+
+        /**
+         * Builds configuration instance
+         *
+         * @return configuration instance
+         */
+        public StationaryDetection build() {
+            if (fixCount < 1) {
+                throw new IllegalArgumentException("Fix count must be at least 1");
+            }
+            return new StationaryDetection(this);
+        }
+    }
+}
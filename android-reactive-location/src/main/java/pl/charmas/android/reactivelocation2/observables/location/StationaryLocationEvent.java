@@ -0,0 +1,43 @@
+package pl.charmas.android.reactivelocation2.observables.location;
+
+import android.location.Location;
+import android.support.annotation.Nullable;
+
+/**
+ * Event of stationary aware location stream: a location or a change between stationary and
+ * moving state.
+ */
+public class StationaryLocationEvent {
+    public static final int TYPE_LOCATION = 0;
+    public static final int TYPE_STATIONARY = 1;
+    public static final int TYPE_MOVING = 2;
+
+    private final int type;
+    private final Location location;
+
+    StationaryLocationEvent(int type, @Nullable Location location) {
+        this.type = type;
+        this.location = location;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * @return location for location events, for state changes last known location or null when
+     * change was caused by activity recognition before any location
+     */
+    @Nullable
+    public Location getLocation() {
+        return location;
+    }
+
+    @Override
+    public String toString() {
+        return "StationaryLocationEvent{" +
+                "type=" + type +
+                ", location=" + location +
+                '}';
+    }
+}
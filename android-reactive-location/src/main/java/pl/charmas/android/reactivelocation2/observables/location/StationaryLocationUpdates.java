@@ -0,0 +1,175 @@
+package pl.charmas.android.reactivelocation2.observables.location;
+
+import android.location.Location;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.location.ActivityRecognitionResult;
+import com.google.android.gms.location.DetectedActivity;
+import com.google.android.gms.location.LocationRequest;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.SerialDisposable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import pl.charmas.android.reactivelocation2.observables.GeoMath;
+import pl.charmas.android.reactivelocation2.observables.ObservableContext;
+import pl.charmas.android.reactivelocation2.observables.ObservableFactory;
+
+/**
+ * Location updates that switch to a low power request while device stays in place. Device is
+ * stationary when given number of consecutive fixes stays within radius around the first of them,
+ * and optionally when still activity is detected. Original request is restored when a fix leaves
+ * the radius by more than its accuracy or a moving activity is detected.
+ */
+public class StationaryLocationUpdates implements ObservableOnSubscribe<StationaryLocationEvent> {
+    private final Function<LocationRequest, Observable<Location>> locationSource;
+    private final LocationRequest movingRequest;
+    private final LocationRequest stationaryRequest;
+    private final StationaryDetection detection;
+    private final Observable<ActivityRecognitionResult> activities;
+
+    public static Observable<StationaryLocationEvent> createObservable(final ObservableContext ctx, final ObservableFactory factory, LocationRequest request,
+                                                                       StationaryDetection detection, @Nullable Observable<ActivityRecognitionResult> activities) {
+        return createObservable(new Function<LocationRequest, Observable<Location>>() {
+            @Override
+            public Observable<Location> apply(LocationRequest locationRequest) throws Exception {
+                return LocationUpdatesObservableOnSubscribe.createObservable(ctx, factory, locationRequest);
+            }
+        }, request, detection, activities);
+    }
+
+    static Observable<StationaryLocationEvent> createObservable(Function<LocationRequest, Observable<Location>> locationSource, LocationRequest request,
+                                                                StationaryDetection detection, @Nullable Observable<ActivityRecognitionResult> activities) {
+        return Observable.create(new StationaryLocationUpdates(locationSource, request, detection, activities));
+    }
+
+    private StationaryLocationUpdates(Function<LocationRequest, Observable<Location>> locationSource, LocationRequest request,
+                                      StationaryDetection detection, @Nullable Observable<ActivityRecognitionResult> activities) {
+        this.locationSource = locationSource;
+        this.movingRequest = request;
+        this.stationaryRequest = detection.getStationaryRequest(request);
+        this.detection = detection;
+        this.activities = activities;
+    }
+
+    @Override
+    public void subscribe(ObservableEmitter<StationaryLocationEvent> emitter) throws Exception {
+        final DetectionState state = new DetectionState(emitter);
+        CompositeDisposable disposables = new CompositeDisposable(state.locationUpdates);
+        emitter.setDisposable(disposables);
+        if (activities != null) {
+            disposables.add(activities.subscribe(new Consumer<ActivityRecognitionResult>() {
+                @Override
+                public void accept(ActivityRecognitionResult result) throws Exception {
+                    state.onActivity(result);
+                }
+            }, new Consumer<Throwable>() {
+                @Override
+                public void accept(Throwable throwable) throws Exception {
+                    state.onError(throwable);
+                }
+            }));
+        }
+        state.requestUpdates();
+    }
+
+    /**
+     * State of single subscription. Location and activity callbacks are handled under one lock.
+     */
+    private class DetectionState {
+        private final ObservableEmitter<StationaryLocationEvent> emitter;
+        private final SerialDisposable locationUpdates = new SerialDisposable();
+        private boolean stationary = false;
+        private Location anchor;
+        private int fixesNearAnchor;
+        private Location lastLocation;
+
+        DetectionState(ObservableEmitter<StationaryLocationEvent> emitter) {
+            this.emitter = emitter;
+        }
+
+        synchronized void requestUpdates() throws Exception {
+            final LocationRequest request = stationary ? stationaryRequest : movingRequest;
+            locationUpdates.set(locationSource.apply(request).subscribe(new Consumer<Location>() {
+                @Override
+                public void accept(Location location) throws Exception {
+                    onLocation(location);
+                }
+            }, new Consumer<Throwable>() {
+                @Override
+                public void accept(Throwable throwable) throws Exception {
+                    onError(throwable);
+                }
+            }));
+        }
+
+        synchronized void onLocation(Location location) throws Exception {
+            if (emitter.isDisposed()) return;
+            lastLocation = location;
+            emitter.onNext(new StationaryLocationEvent(StationaryLocationEvent.TYPE_LOCATION, location));
+            double distance = anchor == null ? Double.POSITIVE_INFINITY
+                    : GeoMath.distanceMeters(anchor.getLatitude(), anchor.getLongitude(), location.getLatitude(), location.getLongitude());
+            if (stationary) {
+                if (anchor == null) {
+                    // still activity was detected before any fix, the first one becomes the anchor
+                    resetAnchor(location);
+                } else if (distance - location.getAccuracy() > detection.getRadius()) {
+                    // passive fixes can be inaccurate, only a fix surely outside of radius means movement
+                    setStationary(false);
+                }
+            } else if (distance <= detection.getRadius()) {
+                if (++fixesNearAnchor >= detection.getFixCount()) {
+                    setStationary(true);
+                }
+            } else {
+                resetAnchor(location);
+            }
+        }
+
+        synchronized void onActivity(ActivityRecognitionResult result) throws Exception {
+            if (emitter.isDisposed()) return;
+            DetectedActivity activity = result.getMostProbableActivity();
+            if (activity == null || activity.getConfidence() < detection.getMinActivityConfidence()) return;
+            switch (activity.getType()) {
+                case DetectedActivity.STILL:
+                    if (!stationary) {
+                        setStationary(true);
+                    }
+                    break;
+                case DetectedActivity.TILTING:
+                case DetectedActivity.UNKNOWN:
+                    break;
+                default:
+                    if (stationary) {
+                        setStationary(false);
+                    }
+            }
+        }
+
+        private void setStationary(boolean stationary) throws Exception {
+            this.stationary = stationary;
+            if (stationary) {
+                anchor = lastLocation;
+            } else {
+                resetAnchor(lastLocation);
+            }
+            int type = stationary ? StationaryLocationEvent.TYPE_STATIONARY : StationaryLocationEvent.TYPE_MOVING;
+            emitter.onNext(new StationaryLocationEvent(type, lastLocation));
+            requestUpdates();
+        }
+
+        private void resetAnchor(Location location) {
+            anchor = location;
+            fixesNearAnchor = location != null ? 1 : 0;
+        }
+
+        synchronized void onError(Throwable throwable) {
+            if (!emitter.isDisposed()) {
+                emitter.onError(throwable);
+            }
+        }
+    }
+}
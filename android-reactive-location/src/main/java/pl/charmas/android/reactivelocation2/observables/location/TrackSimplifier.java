@@ -0,0 +1,202 @@
+package pl.charmas.android.reactivelocation2.observables.location;
+
+import android.location.Location;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import pl.charmas.android.reactivelocation2.observables.GeoMath;
+
+/**
+ * Simplifies a track online with opening window algorithm. Fixes following the last retained one
+ * are held while all of them stay within tolerance from the segment between the last retained fix
+ * and the newest fix. When a new fix breaks the tolerance, the fix before it is retained and
+ * becomes start of the next window.
+ * <p>
+ * A fix is also retained when the window holds the maximal number of fixes or when the next fix is
+ * further than maximal time gap from the last retained one, so every fix is emitted or dropped
+ * with bounded latency. The first fix is emitted immediately and the last one when upstream
+ * completes. Please use builder to create an instance.
+ */
+public class TrackSimplifier implements ObservableTransformer<Location, Location> {
+    private final double tolerance;
+    private final long maxGapNanos;
+    private final int maxWindow;
+
+    private TrackSimplifier(Builder builder) {
+        this.tolerance = builder.tolerance;
+        this.maxGapNanos = builder.maxGap * 1000000L;
+        this.maxWindow = builder.maxWindow;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public ObservableSource<Location> apply(final Observable<Location> upstream) {
+        return Observable.create(new ObservableOnSubscribe<Location>() {
+            @Override
+            public void subscribe(ObservableEmitter<Location> emitter) throws Exception {
+                final SimplifyState state = new SimplifyState(emitter);
+                emitter.setDisposable(upstream.subscribe(new Consumer<Location>() {
+                    @Override
+                    public void accept(Location location) throws Exception {
+                        state.onLocation(location);
+                    }
+                }, new Consumer<Throwable>() {
+                    @Override
+                    public void accept(Throwable throwable) throws Exception {
+                        state.onError(throwable);
+                    }
+                }, new Action() {
+                    @Override
+                    public void run() throws Exception {
+                        state.onComplete();
+                    }
+                }));
+            }
+        });
+    }
+
+    private class SimplifyState {
+        private final ObservableEmitter<Location> emitter;
+        // held fixes projected to meters around the anchor
+        private final double[] xs = new double[maxWindow];
+        private final double[] ys = new double[maxWindow];
+        private int size = 0;
+        private Location anchor;
+        private long anchorTime;
+        private double metersPerDegreeLng;
+        private Location lastHeld;
+
+        SimplifyState(ObservableEmitter<Location> emitter) {
+            this.emitter = emitter;
+        }
+
+        void onLocation(Location location) {
+            if (anchor == null) {
+                retain(location);
+                return;
+            }
+            long time = LocationTime.nanos(location);
+            if (size > 0 && (size >= maxWindow || time - anchorTime > maxGapNanos)) {
+                retain(lastHeld);
+            }
+            double x = projectX(location);
+            double y = projectY(location);
+            if (size > 0 && !withinTolerance(x, y)) {
+                retain(lastHeld);
+                x = projectX(location);
+                y = projectY(location);
+            }
+            xs[size] = x;
+            ys[size] = y;
+            size++;
+            lastHeld = location;
+        }
+
+        private boolean withinTolerance(double endX, double endY) {
+            double lengthSquared = endX * endX + endY * endY;
+            for (int i = 0; i < size; i++) {
+                double t = lengthSquared > 0 ? (xs[i] * endX + ys[i] * endY) / lengthSquared : 0;
+                t = Math.max(0, Math.min(1, t));
+                double dx = xs[i] - t * endX;
+                double dy = ys[i] - t * endY;
+                if (dx * dx + dy * dy > tolerance * tolerance) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void retain(Location location) {
+            anchor = location;
+            anchorTime = LocationTime.nanos(location);
+            metersPerDegreeLng = GeoMath.METERS_PER_DEGREE * Math.cos(Math.toRadians(location.getLatitude()));
+            size = 0;
+            lastHeld = null;
+            emitter.onNext(location);
+        }
+
+        private double projectX(Location location) {
+            return GeoMath.normalizeLongitude(location.getLongitude() - anchor.getLongitude()) * metersPerDegreeLng;
+        }
+
+        private double projectY(Location location) {
+            return (location.getLatitude() - anchor.getLatitude()) * GeoMath.METERS_PER_DEGREE;
+        }
+
+        void onError(Throwable throwable) {
+            emitter.onError(throwable);
+        }
+
+        void onComplete() {
+            if (lastHeld != null) {
+                emitter.onNext(lastHeld);
+            }
+            emitter.onComplete();
+        }
+    }
+
+    public static class Builder {
+        private float tolerance = 5;
+        private long maxGap = 60000;
+        private int maxWindow = 100;
+
+        /**
+         * Sets maximal distance of a dropped fix from simplified track.
+         * <p>
+         * Default: 5 meters
+         *
+         * @param meters distance in meters
+         * @return builder instance
+         */
+        public Builder setTolerance(float meters) {
+            this.tolerance = meters;
+            return this;
+        }
+
+        /**
+         * Sets maximal time between two retained fixes, as long as upstream delivers fixes.
+         * <p>
+         * Default: 60 seconds
+         *
+         * @param maxGapMillis time in milliseconds
+         * @return builder instance
+         */
+        public Builder setMaxGap(long maxGapMillis) {
+            this.maxGap = maxGapMillis;
+            return this;
+        }
+
+        /**
+         * Sets maximal number of held fixes, which bounds work per fix and latency.
+         * <p>
+         * Default: 100
+         *
+         * @param fixCount number of fixes, at least 1
+         * @return builder instance
+         */
+        public Builder setMaxWindow(int fixCount) {
+            if (fixCount < 1) {
+                throw new IllegalArgumentException("Window must hold at least 1 fix");
+            }
+            this.maxWindow = fixCount;
+            return this;
+        }
+
+        /**
+         * Builds simplifier instance
+         *
+         * @return simplifier instance
+         */
+        public TrackSimplifier build() {
+            return new TrackSimplifier(this);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package pl.charmas.android.reactivelocation2.observables.track;
+
+import android.location.Location;
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * Reads positions of all geometries of a GeoJSON document in document order, intended for
+ * LineString and MultiLineString tracks. Optional fourth value of a position is read as Unix time
+ * in seconds.
+ */
+class GeoJsonTrackParser extends TrackParser {
+    private final JsonReader reader;
+    // number of open arrays of positions inside current coordinates value
+    private int coordinatesDepth = 0;
+
+    GeoJsonTrackParser(InputStream input) throws Exception {
+        super(input);
+        reader = new JsonReader(new InputStreamReader(input, "UTF-8"));
+    }
+
+    @Override
+    Location next() throws Exception {
+        while (true) {
+            if (coordinatesDepth > 0) {
+                if (!reader.hasNext()) {
+                    reader.endArray();
+                    coordinatesDepth--;
+                } else if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    if (reader.peek() == JsonToken.NUMBER) {
+                        return readPosition();
+                    }
+                    coordinatesDepth++;
+                } else {
+                    reader.skipValue();
+                }
+                continue;
+            }
+            switch (reader.peek()) {
+                case BEGIN_OBJECT:
+                    reader.beginObject();
+                    break;
+                case END_OBJECT:
+                    reader.endObject();
+                    break;
+                case BEGIN_ARRAY:
+                    reader.beginArray();
+                    break;
+                case END_ARRAY:
+                    reader.endArray();
+                    break;
+                case NAME:
+                    if (reader.nextName().equals("coordinates") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                        reader.beginArray();
+                        if (reader.peek() == JsonToken.NUMBER) {
+                            return readPosition();
+                        }
+                        coordinatesDepth = 1;
+                    }
+                    break;
+                case END_DOCUMENT:
+                    return null;
+                default:
+                    reader.skipValue();
+            }
+        }
+    }
+
+    /**
+     * Reads rest of a position array whose beginning was already read.
+     */
+    private Location readPosition() throws Exception {
+        double longitude = reader.nextDouble();
+        double latitude = reader.nextDouble();
+        double altitude = Double.NaN;
+        long time = NO_TIME;
+        if (reader.hasNext()) {
+            altitude = reader.nextDouble();
+        }
+        if (reader.hasNext()) {
+            time = Math.round(reader.nextDouble() * 1000);
+        }
+        while (reader.hasNext()) {
+            reader.skipValue();
+        }
+        reader.endArray();
+        return location(latitude, longitude, altitude, time);
+    }
+}
@@ -0,0 +1,58 @@
+package pl.charmas.android.reactivelocation2.observables.track;
+
+import android.location.Location;
+import android.util.Xml;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.InputStream;
+
+/**
+ * Reads track, route and way points of GPX 1.0 and 1.1 files with their elevation and time.
+ */
+class GpxTrackParser extends TrackParser {
+    private final XmlPullParser parser;
+
+    GpxTrackParser(InputStream input) throws XmlPullParserException {
+        super(input);
+        parser = Xml.newPullParser();
+        parser.setInput(input, null);
+    }
+
+    @Override
+    Location next() throws Exception {
+        int event;
+        while ((event = parser.next()) != XmlPullParser.END_DOCUMENT) {
+            if (event == XmlPullParser.START_TAG) {
+                String name = localName(parser.getName());
+                if (name.equals("trkpt") || name.equals("rtept") || name.equals("wpt")) {
+                    return readPoint();
+                }
+            }
+        }
+        return null;
+    }
+
+    private Location readPoint() throws Exception {
+        double latitude = Double.parseDouble(parser.getAttributeValue(null, "lat"));
+        double longitude = Double.parseDouble(parser.getAttributeValue(null, "lon"));
+        double altitude = Double.NaN;
+        long time = NO_TIME;
+        int depth = parser.getDepth();
+        int event;
+        while ((event = parser.next()) != XmlPullParser.END_TAG || parser.getDepth() > depth) {
+            if (event == XmlPullParser.START_TAG && parser.getDepth() == depth + 1) {
+                String name = localName(parser.getName());
+                if (name.equals("ele")) {
+                    altitude = Double.parseDouble(parser.nextText().trim());
+                } else if (name.equals("time")) {
+                    time = Iso8601.parse(parser.nextText());
+                }
+            } else if (event == XmlPullParser.END_DOCUMENT) {
+                throw new XmlPullParserException("Unexpected end of document");
+            }
+        }
+        return location(latitude, longitude, altitude, time);
+    }
+}
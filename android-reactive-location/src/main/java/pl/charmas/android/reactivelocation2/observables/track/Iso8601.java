@@ -0,0 +1,124 @@
+package pl.charmas.android.reactivelocation2.observables.track;
+
+/**
+ * Parses and formats ISO 8601 date times of track files without allocating calendars or formats.
+ */
+class Iso8601 {
+    private static final long MILLIS_PER_DAY = 86400000L;
+
+    private Iso8601() {
+    }
+
+    /**
+     * Parses {@code YYYY-MM-DDThh:mm:ss} with optional fraction of second and optional {@code Z} or
+     * {@code +hh:mm} offset, date time without offset is UTC.
+     *
+     * @return milliseconds since epoch
+     * @throws IllegalArgumentException when text is not supported date time
+     */
+    static long parse(String text) {
+        String value = text.trim();
+        try {
+            int year = Integer.parseInt(value.substring(0, 4));
+            int month = digits(value, 5);
+            int day = digits(value, 8);
+            if (value.charAt(4) != '-' || value.charAt(7) != '-' || (value.charAt(10) != 'T' && value.charAt(10) != ' ')) {
+                throw new IllegalArgumentException("Unsupported date time: " + text);
+            }
+            int hour = digits(value, 11);
+            int minute = digits(value, 14);
+            int second = digits(value, 17);
+            int position = 19;
+            int millis = 0;
+            if (position < value.length() && (value.charAt(position) == '.' || value.charAt(position) == ',')) {
+                position++;
+                int scale = 100;
+                while (position < value.length() && Character.isDigit(value.charAt(position))) {
+                    millis += (value.charAt(position) - '0') * scale;
+                    scale /= 10;
+                    position++;
+                }
+            }
+            long offsetMillis = 0;
+            if (position < value.length()) {
+                char sign = value.charAt(position);
+                if (sign == '+' || sign == '-') {
+                    int offsetHour = digits(value, position + 1);
+                    int minutePosition = value.charAt(position + 3) == ':' ? position + 4 : position + 3;
+                    int offsetMinute = minutePosition < value.length() ? digits(value, minutePosition) : 0;
+                    offsetMillis = (offsetHour * 60 + offsetMinute) * 60000L;
+                    if (sign == '-') {
+                        offsetMillis = -offsetMillis;
+                    }
+                } else if (sign != 'Z' && sign != 'z') {
+                    throw new IllegalArgumentException("Unsupported date time: " + text);
+                }
+            }
+            long days = daysFromCivil(year, month, day);
+            return days * MILLIS_PER_DAY + ((hour * 60 + minute) * 60 + second) * 1000L + millis - offsetMillis;
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Unsupported date time: " + text, e);
+        }
+    }
+
+    /**
+     * Formats time as {@code YYYY-MM-DDThh:mm:ss.sssZ}.
+     */
+    static void format(long millis, StringBuilder out) {
+        long days = floorDiv(millis, MILLIS_PER_DAY);
+        long millisOfDay = millis - days * MILLIS_PER_DAY;
+        // civil from days, see daysFromCivil
+        long z = days + 719468;
+        long era = floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        pad(out, year, 4).append('-');
+        pad(out, month, 2).append('-');
+        pad(out, day, 2).append('T');
+        pad(out, millisOfDay / 3600000, 2).append(':');
+        pad(out, millisOfDay / 60000 % 60, 2).append(':');
+        pad(out, millisOfDay / 1000 % 60, 2).append('.');
+        pad(out, millisOfDay % 1000, 3).append('Z');
+    }
+
+    /**
+     * Days since 1970-01-01 of proleptic Gregorian date, algorithm by Howard Hinnant.
+     */
+    private static long daysFromCivil(long year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = floorDiv(year, 400);
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static long floorDiv(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        return dividend % divisor < 0 ? quotient - 1 : quotient;
+    }
+
+    private static int digits(String value, int position) {
+        char tens = value.charAt(position);
+        char ones = value.charAt(position + 1);
+        if (!Character.isDigit(tens) || !Character.isDigit(ones)) {
+            throw new IllegalArgumentException("Unsupported date time: " + value);
+        }
+        return (tens - '0') * 10 + (ones - '0');
+    }
+
+    private static StringBuilder pad(StringBuilder out, long value, int width) {
+        for (long limit = 10; width > 1; width--, limit *= 10) {
+            if (value < limit) {
+                out.append('0');
+            }
+        }
+        return out.append(value);
+    }
+}
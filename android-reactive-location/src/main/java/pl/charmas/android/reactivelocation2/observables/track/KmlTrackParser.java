@@ -0,0 +1,107 @@
+package pl.charmas.android.reactivelocation2.observables.track;
+
+import android.location.Location;
+import android.util.Xml;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.InputStream;
+
+/**
+ * Reads points of {@code coordinates} elements, e.g. of LineString and Point, and timed points of
+ * {@code gx:Track} elements of KML files.
+ * <p>
+ * Text of one {@code coordinates} element is held in memory while its points are read. Times of
+ * {@code gx:Track} precede its coordinates, so they are buffered as primitive values.
+ */
+class KmlTrackParser extends TrackParser {
+    private final XmlPullParser parser;
+    private String coordinates;
+    private int coordinatesPosition;
+    private long[] trackTimes = new long[64];
+    private int trackTimeCount;
+    private int trackTimeIndex;
+
+    KmlTrackParser(InputStream input) throws XmlPullParserException {
+        super(input);
+        parser = Xml.newPullParser();
+        parser.setInput(input, null);
+    }
+
+    @Override
+    Location next() throws Exception {
+        if (coordinates != null) {
+            Location location = nextCoordinate();
+            if (location != null) {
+                return location;
+            }
+        }
+        int event;
+        while ((event = parser.next()) != XmlPullParser.END_DOCUMENT) {
+            if (event != XmlPullParser.START_TAG) {
+                continue;
+            }
+            String name = localName(parser.getName());
+            if (name.equals("coordinates")) {
+                coordinates = parser.nextText();
+                coordinatesPosition = 0;
+                Location location = nextCoordinate();
+                if (location != null) {
+                    return location;
+                }
+            } else if (name.equals("Track")) {
+                trackTimeCount = 0;
+                trackTimeIndex = 0;
+            } else if (name.equals("when")) {
+                addTrackTime(Iso8601.parse(parser.nextText()));
+            } else if (name.equals("coord")) {
+                long time = trackTimeIndex < trackTimeCount ? trackTimes[trackTimeIndex++] : NO_TIME;
+                String[] values = parser.nextText().trim().split("\\s+");
+                return location(Double.parseDouble(values[1]), Double.parseDouble(values[0]),
+                        values.length > 2 ? Double.parseDouble(values[2]) : Double.NaN, time);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return location of the next {@code lng,lat[,alt]} tuple, null when there is none
+     */
+    private Location nextCoordinate() {
+        int length = coordinates.length();
+        while (coordinatesPosition < length && Character.isWhitespace(coordinates.charAt(coordinatesPosition))) {
+            coordinatesPosition++;
+        }
+        if (coordinatesPosition >= length) {
+            coordinates = null;
+            return null;
+        }
+        int end = coordinatesPosition;
+        while (end < length && !Character.isWhitespace(coordinates.charAt(end))) {
+            end++;
+        }
+        int firstComma = coordinates.indexOf(',', coordinatesPosition);
+        int secondComma = coordinates.indexOf(',', firstComma + 1);
+        double longitude = Double.parseDouble(coordinates.substring(coordinatesPosition, firstComma));
+        double latitude;
+        double altitude = Double.NaN;
+        if (secondComma != -1 && secondComma < end) {
+            latitude = Double.parseDouble(coordinates.substring(firstComma + 1, secondComma));
+            altitude = Double.parseDouble(coordinates.substring(secondComma + 1, end));
+        } else {
+            latitude = Double.parseDouble(coordinates.substring(firstComma + 1, end));
+        }
+        coordinatesPosition = end;
+        return location(latitude, longitude, altitude, NO_TIME);
+    }
+
+    private void addTrackTime(long time) {
+        if (trackTimeCount == trackTimes.length) {
+            long[] grown = new long[trackTimes.length * 2];
+            System.arraycopy(trackTimes, 0, grown, 0, trackTimeCount);
+            trackTimes = grown;
+        }
+        trackTimes[trackTimeCount++] = time;
+    }
+}
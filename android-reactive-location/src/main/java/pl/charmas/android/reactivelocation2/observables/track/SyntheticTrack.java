@@ -0,0 +1,475 @@
+package pl.charmas.android.reactivelocation2.observables.track;
+
+import android.location.Location;
+import android.os.Build;
+import android.os.SystemClock;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.functions.BiConsumer;
+import pl.charmas.android.reactivelocation2.observables.GeoMath;
+
+/**
+ * Generates synthetic tracks for load and soak testing, e.g. as source of
+ * {@link pl.charmas.android.reactivelocation2.ReactiveLocationProvider#mockLocation(Observable)}.
+ * Device either drives along waypoints with constant speed or walks randomly from start point.
+ * <p>
+ * Reported positions get correlated GPS noise, modelled as first order Gauss-Markov process, and
+ * optionally dropouts, during which no fix is reported, and jumps, single fixes moved far away.
+ * <p>
+ * Every subscription generates the same track for the same seed and start time. Locations are
+ * generated when requested, as fast as the subscriber takes them, and stamped with synthetic time
+ * advancing by the interval. Please use builder to create an instance.
+ */
+public class SyntheticTrack {
+    /**
+     * Provider of generated locations.
+     */
+    public static final String PROVIDER = "synthetic";
+
+    private static final long START_TIME_OF_SUBSCRIPTION = Long.MIN_VALUE;
+
+    private static final BiConsumer<Kernel, Emitter<Location>> NEXT_LOCATION = new BiConsumer<Kernel, Emitter<Location>>() {
+        @Override
+        public void accept(Kernel kernel, Emitter<Location> emitter) throws Exception {
+            if (kernel.step()) {
+                emitter.onNext(kernel.toLocation());
+            } else {
+                emitter.onComplete();
+            }
+        }
+    };
+
+    private final long seed;
+    private final double startLatitude;
+    private final double startLongitude;
+    private final double[] waypoints;
+    private final float speed;
+    private final float headingNoise;
+    private final long interval;
+    private final long duration;
+    private final long startTime;
+    private final float noise;
+    private final float noiseCorrelationTime;
+    private final float dropoutProbability;
+    private final long dropoutDuration;
+    private final float jumpProbability;
+    private final float jumpDistance;
+
+    private SyntheticTrack(Builder builder) {
+        this.seed = builder.seed;
+        this.startLatitude = builder.startLatitude;
+        this.startLongitude = builder.startLongitude;
+        this.waypoints = new double[builder.waypoints.size() * 2];
+        for (int i = 0; i < builder.waypoints.size(); i++) {
+            waypoints[2 * i] = builder.waypoints.get(i).latitude;
+            waypoints[2 * i + 1] = builder.waypoints.get(i).longitude;
+        }
+        this.speed = builder.speed;
+        this.headingNoise = builder.headingNoise;
+        this.interval = builder.interval;
+        this.duration = builder.duration;
+        this.startTime = builder.startTime;
+        this.noise = builder.noise;
+        this.noiseCorrelationTime = builder.noiseCorrelationTime;
+        this.dropoutProbability = builder.dropoutProbability;
+        this.dropoutDuration = builder.dropoutDuration;
+        this.jumpProbability = builder.jumpProbability;
+        this.jumpDistance = builder.jumpDistance;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Creates observable that emits generated locations and completes after the duration or at the
+     * last waypoint.
+     *
+     * @return observable that emits generated locations
+     */
+    public Observable<Location> generate() {
+        return Observable.generate(newKernel(), NEXT_LOCATION);
+    }
+
+    /**
+     * Creates flowable that emits the same locations as {@link #generate()}, generated only as
+     * they are requested, e.g. by
+     * {@link pl.charmas.android.reactivelocation2.ReactiveLocationProvider#mockLocation(Flowable, pl.charmas.android.reactivelocation2.observables.location.MockLocationOptions)}.
+     *
+     * @return flowable that emits generated locations
+     */
+    public Flowable<Location> generateFlowable() {
+        return Flowable.generate(newKernel(), NEXT_LOCATION);
+    }
+
+    private Callable<Kernel> newKernel() {
+        return new Callable<Kernel>() {
+            @Override
+            public Kernel call() throws Exception {
+                return new Kernel();
+            }
+        };
+    }
+
+    /**
+     * State of one generated track, all in primitive fields.
+     */
+    private class Kernel {
+        private final Random random = new Random(seed);
+        private final double[] point = new double[2];
+        private final long firstTime;
+        private final long firstElapsedNanos;
+        private double latitude = startLatitude;
+        private double longitude = startLongitude;
+        private double heading;
+        private double currentSpeed = speed;
+        private int waypointIndex = 0;
+        private long elapsed = -1;
+        private long dropoutUntil = Long.MIN_VALUE;
+        private double noiseNorth = 0;
+        private double noiseEast = 0;
+        private double reportedLatitude;
+        private double reportedLongitude;
+        private float reportedAccuracy;
+
+        Kernel() {
+            firstTime = startTime == START_TIME_OF_SUBSCRIPTION ? System.currentTimeMillis() : startTime;
+            firstElapsedNanos = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 ? SystemClock.elapsedRealtimeNanos() : 0;
+            if (waypoints.length > 0) {
+                latitude = waypoints[0];
+                longitude = waypoints[1];
+            }
+            heading = random.nextDouble() * 360;
+        }
+
+        /**
+         * Moves to the next reported fix.
+         *
+         * @return false when the track ended
+         */
+        boolean step() {
+            while (true) {
+                if (elapsed >= 0) {
+                    if (elapsed + interval > duration || !move(interval / 1000.0)) {
+                        return false;
+                    }
+                    elapsed += interval;
+                } else {
+                    elapsed = 0;
+                }
+                updateNoise(interval / 1000.0);
+                if (elapsed < dropoutUntil) {
+                    continue;
+                }
+                if (dropoutProbability > 0 && random.nextDouble() < dropoutProbability) {
+                    dropoutUntil = elapsed + dropoutDuration;
+                    continue;
+                }
+                report();
+                return true;
+            }
+        }
+
+        /**
+         * @return false when the last waypoint was already reached
+         */
+        private boolean move(double seconds) {
+            if (waypoints.length > 0) {
+                return moveAlongRoute(speed * seconds);
+            }
+            heading = (heading + random.nextGaussian() * headingNoise + 360) % 360;
+            // speed reverts to the configured one
+            currentSpeed = Math.max(0, currentSpeed + (speed - currentSpeed) * 0.1 + random.nextGaussian() * 0.05 * speed);
+            GeoMath.destination(latitude, longitude, heading, currentSpeed * seconds, point);
+            latitude = point[0];
+            longitude = point[1];
+            return true;
+        }
+
+        private boolean moveAlongRoute(double distance) {
+            int last = waypoints.length / 2 - 1;
+            if (waypointIndex >= last) {
+                return false;
+            }
+            while (distance > 0 && waypointIndex < last) {
+                double nextLatitude = waypoints[2 * waypointIndex + 2];
+                double nextLongitude = waypoints[2 * waypointIndex + 3];
+                double remaining = GeoMath.distanceMeters(latitude, longitude, nextLatitude, nextLongitude);
+                heading = GeoMath.bearing(latitude, longitude, nextLatitude, nextLongitude);
+                if (distance >= remaining) {
+                    latitude = nextLatitude;
+                    longitude = nextLongitude;
+                    waypointIndex++;
+                    distance -= remaining;
+                } else {
+                    GeoMath.destination(latitude, longitude, heading, distance, point);
+                    latitude = point[0];
+                    longitude = point[1];
+                    distance = 0;
+                }
+            }
+            return true;
+        }
+
+        private void updateNoise(double seconds) {
+            double correlation = noiseCorrelationTime > 0 ? Math.exp(-seconds / noiseCorrelationTime) : 0;
+            double innovation = Math.sqrt(1 - correlation * correlation) * noise;
+            noiseNorth = correlation * noiseNorth + innovation * random.nextGaussian();
+            noiseEast = correlation * noiseEast + innovation * random.nextGaussian();
+        }
+
+        private void report() {
+            double north = noiseNorth;
+            double east = noiseEast;
+            if (jumpProbability > 0 && random.nextDouble() < jumpProbability) {
+                double direction = random.nextDouble() * 2 * Math.PI;
+                north += Math.cos(direction) * jumpDistance;
+                east += Math.sin(direction) * jumpDistance;
+            }
+            reportedLatitude = latitude + north / GeoMath.METERS_PER_DEGREE;
+            reportedLongitude = GeoMath.normalizeLongitude(longitude + east / (GeoMath.METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude))));
+            reportedAccuracy = (float) (noise * (0.8 + 0.4 * random.nextDouble()));
+        }
+
+        Location toLocation() {
+            Location location = new Location(PROVIDER);
+            location.setLatitude(reportedLatitude);
+            location.setLongitude(reportedLongitude);
+            location.setAccuracy(Math.max(reportedAccuracy, 1));
+            location.setSpeed((float) (waypoints.length > 0 ? speed : currentSpeed));
+            location.setBearing((float) heading);
+            location.setTime(firstTime + elapsed);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+                location.setElapsedRealtimeNanos(firstElapsedNanos + elapsed * 1000000L);
+            }
+            return location;
+        }
+    }
+
+    public static class Builder {
+        private long seed = 0;
+        private double startLatitude = 0;
+        private double startLongitude = 0;
+        private List<LatLng> waypoints = new ArrayList<>();
+        private float speed = 10;
+        private float headingNoise = 10;
+        private long interval = 1000;
+        private long duration = 3600000;
+        private long startTime = START_TIME_OF_SUBSCRIPTION;
+        private float noise = 5;
+        private float noiseCorrelationTime = 20;
+        private float dropoutProbability = 0;
+        private long dropoutDuration = 10000;
+        private float jumpProbability = 0;
+        private float jumpDistance = 1000;
+
+        /**
+         * Sets seed of random generator, the same seed generates the same track.
+         * <p>
+         * Default: 0
+         *
+         * @param seed seed
+         * @return builder instance
+         */
+        public Builder setSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Sets start point of random walk.
+         * <p>
+         * Default: 0, 0
+         *
+         * @param latitude  latitude in degrees
+         * @param longitude longitude in degrees
+         * @return builder instance
+         */
+        public Builder setStart(double latitude, double longitude) {
+            this.startLatitude = latitude;
+            this.startLongitude = longitude;
+            return this;
+        }
+
+        /**
+         * Sets route driven with constant speed instead of random walk. Track ends at the last
+         * waypoint.
+         * <p>
+         * Default: empty, random walk
+         *
+         * @param waypoints points of the route, at least two
+         * @return builder instance
+         */
+        public Builder setWaypoints(List<LatLng> waypoints) {
+            if (waypoints.size() == 1) {
+                throw new IllegalArgumentException("Route needs at least two waypoints");
+            }
+            this.waypoints = new ArrayList<>(waypoints);
+            return this;
+        }
+
+        /**
+         * Sets speed of the route or mean speed of random walk.
+         * <p>
+         * Default: 10 m/s
+         *
+         * @param metersPerSecond speed in meters per second
+         * @return builder instance
+         */
+        public Builder setSpeed(float metersPerSecond) {
+            this.speed = metersPerSecond;
+            return this;
+        }
+
+        /**
+         * Sets standard deviation of heading change of random walk between two fixes.
+         * <p>
+         * Default: 10 degrees
+         *
+         * @param degrees standard deviation in degrees
+         * @return builder instance
+         */
+        public Builder setHeadingNoise(float degrees) {
+            this.headingNoise = degrees;
+            return this;
+        }
+
+        /**
+         * Sets time between two fixes.
+         * <p>
+         * Default: 1 second
+         *
+         * @param intervalMillis time in milliseconds
+         * @return builder instance
+         */
+        public Builder setInterval(long intervalMillis) {
+            if (intervalMillis <= 0) {
+                throw new IllegalArgumentException("Interval must be positive");
+            }
+            this.interval = intervalMillis;
+            return this;
+        }
+
+        /**
+         * Sets time after which the track ends.
+         * <p>
+         * Default: 1 hour
+         *
+         * @param durationMillis time in milliseconds
+         * @return builder instance
+         */
+        public Builder setDuration(long durationMillis) {
+            this.duration = durationMillis;
+            return this;
+        }
+
+        /**
+         * Sets time of the first fix, set it for repeatable times of fixes.
+         * <p>
+         * Default: time of subscription
+         *
+         * @param timeMillis time in milliseconds since epoch
+         * @return builder instance
+         */
+        public Builder setStartTime(long timeMillis) {
+            this.startTime = timeMillis;
+            return this;
+        }
+
+        /**
+         * Sets standard deviation of position noise, also used as reported accuracy.
+         * <p>
+         * Default: 5 meters
+         *
+         * @param meters standard deviation in meters
+         * @return builder instance
+         */
+        public Builder setNoise(float meters) {
+            this.noise = meters;
+            return this;
+        }
+
+        /**
+         * Sets correlation time of position noise, 0 gives independent noise of every fix.
+         * <p>
+         * Default: 20 seconds
+         *
+         * @param seconds correlation time in seconds
+         * @return builder instance
+         */
+        public Builder setNoiseCorrelationTime(float seconds) {
+            this.noiseCorrelationTime = seconds;
+            return this;
+        }
+
+        /**
+         * Sets probability that a dropout starts at a fix.
+         * <p>
+         * Default: 0
+         *
+         * @param probability probability between 0 and 1
+         * @return builder instance
+         */
+        public Builder setDropoutProbability(float probability) {
+            this.dropoutProbability = probability;
+            return this;
+        }
+
+        /**
+         * Sets time without fixes after a dropout starts.
+         * <p>
+         * Default: 10 seconds
+         *
+         * @param durationMillis time in milliseconds
+         * @return builder instance
+         */
+        public Builder setDropoutDuration(long durationMillis) {
+            this.dropoutDuration = durationMillis;
+            return this;
+        }
+
+        /**
+         * Sets probability that a fix jumps away from the track.
+         * <p>
+         * Default: 0
+         *
+         * @param probability probability between 0 and 1
+         * @return builder instance
+         */
+        public Builder setJumpProbability(float probability) {
+            this.jumpProbability = probability;
+            return this;
+        }
+
+        /**
+         * Sets distance of jumped fixes from the track.
+         * <p>
+         * Default: 1000 meters
+         *
+         * @param meters distance in meters
+         * @return builder instance
+         */
+        public Builder setJumpDistance(float meters) {
+            this.jumpDistance = meters;
+            return this;
+        }
+
+        /**
+         * Builds generator instance
+         *
+         * @return generator instance
+         */
+        public SyntheticTrack build() {
+            return new SyntheticTrack(this);
+        }
+    }
+}
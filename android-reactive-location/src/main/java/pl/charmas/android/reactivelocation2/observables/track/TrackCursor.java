@@ -0,0 +1,97 @@
+package pl.charmas.android.reactivelocation2.observables.track;
+
+import android.location.Location;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads locations of a track one by one, so a track of any length is read with constant memory.
+ */
+class TrackCursor {
+    private final File[] segments;
+    private int segmentIndex = -1;
+    private ByteBuffer segment;
+    private int offset;
+    private long time;
+    private long latitude;
+    private long longitude;
+    private long accuracy;
+    private long speed;
+    private long bearing;
+
+    TrackCursor(File directory) {
+        this.segments = TrackFormat.listSegments(directory);
+    }
+
+    /**
+     * @return next location, null when all segments were read
+     */
+    Location next() throws IOException {
+        while (true) {
+            if (segment != null) {
+                int next = TrackFormat.nextRecord(segment, offset);
+                if (next != -1) {
+                    Location location = decode(segment, offset);
+                    offset = next;
+                    return location;
+                }
+            }
+            if (++segmentIndex >= segments.length) {
+                segment = null;
+                return null;
+            }
+            segment = map(segments[segmentIndex]);
+            offset = TrackFormat.HEADER_SIZE;
+            if (!TrackFormat.hasValidHeader(segment)) {
+                segment = null;
+            }
+        }
+    }
+
+    private Location decode(ByteBuffer buffer, int recordOffset) {
+        if (buffer.get(recordOffset) == TrackFormat.MARKER_KEYFRAME) {
+            time = 0;
+            latitude = 0;
+            longitude = 0;
+            accuracy = 0;
+            speed = 0;
+            bearing = 0;
+        }
+        buffer.position(recordOffset + 2);
+        long flags = TrackFormat.readVarLong(buffer);
+        time += TrackFormat.readVarLong(buffer);
+        latitude += TrackFormat.readVarLong(buffer);
+        longitude += TrackFormat.readVarLong(buffer);
+
+        Location location = new Location(TrackReader.PROVIDER);
+        location.setTime(time);
+        location.setLatitude(latitude / 1e7);
+        location.setLongitude(longitude / 1e7);
+        if ((flags & TrackFormat.FLAG_ACCURACY) != 0) {
+            accuracy += TrackFormat.readVarLong(buffer);
+            location.setAccuracy(accuracy / 10f);
+        }
+        if ((flags & TrackFormat.FLAG_SPEED) != 0) {
+            speed += TrackFormat.readVarLong(buffer);
+            location.setSpeed(speed / 100f);
+        }
+        if ((flags & TrackFormat.FLAG_BEARING) != 0) {
+            bearing += TrackFormat.readVarLong(buffer);
+            location.setBearing(bearing / 10f);
+        }
+        return location;
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+}
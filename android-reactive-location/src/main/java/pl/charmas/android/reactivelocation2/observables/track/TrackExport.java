@@ -0,0 +1,346 @@
+package pl.charmas.android.reactivelocation2.observables.track;
+
+import android.location.Location;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+
+/**
+ * Writes locations passing through to a GPX or GeoJSON file. Every location is written as one line
+ * through a buffered writer, which is flushed after given number of locations, so memory use does
+ * not depend on length of the stream. File is finished with a trailer when the stream terminates
+ * or is disposed.
+ * <p>
+ * File left without trailer by a crash can be made valid with {@link #repair(File)}, which drops
+ * incomplete last line and appends the trailer. GeoJSON positions are written as
+ * {@code [lng, lat, altitude, time]} with altitude 0 when unknown and Unix time in seconds, as read
+ * by {@link TrackImport#geoJson(File)}.
+ * <p>
+ * Please use builder to create an instance.
+ */
+public class TrackExport implements ObservableTransformer<Location, Location> {
+    public static final int FORMAT_GPX = 0;
+    public static final int FORMAT_GEOJSON = 1;
+
+    private static final String GPX_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<gpx version=\"1.1\" creator=\"ReactiveLocation\" xmlns=\"http://www.topografix.com/GPX/1/1\">\n"
+            + "<trk><trkseg>\n";
+    // trailers are single lines, so repair never keeps a part of them
+    private static final String GPX_TRAILER = "</trkseg></trk></gpx>\n";
+    private static final String GEOJSON_HEADER = "{\"type\":\"Feature\",\"properties\":{},"
+            + "\"geometry\":{\"type\":\"LineString\",\"coordinates\":[\n";
+    private static final String GEOJSON_TRAILER = "]}}\n";
+
+    private final File file;
+    private final int format;
+    private final int flushInterval;
+
+    private TrackExport(Builder builder, File file) {
+        this.file = file;
+        this.format = builder.format;
+        this.flushInterval = builder.flushInterval;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public ObservableSource<Location> apply(final Observable<Location> upstream) {
+        return Observable.create(new ObservableOnSubscribe<Location>() {
+            @Override
+            public void subscribe(ObservableEmitter<Location> emitter) throws Exception {
+                final ExportState state = new ExportState(emitter);
+                state.open();
+                CompositeDisposable disposables = new CompositeDisposable(Disposables.fromAction(new Action() {
+                    @Override
+                    public void run() throws Exception {
+                        state.finish();
+                    }
+                }));
+                emitter.setDisposable(disposables);
+                disposables.add(upstream.subscribe(new Consumer<Location>() {
+                    @Override
+                    public void accept(Location location) throws Exception {
+                        state.onLocation(location);
+                    }
+                }, new Consumer<Throwable>() {
+                    @Override
+                    public void accept(Throwable throwable) throws Exception {
+                        state.onError(throwable);
+                    }
+                }, new Action() {
+                    @Override
+                    public void run() throws Exception {
+                        state.onComplete();
+                    }
+                }));
+            }
+        });
+    }
+
+    /**
+     * Makes a file written by export valid after a crash. Incomplete last line is dropped and the
+     * trailer is appended, file that already ends with the trailer is left as it is.
+     *
+     * @param file GPX or GeoJSON file written by export
+     * @return true when the file was repaired
+     * @throws IOException when file cannot be read or written or it was not written by export
+     */
+    public static boolean repair(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            String header;
+            String trailer;
+            int first = randomAccessFile.length() > 0 ? randomAccessFile.read() : -1;
+            if (first == '<') {
+                header = GPX_HEADER;
+                trailer = GPX_TRAILER;
+            } else if (first == '{') {
+                header = GEOJSON_HEADER;
+                trailer = GEOJSON_TRAILER;
+            } else {
+                throw new IOException("Not an exported track: " + file);
+            }
+            long length = randomAccessFile.length();
+            if (endsWith(randomAccessFile, length, trailer)) {
+                return false;
+            }
+            long end = lastLineEnd(randomAccessFile, length);
+            if (end < header.length()) {
+                // crashed while writing the header
+                randomAccessFile.setLength(0);
+                randomAccessFile.write(header.getBytes("UTF-8"));
+                end = header.length();
+            }
+            randomAccessFile.setLength(end);
+            randomAccessFile.seek(end);
+            randomAccessFile.write(trailer.getBytes("UTF-8"));
+            return true;
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static boolean endsWith(RandomAccessFile file, long length, String suffix) throws IOException {
+        byte[] expected = suffix.getBytes("UTF-8");
+        if (length < expected.length) {
+            return false;
+        }
+        byte[] actual = new byte[expected.length];
+        file.seek(length - expected.length);
+        file.readFully(actual);
+        for (int i = 0; i < expected.length; i++) {
+            if (actual[i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return position after the last new line character, 0 when there is none
+     */
+    private static long lastLineEnd(RandomAccessFile file, long length) throws IOException {
+        byte[] chunk = new byte[4096];
+        long chunkEnd = length;
+        while (chunkEnd > 0) {
+            int size = (int) Math.min(chunk.length, chunkEnd);
+            file.seek(chunkEnd - size);
+            file.readFully(chunk, 0, size);
+            for (int i = size - 1; i >= 0; i--) {
+                if (chunk[i] == '\n') {
+                    return chunkEnd - size + i + 1;
+                }
+            }
+            chunkEnd -= size;
+        }
+        return 0;
+    }
+
+    /**
+     * State of single subscription, writes are done under one lock, so dispose does not close the
+     * file in the middle of a line.
+     */
+    private class ExportState {
+        private final ObservableEmitter<Location> emitter;
+        private final StringBuilder line = new StringBuilder(128);
+        private char[] chars = new char[128];
+        private Writer writer;
+        private long count = 0;
+
+        ExportState(ObservableEmitter<Location> emitter) {
+            this.emitter = emitter;
+        }
+
+        synchronized void open() throws IOException {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+            writer.write(format == FORMAT_GPX ? GPX_HEADER : GEOJSON_HEADER);
+            writer.flush();
+        }
+
+        synchronized void onLocation(Location location) throws IOException {
+            if (writer == null) return;
+            line.setLength(0);
+            if (format == FORMAT_GPX) {
+                appendGpx(location);
+            } else {
+                appendGeoJson(location);
+            }
+            int length = line.length();
+            if (chars.length < length) {
+                chars = new char[Math.max(length, chars.length * 2)];
+            }
+            line.getChars(0, length, chars, 0);
+            writer.write(chars, 0, length);
+            if (++count % flushInterval == 0) {
+                writer.flush();
+            }
+            emitter.onNext(location);
+        }
+
+        private void appendGpx(Location location) {
+            line.append("<trkpt lat=\"");
+            appendFixed(line, location.getLatitude(), 7);
+            line.append("\" lon=\"");
+            appendFixed(line, location.getLongitude(), 7);
+            line.append("\">");
+            if (location.hasAltitude()) {
+                line.append("<ele>");
+                appendFixed(line, location.getAltitude(), 1);
+                line.append("</ele>");
+            }
+            line.append("<time>");
+            Iso8601.format(location.getTime(), line);
+            line.append("</time></trkpt>\n");
+        }
+
+        private void appendGeoJson(Location location) {
+            if (count > 0) {
+                line.append(',');
+            }
+            line.append('[');
+            appendFixed(line, location.getLongitude(), 7);
+            line.append(',');
+            appendFixed(line, location.getLatitude(), 7);
+            line.append(',');
+            appendFixed(line, location.hasAltitude() ? location.getAltitude() : 0, 1);
+            line.append(',');
+            appendFixed(line, location.getTime() / 1000.0, 3);
+            line.append("]\n");
+        }
+
+        synchronized void onError(Throwable throwable) {
+            try {
+                finish();
+            } catch (IOException e) {
+                // original error is reported, file can still be repaired
+            }
+            emitter.onError(throwable);
+        }
+
+        synchronized void onComplete() {
+            try {
+                finish();
+            } catch (IOException e) {
+                emitter.onError(e);
+                return;
+            }
+            emitter.onComplete();
+        }
+
+        synchronized void finish() throws IOException {
+            if (writer == null) return;
+            Writer finished = writer;
+            writer = null;
+            try {
+                finished.write(format == FORMAT_GPX ? GPX_TRAILER : GEOJSON_TRAILER);
+            } finally {
+                finished.close();
+            }
+        }
+    }
+
+    /**
+     * Appends value with given number of decimals, {@link StringBuilder#append(double)} would use
+     * exponent notation for small values.
+     */
+    private static void appendFixed(StringBuilder out, double value, int decimals) {
+        long scale = 1;
+        for (int i = 0; i < decimals; i++) {
+            scale *= 10;
+        }
+        long scaled = Math.round(Math.abs(value) * scale);
+        if (value < 0 && scaled != 0) {
+            out.append('-');
+        }
+        out.append(scaled / scale).append('.');
+        long fraction = scaled % scale;
+        for (long limit = scale / 10; limit > 1 && fraction < limit; limit /= 10) {
+            out.append('0');
+        }
+        out.append(fraction);
+    }
+
+    public static class Builder {
+        private int format = FORMAT_GPX;
+        private int flushInterval = 10;
+
+        /**
+         * Sets format of written file.
+         * <p>
+         * Default: {@link #FORMAT_GPX}
+         *
+         * @param format {@link #FORMAT_GPX} or {@link #FORMAT_GEOJSON}
+         * @return builder instance
+         */
+        public Builder setFormat(int format) {
+            if (format != FORMAT_GPX && format != FORMAT_GEOJSON) {
+                throw new IllegalArgumentException("Unknown format: " + format);
+            }
+            this.format = format;
+            return this;
+        }
+
+        /**
+         * Sets number of locations after which written data is flushed to the file.
+         * <p>
+         * Default: 10
+         *
+         * @param locations number of locations, at least 1
+         * @return builder instance
+         */
+        public Builder setFlushInterval(int locations) {
+            if (locations < 1) {
+                throw new IllegalArgumentException("Flush interval must be at least 1");
+            }
+            this.flushInterval = locations;
+            return this;
+        }
+
+        /**
+         * Builds export instance
+         *
+         * @param file file to write, it is replaced on every subscription
+         * @return export instance
+         */
+        public TrackExport build(File file) {
+            return new TrackExport(this, file);
+        }
+    }
+}
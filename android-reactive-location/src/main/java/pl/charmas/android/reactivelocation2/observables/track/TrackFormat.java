@@ -0,0 +1,156 @@
+package pl.charmas.android.reactivelocation2.observables.track;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * Layout of track segment files.
+ * <p>
+ * Segment starts with {@link #HEADER_SIZE} bytes of header: magic number and format version.
+ * Records follow, each one is marker byte, payload length byte, payload and Fletcher-16 checksum
+ * of all previous bytes of the record. Zero marker or a record with wrong checksum ends the data.
+ * <p>
+ * Payload is a sequence of zig-zag varints: presence flags, time in milliseconds, latitude and
+ * longitude in 1e-7 degrees and present ones of accuracy in decimeters, speed in centimeters per
+ * second and bearing in tenths of degree. Keyframe stores the values, delta record stores
+ * differences from the previous record of the segment. Absent values do not change the state.
+ */
+class TrackFormat {
+    static final int MAGIC = 0x524c544b;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+
+    static final byte MARKER_END = 0;
+    static final byte MARKER_KEYFRAME = 1;
+    static final byte MARKER_DELTA = 2;
+
+    static final int FLAG_ACCURACY = 1;
+    static final int FLAG_SPEED = 1 << 1;
+    static final int FLAG_BEARING = 1 << 2;
+
+    static final int MAX_PAYLOAD_SIZE = 1 + 10 + 5 * 5;
+    static final int MAX_RECORD_SIZE = 2 + MAX_PAYLOAD_SIZE + 2;
+
+    private static final String SEGMENT_SUFFIX = ".track";
+
+    private TrackFormat() {
+    }
+
+    static File segmentFile(File directory, int index) {
+        return new File(directory, String.format(Locale.US, "%08d%s", index, SEGMENT_SUFFIX));
+    }
+
+    static int segmentIndex(File segment) {
+        String name = segment.getName();
+        return Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * @return segment files of the directory ordered by index
+     */
+    static File[] listSegments(File directory) {
+        File[] segments = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                String name = file.getName();
+                return file.isFile() && name.endsWith(SEGMENT_SUFFIX) && name.length() == 8 + SEGMENT_SUFFIX.length();
+            }
+        });
+        if (segments == null) {
+            return new File[0];
+        }
+        Arrays.sort(segments, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                return lhs.getName().compareTo(rhs.getName());
+            }
+        });
+        return segments;
+    }
+
+    static void writeHeader(ByteBuffer buffer) {
+        buffer.putInt(0, MAGIC);
+        buffer.put(4, (byte) VERSION);
+    }
+
+    static boolean hasValidHeader(ByteBuffer buffer) {
+        return buffer.capacity() >= HEADER_SIZE && buffer.getInt(0) == MAGIC && buffer.get(4) == VERSION;
+    }
+
+    /**
+     * @return offset after the record at given offset, or -1 when there is no valid record
+     */
+    static int nextRecord(ByteBuffer buffer, int offset) {
+        if (offset + 4 > buffer.capacity()) {
+            return -1;
+        }
+        byte marker = buffer.get(offset);
+        if (marker != MARKER_KEYFRAME && marker != MARKER_DELTA) {
+            return -1;
+        }
+        int length = buffer.get(offset + 1) & 0xff;
+        int checksumOffset = offset + 2 + length;
+        if (length > MAX_PAYLOAD_SIZE || checksumOffset + 2 > buffer.capacity()) {
+            return -1;
+        }
+        int sum1 = 0;
+        int sum2 = 0;
+        for (int i = offset; i < checksumOffset; i++) {
+            sum1 = (sum1 + (buffer.get(i) & 0xff)) % 255;
+            sum2 = (sum2 + sum1) % 255;
+        }
+        if ((buffer.get(checksumOffset) & 0xff) != sum1 || (buffer.get(checksumOffset + 1) & 0xff) != sum2) {
+            return -1;
+        }
+        return checksumOffset + 2;
+    }
+
+    /**
+     * Appends Fletcher-16 checksum of given bytes.
+     *
+     * @return offset after the checksum
+     */
+    static int writeChecksum(byte[] bytes, int start, int end) {
+        int sum1 = 0;
+        int sum2 = 0;
+        for (int i = start; i < end; i++) {
+            sum1 = (sum1 + (bytes[i] & 0xff)) % 255;
+            sum2 = (sum2 + sum1) % 255;
+        }
+        bytes[end] = (byte) sum1;
+        bytes[end + 1] = (byte) sum2;
+        return end + 2;
+    }
+
+    /**
+     * @return offset after written value
+     */
+    static int writeVarLong(byte[] bytes, int offset, long value) {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7fL) != 0) {
+            bytes[offset++] = (byte) ((zigZag & 0x7f) | 0x80);
+            zigZag >>>= 7;
+        }
+        bytes[offset++] = (byte) zigZag;
+        return offset;
+    }
+
+    /**
+     * Reads zig-zag varint at position of the buffer and moves the position after it.
+     */
+    static long readVarLong(ByteBuffer buffer) {
+        long zigZag = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            zigZag |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 64);
+        return (zigZag >>> 1) ^ -(zigZag & 1);
+    }
+}
@@ -0,0 +1,161 @@
+package pl.charmas.android.reactivelocation2.observables.track;
+
+import android.location.Location;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.functions.BiFunction;
+import io.reactivex.functions.Consumer;
+
+/**
+ * Imports tracks from GPX, KML and GeoJSON files, e.g. as source of
+ * {@link pl.charmas.android.reactivelocation2.ReactiveLocationProvider#mockLocation(Observable)} or
+ * {@link TrackRecorder}. Files are read with pull parsers while locations are requested, so files of
+ * any size can be imported. Flowable variants are parsed only as fast as their subscriber requests,
+ * e.g. the pipelined mock location.
+ * <p>
+ * Locations get accuracy of {@value TrackParser#DEFAULT_ACCURACY} meters, points without time are
+ * placed one second after the previous point. Imported locations are emitted as fast as they are
+ * parsed, to replay them with their timing record them with {@link TrackRecorder} and use
+ * {@link TrackReplay}.
+ */
+public class TrackImport {
+    private static final BiFunction<TrackParser, Emitter<Location>, TrackParser> NEXT_LOCATION = new BiFunction<TrackParser, Emitter<Location>, TrackParser>() {
+        @Override
+        public TrackParser apply(TrackParser parser, Emitter<Location> emitter) throws Exception {
+            Location location = parser.next();
+            if (location != null) {
+                emitter.onNext(location);
+            } else {
+                emitter.onComplete();
+            }
+            return parser;
+        }
+    };
+
+    private static final Consumer<TrackParser> CLOSE_PARSER = new Consumer<TrackParser>() {
+        @Override
+        public void accept(TrackParser parser) throws Exception {
+            parser.close();
+        }
+    };
+
+    private TrackImport() {
+    }
+
+    /**
+     * Creates observable that emits track, route and way points of a GPX file.
+     *
+     * @param file GPX file
+     * @return observable that emits points of the file and completes
+     */
+    public static Observable<Location> gpx(File file) {
+        return Observable.generate(gpxParser(file), NEXT_LOCATION, CLOSE_PARSER);
+    }
+
+    /**
+     * Creates flowable that emits the same points as {@link #gpx(File)}, parsed only as they are
+     * requested.
+     *
+     * @param file GPX file
+     * @return flowable that emits points of the file and completes
+     */
+    public static Flowable<Location> gpxFlowable(File file) {
+        return Flowable.generate(gpxParser(file), NEXT_LOCATION, CLOSE_PARSER);
+    }
+
+    /**
+     * Creates observable that emits points of {@code coordinates} and {@code gx:Track} elements of
+     * a KML file.
+     *
+     * @param file KML file
+     * @return observable that emits points of the file and completes
+     */
+    public static Observable<Location> kml(File file) {
+        return Observable.generate(kmlParser(file), NEXT_LOCATION, CLOSE_PARSER);
+    }
+
+    /**
+     * Creates flowable that emits the same points as {@link #kml(File)}, parsed only as they are
+     * requested.
+     *
+     * @param file KML file
+     * @return flowable that emits points of the file and completes
+     */
+    public static Flowable<Location> kmlFlowable(File file) {
+        return Flowable.generate(kmlParser(file), NEXT_LOCATION, CLOSE_PARSER);
+    }
+
+    /**
+     * Creates observable that emits positions of a GeoJSON file, e.g. of its LineString features.
+     * Optional fourth value of a position is used as Unix time in seconds.
+     *
+     * @param file GeoJSON file
+     * @return observable that emits positions of the file and completes
+     */
+    public static Observable<Location> geoJson(File file) {
+        return Observable.generate(geoJsonParser(file), NEXT_LOCATION, CLOSE_PARSER);
+    }
+
+    /**
+     * Creates flowable that emits the same positions as {@link #geoJson(File)}, parsed only as
+     * they are requested.
+     *
+     * @param file GeoJSON file
+     * @return flowable that emits positions of the file and completes
+     */
+    public static Flowable<Location> geoJsonFlowable(File file) {
+        return Flowable.generate(geoJsonParser(file), NEXT_LOCATION, CLOSE_PARSER);
+    }
+
+    private static Callable<TrackParser> gpxParser(final File file) {
+        return new Callable<TrackParser>() {
+            @Override
+            public TrackParser call() throws Exception {
+                InputStream input = new FileInputStream(file);
+                try {
+                    return new GpxTrackParser(input);
+                } catch (Exception e) {
+                    input.close();
+                    throw e;
+                }
+            }
+        };
+    }
+
+    private static Callable<TrackParser> kmlParser(final File file) {
+        return new Callable<TrackParser>() {
+            @Override
+            public TrackParser call() throws Exception {
+                InputStream input = new FileInputStream(file);
+                try {
+                    return new KmlTrackParser(input);
+                } catch (Exception e) {
+                    input.close();
+                    throw e;
+                }
+            }
+        };
+    }
+
+    private static Callable<TrackParser> geoJsonParser(final File file) {
+        return new Callable<TrackParser>() {
+            @Override
+            public TrackParser call() throws Exception {
+                InputStream input = new FileInputStream(file);
+                try {
+                    return new GeoJsonTrackParser(input);
+                } catch (Exception e) {
+                    input.close();
+                    throw e;
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,58 @@
+package pl.charmas.android.reactivelocation2.observables.track;
+
+import android.location.Location;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Pull parser of a track file that produces one location at a time.
+ */
+abstract class TrackParser implements Closeable {
+    // files rarely store accuracy, mock locations need one
+    static final float DEFAULT_ACCURACY = 5;
+    static final long UNTIMED_INTERVAL = 1000;
+    static final long NO_TIME = Long.MIN_VALUE;
+
+    private final InputStream input;
+    private long lastTime = -UNTIMED_INTERVAL;
+
+    TrackParser(InputStream input) {
+        this.input = input;
+    }
+
+    /**
+     * @return next location of the file, null at its end
+     */
+    abstract Location next() throws Exception;
+
+    /**
+     * Creates location, points without time are placed {@link #UNTIMED_INTERVAL} after the previous
+     * point.
+     */
+    Location location(double latitude, double longitude, double altitude, long time) {
+        Location location = new Location(TrackReader.PROVIDER);
+        location.setLatitude(latitude);
+        location.setLongitude(longitude);
+        if (!Double.isNaN(altitude)) {
+            location.setAltitude(altitude);
+        }
+        location.setAccuracy(DEFAULT_ACCURACY);
+        lastTime = time != NO_TIME ? time : lastTime + UNTIMED_INTERVAL;
+        location.setTime(lastTime);
+        return location;
+    }
+
+    /**
+     * @return name without namespace prefix
+     */
+    static String localName(String name) {
+        return name.substring(name.indexOf(':') + 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
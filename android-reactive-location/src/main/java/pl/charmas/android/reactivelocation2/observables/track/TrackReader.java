@@ -0,0 +1,71 @@
+package pl.charmas.android.reactivelocation2.observables.track;
+
+import android.location.Location;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.functions.BiFunction;
+
+/**
+ * Reads tracks written by {@link TrackRecorder}. Segments are mapped one by one and decoded
+ * lazily, so tracks of any length can be read with constant memory.
+ */
+public class TrackReader {
+    /**
+     * Provider of read locations.
+     */
+    public static final String PROVIDER = "track";
+
+    private static final BiFunction<TrackCursor, Emitter<Location>, TrackCursor> NEXT_LOCATION = new BiFunction<TrackCursor, Emitter<Location>, TrackCursor>() {
+        @Override
+        public TrackCursor apply(TrackCursor cursor, Emitter<Location> emitter) throws Exception {
+            Location location = cursor.next();
+            if (location != null) {
+                emitter.onNext(location);
+            } else {
+                emitter.onComplete();
+            }
+            return cursor;
+        }
+    };
+
+    private TrackReader() {
+    }
+
+    /**
+     * Creates observable that emits all locations of the track in recorded order and completes.
+     * Reading stops at the first damaged record of every segment. Segment with invalid header is
+     * skipped.
+     *
+     * @param directory directory of the track
+     * @return observable that emits recorded locations
+     */
+    public static Observable<Location> read(File directory) {
+        return Observable.generate(openCursor(directory), NEXT_LOCATION);
+    }
+
+    /**
+     * Creates flowable that emits the same locations as {@link #read(File)}, but reads the track
+     * only as fast as locations are requested, e.g. by
+     * {@link pl.charmas.android.reactivelocation2.ReactiveLocationProvider#mockLocation(Flowable, pl.charmas.android.reactivelocation2.observables.location.MockLocationOptions)}.
+     *
+     * @param directory directory of the track
+     * @return flowable that emits recorded locations
+     */
+    public static Flowable<Location> readFlowable(File directory) {
+        return Flowable.generate(openCursor(directory), NEXT_LOCATION);
+    }
+
+    private static Callable<TrackCursor> openCursor(final File directory) {
+        return new Callable<TrackCursor>() {
+            @Override
+            public TrackCursor call() throws Exception {
+                return new TrackCursor(directory);
+            }
+        };
+    }
+}
@@ -0,0 +1,256 @@
+package pl.charmas.android.reactivelocation2.observables.track;
+
+import android.location.Location;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import io.reactivex.functions.Consumer;
+
+/**
+ * Appends locations to a directory of memory mapped segment files, see {@link TrackFormat} for the
+ * layout. Every location is delta encoded against the previous one with a keyframe at the start of
+ * each segment and after given number of records, so a record takes around 10 bytes and writing
+ * it allocates nothing.
+ * <p>
+ * Written records survive crash of the process, {@link #flush()} makes them survive crash of the
+ * system too. On open the tail of the last segment is validated and everything after the last
+ * complete record is discarded, so recording continues after a crash in the same segment.
+ * <p>
+ * Recorder can be used directly as subscriber of location updates. Please use {@link #open(File)}
+ * or builder to create an instance and close it when it is no longer needed.
+ */
+public class TrackRecorder implements Consumer<Location>, Closeable {
+    private final File directory;
+    private final int segmentSize;
+    private final int keyframeInterval;
+    private final byte[] record = new byte[TrackFormat.MAX_RECORD_SIZE];
+
+    private MappedByteBuffer segment;
+    private int segmentIndex;
+    private int recordsSinceKeyframe;
+    private long previousTime;
+    private long previousLatitude;
+    private long previousLongitude;
+    private long previousAccuracy;
+    private long previousSpeed;
+    private long previousBearing;
+
+    /**
+     * Opens recorder with default configuration.
+     *
+     * @param directory directory for segment files, created when it does not exist
+     * @return recorder instance
+     * @throws IOException when directory or segment cannot be opened
+     */
+    public static TrackRecorder open(File directory) throws IOException {
+        return builder().open(directory);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private TrackRecorder(Builder builder, File directory) throws IOException {
+        this.directory = directory;
+        this.segmentSize = builder.segmentSize;
+        this.keyframeInterval = builder.keyframeInterval;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create track directory " + directory);
+        }
+        File[] segments = TrackFormat.listSegments(directory);
+        if (segments.length == 0) {
+            openSegment(0);
+        } else {
+            recoverSegment(segments[segments.length - 1]);
+        }
+    }
+
+    @Override
+    public void accept(Location location) throws Exception {
+        record(location);
+    }
+
+    /**
+     * Appends location to the track.
+     *
+     * @param location location to append
+     * @throws IOException when new segment cannot be created
+     */
+    public synchronized void record(Location location) throws IOException {
+        if (segment == null) {
+            throw new IllegalStateException("Recorder is closed");
+        }
+        if (segment.position() + TrackFormat.MAX_RECORD_SIZE > segment.capacity()) {
+            openSegment(segmentIndex + 1);
+        }
+        boolean keyframe = recordsSinceKeyframe == 0 || recordsSinceKeyframe >= keyframeInterval;
+        if (keyframe) {
+            previousTime = 0;
+            previousLatitude = 0;
+            previousLongitude = 0;
+            previousAccuracy = 0;
+            previousSpeed = 0;
+            previousBearing = 0;
+            recordsSinceKeyframe = 0;
+        }
+        int flags = (location.hasAccuracy() ? TrackFormat.FLAG_ACCURACY : 0)
+                | (location.hasSpeed() ? TrackFormat.FLAG_SPEED : 0)
+                | (location.hasBearing() ? TrackFormat.FLAG_BEARING : 0);
+        int offset = TrackFormat.writeVarLong(record, 2, flags);
+
+        long time = location.getTime();
+        long latitude = Math.round(location.getLatitude() * 1e7);
+        long longitude = Math.round(location.getLongitude() * 1e7);
+        offset = TrackFormat.writeVarLong(record, offset, time - previousTime);
+        offset = TrackFormat.writeVarLong(record, offset, latitude - previousLatitude);
+        offset = TrackFormat.writeVarLong(record, offset, longitude - previousLongitude);
+        previousTime = time;
+        previousLatitude = latitude;
+        previousLongitude = longitude;
+        if (location.hasAccuracy()) {
+            long accuracy = fixedPoint(location.getAccuracy(), 10);
+            offset = TrackFormat.writeVarLong(record, offset, accuracy - previousAccuracy);
+            previousAccuracy = accuracy;
+        }
+        if (location.hasSpeed()) {
+            long speed = fixedPoint(location.getSpeed(), 100);
+            offset = TrackFormat.writeVarLong(record, offset, speed - previousSpeed);
+            previousSpeed = speed;
+        }
+        if (location.hasBearing()) {
+            long bearing = fixedPoint(location.getBearing(), 10);
+            offset = TrackFormat.writeVarLong(record, offset, bearing - previousBearing);
+            previousBearing = bearing;
+        }
+
+        record[0] = keyframe ? TrackFormat.MARKER_KEYFRAME : TrackFormat.MARKER_DELTA;
+        record[1] = (byte) (offset - 2);
+        offset = TrackFormat.writeChecksum(record, 0, offset);
+        segment.put(record, 0, offset);
+        recordsSinceKeyframe++;
+    }
+
+    /**
+     * Writes recorded locations to storage, so they survive crash of the system.
+     */
+    public synchronized void flush() {
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Flushes and closes the recorder. Track can be read with {@link TrackReader} afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        flush();
+        segment = null;
+    }
+
+    private void openSegment(int index) throws IOException {
+        if (segment != null) {
+            segment.force();
+        }
+        segment = map(TrackFormat.segmentFile(directory, index), segmentSize);
+        segmentIndex = index;
+        TrackFormat.writeHeader(segment);
+        segment.position(TrackFormat.HEADER_SIZE);
+        recordsSinceKeyframe = 0;
+    }
+
+    private void recoverSegment(File file) throws IOException {
+        MappedByteBuffer buffer = map(file, (int) Math.max(file.length(), TrackFormat.HEADER_SIZE + TrackFormat.MAX_RECORD_SIZE));
+        if (!TrackFormat.hasValidHeader(buffer)) {
+            // crashed while the segment was created
+            clear(buffer, 0);
+            TrackFormat.writeHeader(buffer);
+        }
+        int offset = TrackFormat.HEADER_SIZE;
+        int next;
+        while ((next = TrackFormat.nextRecord(buffer, offset)) != -1) {
+            offset = next;
+        }
+        clear(buffer, offset);
+        segment = buffer;
+        segmentIndex = TrackFormat.segmentIndex(file);
+        segment.position(offset);
+        // state of the last record is not restored, so recording continues with a keyframe
+        recordsSinceKeyframe = 0;
+    }
+
+    /**
+     * Values are clamped to int range, so their deltas fit size reserved for them.
+     */
+    private static long fixedPoint(float value, int scale) {
+        return Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, Math.round((double) value * scale)));
+    }
+
+    private static void clear(MappedByteBuffer buffer, int from) {
+        for (int i = from; i < buffer.capacity(); i++) {
+            if (buffer.get(i) != 0) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+    }
+
+    private static MappedByteBuffer map(File file, int size) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            // mapping stays valid after the file is closed
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    public static class Builder {
+        private int segmentSize = 1024 * 1024;
+        private int keyframeInterval = 60;
+
+        /**
+         * Sets size of a segment file.
+         * <p>
+         * Default: 1 MB, around 100 000 locations
+         *
+         * @param bytes size in bytes
+         * @return builder instance
+         */
+        public Builder setSegmentSize(int bytes) {
+            if (bytes < TrackFormat.HEADER_SIZE + TrackFormat.MAX_RECORD_SIZE) {
+                throw new IllegalArgumentException("Segment is too small");
+            }
+            this.segmentSize = bytes;
+            return this;
+        }
+
+        /**
+         * Sets number of records after which a keyframe is written.
+         * <p>
+         * Default: 60
+         *
+         * @param records number of records
+         * @return builder instance
+         */
+        public Builder setKeyframeInterval(int records) {
+            this.keyframeInterval = records;
+            return this;
+        }
+
+        /**
+         * Opens recorder instance
+         *
+         * @param directory directory for segment files, created when it does not exist
+         * @return recorder instance
+         * @throws IOException when directory or segment cannot be opened
+         */
+        public TrackRecorder open(File directory) throws IOException {
+            return new TrackRecorder(this, directory);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package pl.charmas.android.reactivelocation2.observables.track;
+
+import android.location.Location;
+import android.os.Build;
+import android.os.SystemClock;
+
+import org.reactivestreams.Publisher;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Replays tracks written by {@link TrackRecorder}, e.g. as source of
+ * {@link pl.charmas.android.reactivelocation2.ReactiveLocationProvider#mockLocation(Observable)}.
+ * Track is read lazily, one location ahead of the replay.
+ * <p>
+ * Locations are emitted with original timing, with timing scaled by given speed or as fast as
+ * possible. By default time of every location is replaced with time of its emission, so replayed
+ * locations look fresh to the fused location provider. Please use builder to create an instance.
+ */
+public class TrackReplay {
+    /**
+     * Speed that replays track as fast as possible.
+     */
+    public static final float SPEED_UNLIMITED = Float.POSITIVE_INFINITY;
+
+    private final float speed;
+    private final boolean rebaseTime;
+    private final Scheduler scheduler;
+
+    private TrackReplay(Builder builder) {
+        this.speed = builder.speed;
+        this.rebaseTime = builder.rebaseTime;
+        this.scheduler = builder.scheduler;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Creates observable that replays the track and completes at its end.
+     *
+     * @param directory directory of the track
+     * @return observable that emits locations of the track
+     */
+    public Observable<Location> replay(final File directory) {
+        return Observable.create(new ObservableOnSubscribe<Location>() {
+            @Override
+            public void subscribe(ObservableEmitter<Location> emitter) throws Exception {
+                Scheduler.Worker worker = scheduler.createWorker();
+                emitter.setDisposable(worker);
+                new ReplayState(emitter, worker, new TrackCursor(directory)).start();
+            }
+        });
+    }
+
+    /**
+     * Creates flowable that replays the track like {@link #replay(File)}, but reads next location
+     * only when it is requested, e.g. by
+     * {@link pl.charmas.android.reactivelocation2.ReactiveLocationProvider#mockLocation(Flowable, pl.charmas.android.reactivelocation2.observables.location.MockLocationOptions)}.
+     * Location that is requested late is emitted right away, following locations keep their
+     * original timing.
+     *
+     * @param directory directory of the track
+     * @return flowable that emits locations of the track
+     */
+    public Flowable<Location> replayFlowable(final File directory) {
+        return Flowable.defer(new Callable<Publisher<Location>>() {
+            @Override
+            public Publisher<Location> call() throws Exception {
+                final ReplayClock clock = new ReplayClock();
+                return TrackReader.readFlowable(directory)
+                        .concatMap(new Function<Location, Publisher<Location>>() {
+                            @Override
+                            public Publisher<Location> apply(Location location) throws Exception {
+                                long delay = clock.delayOf(location);
+                                Flowable<Location> just = Flowable.just(location);
+                                return delay > 0 ? just.delay(delay, TimeUnit.MILLISECONDS, scheduler) : just;
+                            }
+                        }, 1)
+                        .map(new Function<Location, Location>() {
+                            @Override
+                            public Location apply(Location location) throws Exception {
+                                return rebase(location);
+                            }
+                        })
+                        .subscribeOn(scheduler);
+            }
+        });
+    }
+
+    private Location rebase(Location location) {
+        if (rebaseTime) {
+            location.setTime(System.currentTimeMillis());
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+                location.setElapsedRealtimeNanos(SystemClock.elapsedRealtimeNanos());
+            }
+        }
+        return location;
+    }
+
+    private class ReplayState implements Runnable {
+        private final ObservableEmitter<Location> emitter;
+        private final Scheduler.Worker worker;
+        private final TrackCursor cursor;
+        private final ReplayClock clock = new ReplayClock();
+        private Location next;
+
+        ReplayState(ObservableEmitter<Location> emitter, Scheduler.Worker worker, TrackCursor cursor) {
+            this.emitter = emitter;
+            this.worker = worker;
+            this.cursor = cursor;
+        }
+
+        void start() {
+            worker.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (!readNext()) return;
+                    clock.delayOf(next);
+                    ReplayState.this.run();
+                }
+            });
+        }
+
+        @Override
+        public void run() {
+            while (!emitter.isDisposed()) {
+                emitter.onNext(rebase(next));
+                if (!readNext()) return;
+                long delay = clock.delayOf(next);
+                if (delay > 0) {
+                    worker.schedule(this, delay, TimeUnit.MILLISECONDS);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return true when there is next location, otherwise the emitter is terminated
+         */
+        private boolean readNext() {
+            try {
+                next = cursor.next();
+            } catch (Exception e) {
+                emitter.onError(e);
+                return false;
+            }
+            if (next == null) {
+                emitter.onComplete();
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Due times of one replay, locations are passed to it one by one in track order.
+     */
+    private class ReplayClock {
+        private boolean started = false;
+        private long startTrackTime;
+        private long startReplayTime;
+        private long lastDueTime;
+
+        /**
+         * @return milliseconds the location has to wait for its due time
+         */
+        long delayOf(Location location) {
+            long now = scheduler.now(TimeUnit.MILLISECONDS);
+            if (!started) {
+                started = true;
+                startTrackTime = location.getTime();
+                startReplayTime = now;
+                lastDueTime = now;
+                return 0;
+            }
+            if (speed == SPEED_UNLIMITED) return 0;
+            // track time can go back when tracks were appended, replay does not
+            long dueTime = Math.max(lastDueTime, startReplayTime + (long) ((location.getTime() - startTrackTime) / speed));
+            lastDueTime = dueTime;
+            return dueTime - now;
+        }
+    }
+
+    public static class Builder {
+        private float speed = 1;
+        private boolean rebaseTime = true;
+        private Scheduler scheduler = Schedulers.computation();
+
+        /**
+         * Sets speed of the replay relative to original timing, e.g. 10 replays ten hours of track
+         * in one hour.
+         * <p>
+         * Default: 1, original timing
+         *
+         * @param speed positive speed or {@link #SPEED_UNLIMITED}
+         * @return builder instance
+         */
+        public Builder setSpeed(float speed) {
+            if (!(speed > 0)) {
+                throw new IllegalArgumentException("Speed must be positive");
+            }
+            this.speed = speed;
+            return this;
+        }
+
+        /**
+         * Sets whether time of locations is replaced with time of their emission.
+         * <p>
+         * Default: true
+         *
+         * @param rebaseTime true to replace time of locations
+         * @return builder instance
+         */
+        public Builder setRebaseTime(boolean rebaseTime) {
+            this.rebaseTime = rebaseTime;
+            return this;
+        }
+
+        /**
+         * Sets scheduler the track is read and emitted on.
+         * <p>
+         * Default: {@link Schedulers#computation()}
+         *
+         * @param scheduler scheduler
+         * @return builder instance
+         */
+        public Builder setScheduler(Scheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Builds replay instance
+         *
+         * @return replay instance
+         */
+        public TrackReplay build() {
+            return new TrackReplay(this);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package pl.charmas.android.reactivelocation2.observables.geocode;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PathCellsTest {
+    private static final double SCALE = 10000;
+
+    @Test
+    public void everyCellCrossedBySegmentIsVisitedOnce() {
+        Random random = new Random(1);
+        for (int i = 0; i < 200; i++) {
+            double lat = 52 + random.nextDouble();
+            double lng = 21 + random.nextDouble();
+            double endLat = lat + (random.nextDouble() - 0.5) * 0.02;
+            double endLng = lng + (random.nextDouble() - 0.5) * 0.02;
+
+            List<Long> walked = walk(lat, lng, endLat, endLng);
+
+            Set<Long> unique = new HashSet<>(walked);
+            assertEquals(walked.size(), unique.size());
+            for (int sample = 0; sample <= 100000; sample++) {
+                double fraction = sample / 100000.0;
+                long cell = cell(lat + (endLat - lat) * fraction, lng + (endLng - lng) * fraction);
+                assertTrue("segment " + i + " skipped a cell", unique.contains(cell));
+            }
+            // a walk only ever steps to a neighbouring cell
+            long cells = Math.abs(latIndex(endLat) - latIndex(lat)) + Math.abs(lngIndex(endLng) - lngIndex(lng)) + 1;
+            assertEquals(cells, walked.size());
+        }
+    }
+
+    @Test
+    public void walkAlongOneAxisVisitsCellsInOrder() {
+        List<Long> walked = walk(52.00005, 21.00005, 52.00005, 21.00105);
+
+        assertEquals(11, walked.size());
+        for (int i = 0; i < walked.size(); i++) {
+            assertEquals(cell(52.00005, 21.00005 + i / SCALE), (long) walked.get(i));
+        }
+    }
+
+    @Test
+    public void walkContinuesAcrossAntimeridian() {
+        List<Long> walked = walk(0.00005, 179.99975, 0.00005, -179.99975);
+
+        List<Long> expected = new ArrayList<>();
+        expected.add(cell(0.00005, 179.99975));
+        expected.add(cell(0.00005, 179.99985));
+        expected.add(cell(0.00005, 179.99995));
+        expected.add(cell(0.00005, -179.99995));
+        expected.add(cell(0.00005, -179.99985));
+        expected.add(cell(0.00005, -179.99975));
+        assertEquals(expected, walked);
+    }
+
+    @Test
+    public void segmentWithinOneCellHasNoNextCell() {
+        PathCells cells = new PathCells(SCALE);
+        cells.start(52.00001, 21.00001, 52.00009, 21.00009);
+
+        assertFalse(cells.next());
+    }
+
+    /**
+     * @return cells of the walk, including the start cell
+     */
+    private static List<Long> walk(double lat, double lng, double endLat, double endLng) {
+        PathCells cells = new PathCells(SCALE);
+        cells.start(lat, lng, endLat, endLng);
+        List<Long> walked = new ArrayList<>();
+        walked.add(cell(lat, lng));
+        while (cells.next()) {
+            walked.add(cell(cells.latitude(), cells.longitude()));
+        }
+        return walked;
+    }
+
+    private static long cell(double lat, double lng) {
+        return ReverseGeocodeCache.cellOf(lat, lng, 4);
+    }
+
+    private static long latIndex(double lat) {
+        return (long) Math.floor(lat * SCALE);
+    }
+
+    private static long lngIndex(double lng) {
+        return (long) Math.floor(lng * SCALE);
+    }
+}
@@ -0,0 +1,114 @@
+package pl.charmas.android.reactivelocation2.observables.geofence;
+
+import android.location.Location;
+
+import com.google.android.gms.location.Geofence;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.Observable;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 25)
+public class LocalGeofenceEngineTest {
+    // far from the clock of the test run, expiry has to follow location time
+    private static final long START_TIME = 1000000000000L;
+    private static final int ALL_TRANSITIONS = Geofence.GEOFENCE_TRANSITION_ENTER
+            | Geofence.GEOFENCE_TRANSITION_EXIT | Geofence.GEOFENCE_TRANSITION_DWELL;
+
+    @Test
+    public void geofenceExpiresAfterDurationOfLocationTime() {
+        LocalGeofenceEngine engine = LocalGeofenceEngine.builder()
+                .addGeofence(circle("expiring", 52.0, 21.0, 100, 60000))
+                .build();
+
+        List<GeofenceTransitionEvent> events = Observable.just(
+                location(52.0, 21.0, START_TIME + 61000),
+                location(52.1, 21.0, START_TIME + 62000),
+                location(52.0, 21.0, START_TIME + 63000))
+                .startWith(location(52.1, 21.0, START_TIME))
+                .compose(engine)
+                .toList()
+                .blockingGet();
+
+        assertEquals(0, events.size());
+    }
+
+    @Test
+    public void expiryWhileInsideDropsGeofenceWithoutExit() {
+        LocalGeofenceEngine engine = LocalGeofenceEngine.builder()
+                .addGeofence(circle("expiring", 52.0, 21.0, 100, 60000))
+                .build();
+
+        List<GeofenceTransitionEvent> events = Observable.just(
+                location(52.0, 21.0, START_TIME),
+                location(52.0, 21.0, START_TIME + 59000),
+                location(52.0, 21.0, START_TIME + 60000),
+                location(52.1, 21.0, START_TIME + 61000),
+                location(52.0, 21.0, START_TIME + 62000))
+                .compose(engine)
+                .toList()
+                .blockingGet();
+
+        assertEquals(transitions(Geofence.GEOFENCE_TRANSITION_ENTER), transitionsOf(events));
+    }
+
+    @Test
+    public void circleCrossingAntimeridianIsFoundFromOtherSide() {
+        LocalGeofenceEngine engine = LocalGeofenceEngine.builder()
+                .addGeofence(circle("antimeridian", 10.0, 179.9995, 1000, Geofence.NEVER_EXPIRE))
+                .build();
+
+        List<GeofenceTransitionEvent> events = Observable.just(
+                location(10.0, 179.9, START_TIME),
+                location(10.0, -179.9995, START_TIME + 1000),
+                location(10.0, -179.9, START_TIME + 2000))
+                .compose(engine)
+                .toList()
+                .blockingGet();
+
+        assertEquals(transitions(Geofence.GEOFENCE_TRANSITION_ENTER, Geofence.GEOFENCE_TRANSITION_EXIT), transitionsOf(events));
+    }
+
+    private static LocalGeofence circle(String requestId, double lat, double lng, float radius, long expirationDuration) {
+        return new LocalGeofence.Builder()
+                .setRequestId(requestId)
+                .setCircularRegion(lat, lng, radius)
+                .setTransitionTypes(ALL_TRANSITIONS)
+                .setLoiteringDelay(Integer.MAX_VALUE)
+                .setExpirationDuration(expirationDuration)
+                .build();
+    }
+
+    private static Location location(double lat, double lng, long time) {
+        Location location = new Location("test");
+        location.setLatitude(lat);
+        location.setLongitude(lng);
+        location.setTime(time);
+        return location;
+    }
+
+    private static List<Integer> transitions(Integer... transitions) {
+        List<Integer> list = new ArrayList<>();
+        for (Integer transition : transitions) {
+            list.add(transition);
+        }
+        return list;
+    }
+
+    private static List<Integer> transitionsOf(List<GeofenceTransitionEvent> events) {
+        List<Integer> list = new ArrayList<>();
+        for (GeofenceTransitionEvent event : events) {
+            list.add(event.getTransition());
+        }
+        return list;
+    }
+}
@@ -0,0 +1,237 @@
+package pl.charmas.android.reactivelocation2.observables.location;
+
+import android.location.Location;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import io.reactivex.Observable;
+import pl.charmas.android.reactivelocation2.observables.GeoMath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 25)
+public class KalmanLocationTransformerTest {
+    private static final double START_LAT = 52.2297;
+    private static final double START_LNG = 21.0122;
+    private static final long START_TIME = 1500000000000L;
+    private static final double SPEED = 10;
+    private static final double BEARING = 60;
+    private static final float NOISE = 10;
+    // fixes before the filter settles are not compared
+    private static final int WARM_UP = 10;
+    // turns and speed changes make the filter lag, it still has to beat raw fixes on every segment
+    private static final double MAX_SEGMENT_ERROR_RATIO = 0.9;
+
+    @Test
+    public void smoothedErrorIsLowerThanRawErrorAgainstGroundTruth() {
+        List<Location> truth = groundTruth(300);
+        List<Location> fixes = addNoise(truth, new Random(42));
+
+        List<Location> smoothed = Observable.fromIterable(fixes)
+                .compose(KalmanLocationTransformer.builder().build())
+                .toList()
+                .blockingGet();
+
+        double rawError = rmsError(fixes, truth);
+        double smoothedError = rmsError(smoothed, truth);
+        assertTrue("smoothed " + smoothedError + " m, raw " + rawError + " m", smoothedError < rawError * 0.7);
+    }
+
+    @Test
+    public void smoothedErrorStaysBoundedThroughTurnsStopsAndAccuracyChanges() {
+        Segment[] segments = {
+                new Segment("cruise", 60, 10, 10, 0, 10),
+                new Segment("braking", 20, 10, 0, 0, 10),
+                new Segment("stop", 30, 0, 0, 0, 10),
+                new Segment("accelerating", 20, 0, 8, 0, 10),
+                new Segment("right turn", 10, 8, 8, 9, 10),
+                new Segment("poor accuracy", 60, 8, 8, 0, 25),
+                new Segment("good accuracy", 30, 8, 8, 0, 4),
+                new Segment("u-turn", 20, 5, 5, -9, 10),
+                new Segment("slow", 40, 5, 5, 0, 10),
+        };
+        for (long seed = 1; seed <= 5; seed++) {
+            List<Location> truth = new ArrayList<>();
+            List<Location> fixes = new ArrayList<>();
+            int[] segmentStarts = drive(segments, new Random(seed), truth, fixes);
+
+            List<Location> smoothed = Observable.fromIterable(fixes)
+                    .compose(KalmanLocationTransformer.builder().build())
+                    .toList()
+                    .blockingGet();
+
+            double rawError = rmsError(fixes, truth, WARM_UP, truth.size());
+            double smoothedError = rmsError(smoothed, truth, WARM_UP, truth.size());
+            assertTrue("seed " + seed + ": smoothed " + smoothedError + " m, raw " + rawError + " m",
+                    smoothedError < rawError * 0.7);
+            for (int i = 0; i < segments.length; i++) {
+                int from = Math.max(segmentStarts[i], WARM_UP);
+                int to = i + 1 < segments.length ? segmentStarts[i + 1] : truth.size();
+                double segmentRawError = rmsError(fixes, truth, from, to);
+                double segmentSmoothedError = rmsError(smoothed, truth, from, to);
+                assertTrue("seed " + seed + ", " + segments[i].name + ": smoothed " + segmentSmoothedError
+                                + " m, raw " + segmentRawError + " m",
+                        segmentSmoothedError < segmentRawError * MAX_SEGMENT_ERROR_RATIO);
+            }
+        }
+    }
+
+    @Test
+    public void filterStartsAgainFromFixAfterGap() {
+        List<Location> fixes = addNoise(groundTruth(30), new Random(7));
+        Location last = fixes.get(fixes.size() - 1);
+        Location afterGap = jump(last, 120000, 500);
+        fixes.add(afterGap);
+
+        List<Location> smoothed = Observable.fromIterable(fixes)
+                .compose(KalmanLocationTransformer.builder().setMaxGap(60000).build())
+                .toList()
+                .blockingGet();
+
+        Location filtered = smoothed.get(smoothed.size() - 1);
+        assertEquals(afterGap.getLatitude(), filtered.getLatitude(), 1e-9);
+        assertEquals(afterGap.getLongitude(), filtered.getLongitude(), 1e-9);
+        assertEquals(afterGap.getAccuracy(), filtered.getAccuracy(), 1e-3);
+        assertEquals(0, filtered.getSpeed(), 1e-6);
+        assertFalse(filtered.hasBearing());
+    }
+
+    @Test
+    public void filterKeepsEstimateWithinGap() {
+        List<Location> fixes = addNoise(groundTruth(30), new Random(7));
+        Location last = fixes.get(fixes.size() - 1);
+        Location jump = jump(last, 1000, 500);
+        fixes.add(jump);
+
+        List<Location> smoothed = Observable.fromIterable(fixes)
+                .compose(KalmanLocationTransformer.builder().setMaxGap(60000).build())
+                .toList()
+                .blockingGet();
+
+        Location filtered = smoothed.get(smoothed.size() - 1);
+        assertTrue(filtered.distanceTo(jump) > 100);
+    }
+
+    private static List<Location> groundTruth(int count) {
+        double metersPerDegreeLng = GeoMath.METERS_PER_DEGREE * Math.cos(Math.toRadians(START_LAT));
+        double bearing = Math.toRadians(BEARING);
+        List<Location> truth = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double distance = SPEED * i;
+            Location location = new Location("truth");
+            location.setLatitude(START_LAT + distance * Math.cos(bearing) / GeoMath.METERS_PER_DEGREE);
+            location.setLongitude(START_LNG + distance * Math.sin(bearing) / metersPerDegreeLng);
+            location.setTime(START_TIME + i * 1000L);
+            truth.add(location);
+        }
+        return truth;
+    }
+
+    private static List<Location> addNoise(List<Location> truth, Random random) {
+        List<Location> fixes = new ArrayList<>(truth.size());
+        for (Location point : truth) {
+            fixes.add(noisy(point, NOISE, random));
+        }
+        return fixes;
+    }
+
+    /**
+     * Drives through the segments with one fix per second, fixes get noise of their segment and
+     * report it as accuracy.
+     *
+     * @return index of the first location of every segment
+     */
+    private static int[] drive(Segment[] segments, Random random, List<Location> truth, List<Location> fixes) {
+        int[] segmentStarts = new int[segments.length];
+        double lat = START_LAT;
+        double lng = START_LNG;
+        double bearing = BEARING;
+        long time = START_TIME;
+        for (int i = 0; i < segments.length; i++) {
+            Segment segment = segments[i];
+            segmentStarts[i] = truth.size();
+            for (int second = 0; second < segment.duration; second++) {
+                double progress = (second + 0.5) / segment.duration;
+                double speed = segment.startSpeed + (segment.endSpeed - segment.startSpeed) * progress;
+                bearing += segment.turnRate;
+                double metersPerDegreeLng = GeoMath.METERS_PER_DEGREE * Math.cos(Math.toRadians(lat));
+                lat += speed * Math.cos(Math.toRadians(bearing)) / GeoMath.METERS_PER_DEGREE;
+                lng += speed * Math.sin(Math.toRadians(bearing)) / metersPerDegreeLng;
+                time += 1000;
+
+                Location point = new Location("truth");
+                point.setLatitude(lat);
+                point.setLongitude(lng);
+                point.setTime(time);
+                truth.add(point);
+                fixes.add(noisy(point, segment.noise, random));
+            }
+        }
+        return segmentStarts;
+    }
+
+    private static Location noisy(Location point, float noise, Random random) {
+        double metersPerDegreeLng = GeoMath.METERS_PER_DEGREE * Math.cos(Math.toRadians(point.getLatitude()));
+        Location fix = new Location("fix");
+        fix.setLatitude(point.getLatitude() + random.nextGaussian() * noise / GeoMath.METERS_PER_DEGREE);
+        fix.setLongitude(point.getLongitude() + random.nextGaussian() * noise / metersPerDegreeLng);
+        fix.setAccuracy(noise);
+        fix.setTime(point.getTime());
+        return fix;
+    }
+
+    private static Location jump(Location from, long afterMillis, double northMeters) {
+        Location jump = new Location(from);
+        jump.setLatitude(from.getLatitude() + northMeters / GeoMath.METERS_PER_DEGREE);
+        jump.setTime(from.getTime() + afterMillis);
+        return jump;
+    }
+
+    private static double rmsError(List<Location> locations, List<Location> truth) {
+        return rmsError(locations, truth, WARM_UP, truth.size());
+    }
+
+    private static double rmsError(List<Location> locations, List<Location> truth, int from, int to) {
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            double error = locations.get(i).distanceTo(truth.get(i));
+            sum += error * error;
+        }
+        return Math.sqrt(sum / (to - from));
+    }
+
+    private static class Segment {
+        final String name;
+        final int duration;
+        final double startSpeed;
+        final double endSpeed;
+        final double turnRate;
+        final float noise;
+
+        /**
+         * @param duration   seconds
+         * @param startSpeed meters per second
+         * @param endSpeed   meters per second
+         * @param turnRate   degrees per second, positive to the right
+         * @param noise      meters
+         */
+        Segment(String name, int duration, double startSpeed, double endSpeed, double turnRate, float noise) {
+            this.name = name;
+            this.duration = duration;
+            this.startSpeed = startSpeed;
+            this.endSpeed = endSpeed;
+            this.turnRate = turnRate;
+            this.noise = noise;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package pl.charmas.android.reactivelocation2.observables.track;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class Iso8601Test {
+    private static final long TIME = 1500000000000L;
+
+    @Test
+    public void parsesUtcDateTime() {
+        assertEquals(TIME, Iso8601.parse("2017-07-14T02:40:00Z"));
+        assertEquals(TIME, Iso8601.parse("2017-07-14T02:40:00z"));
+        assertEquals(TIME, Iso8601.parse(" 2017-07-14T02:40:00Z\n"));
+        assertEquals(TIME, Iso8601.parse("2017-07-14 02:40:00"));
+    }
+
+    @Test
+    public void parsesFractionOfSecond() {
+        assertEquals(TIME + 500, Iso8601.parse("2017-07-14T02:40:00.5Z"));
+        assertEquals(TIME + 123, Iso8601.parse("2017-07-14T02:40:00.123Z"));
+        assertEquals(TIME + 123, Iso8601.parse("2017-07-14T02:40:00,123456Z"));
+    }
+
+    @Test
+    public void parsesOffset() {
+        assertEquals(TIME + 500, Iso8601.parse("2017-07-14T04:40:00.5+02:00"));
+        assertEquals(TIME, Iso8601.parse("2017-07-13T21:10:00-05:30"));
+        assertEquals(TIME, Iso8601.parse("2017-07-13T21:10:00-0530"));
+    }
+
+    @Test
+    public void parsesDatesAcrossCalendar() {
+        assertEquals(0, Iso8601.parse("1970-01-01T00:00:00Z"));
+        assertEquals(-1, Iso8601.parse("1969-12-31T23:59:59.999Z"));
+        assertEquals(1456747200000L, Iso8601.parse("2016-02-29T12:00:00Z"));
+        assertEquals(-2203891200000L, Iso8601.parse("1900-03-01T00:00:00Z"));
+    }
+
+    @Test
+    public void rejectsUnsupportedText() {
+        String[] texts = {"", "2017-07-14", "2017/07/14T02:40:00Z", "2017-07-14T02:40Z", "2017-07-14T02:40:00 UTC", "yesterday"};
+        for (String text : texts) {
+            try {
+                Iso8601.parse(text);
+                fail("Parsed " + text);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void formatsUtcDateTime() {
+        assertEquals("2017-07-14T02:40:00.000Z", format(TIME));
+        assertEquals("1969-12-31T23:59:59.999Z", format(-1));
+        assertEquals("2016-02-29T12:00:00.007Z", format(1456747200007L));
+    }
+
+    @Test
+    public void formattedTimeIsParsedBack() {
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            long time = (long) ((random.nextDouble() - 0.3) * 4e12);
+            assertEquals(time, Iso8601.parse(format(time)));
+        }
+    }
+
+    private static String format(long time) {
+        StringBuilder out = new StringBuilder();
+        Iso8601.format(time, out);
+        return out.toString();
+    }
+}
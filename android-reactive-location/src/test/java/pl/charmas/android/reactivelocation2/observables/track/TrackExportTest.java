@@ -0,0 +1,176 @@
+package pl.charmas.android.reactivelocation2.observables.track;
+
+import android.location.Location;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.reactivex.Observable;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 25)
+public class TrackExportTest {
+    private static final long START_TIME = 1500000000000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void gpxWithIncompleteLastLineIsRepaired() throws IOException {
+        File file = folder.newFile("track.gpx");
+        List<Location> locations = track(5);
+        export(TrackExport.FORMAT_GPX, file, locations);
+        crash(file, "</trkseg></trk></gpx>\n", "<trkpt lat=\"52.2");
+
+        assertTrue(TrackExport.repair(file));
+
+        assertTrack(locations, TrackImport.gpx(file).toList().blockingGet());
+    }
+
+    @Test
+    public void geoJsonWithIncompleteLastLineIsRepaired() throws IOException {
+        File file = folder.newFile("track.geojson");
+        List<Location> locations = track(5);
+        export(TrackExport.FORMAT_GEOJSON, file, locations);
+        crash(file, "]}}\n", ",[21.0");
+
+        assertTrue(TrackExport.repair(file));
+
+        assertTrack(locations, TrackImport.geoJson(file).toList().blockingGet());
+    }
+
+    @Test
+    public void fileWithoutLocationsIsRepaired() throws IOException {
+        File gpx = folder.newFile("empty.gpx");
+        File geoJson = folder.newFile("empty.geojson");
+        export(TrackExport.FORMAT_GPX, gpx, new ArrayList<Location>());
+        export(TrackExport.FORMAT_GEOJSON, geoJson, new ArrayList<Location>());
+        crash(gpx, "</trkseg></trk></gpx>\n", "");
+        crash(geoJson, "]}}\n", "");
+
+        assertTrue(TrackExport.repair(gpx));
+        assertTrue(TrackExport.repair(geoJson));
+
+        assertEquals(0, (long) TrackImport.gpx(gpx).count().blockingGet());
+        assertEquals(0, (long) TrackImport.geoJson(geoJson).count().blockingGet());
+    }
+
+    @Test
+    public void fileCrashedWithinHeaderGetsWholeHeader() throws IOException {
+        File file = folder.newFile("header.gpx");
+        write(file, "<?xml version=\"1.0\" enc".getBytes("UTF-8"));
+
+        assertTrue(TrackExport.repair(file));
+
+        assertEquals(0, (long) TrackImport.gpx(file).count().blockingGet());
+    }
+
+    @Test
+    public void finishedFileIsLeftAsItIs() throws IOException {
+        File file = folder.newFile("finished.gpx");
+        export(TrackExport.FORMAT_GPX, file, track(3));
+        byte[] finished = read(file);
+
+        assertFalse(TrackExport.repair(file));
+
+        assertArrayEquals(finished, read(file));
+    }
+
+    @Test
+    public void fileNotWrittenByExportIsRejected() throws IOException {
+        File empty = folder.newFile("empty.txt");
+        File text = folder.newFile("text.txt");
+        write(text, "latitude,longitude\n".getBytes("UTF-8"));
+
+        for (File file : Arrays.asList(empty, text)) {
+            try {
+                TrackExport.repair(file);
+                fail("Repaired " + file);
+            } catch (IOException expected) {
+            }
+        }
+        assertEquals("latitude,longitude\n", new String(read(text), "UTF-8"));
+    }
+
+    private static List<Location> track(int count) {
+        List<Location> track = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Location location = new Location("test");
+            location.setLatitude(52.0 + i * 0.001);
+            location.setLongitude(21.0 - i * 0.001);
+            location.setAltitude(100 + i);
+            location.setTime(START_TIME + i * 1000L);
+            track.add(location);
+        }
+        return track;
+    }
+
+    private static void export(int format, File file, List<Location> locations) {
+        Observable.fromIterable(locations)
+                .compose(TrackExport.builder().setFormat(format).setFlushInterval(1).build(file))
+                .blockingSubscribe();
+    }
+
+    /**
+     * Replaces trailer of a finished file with a partially written line.
+     */
+    private static void crash(File file, String trailer, String partialLine) throws IOException {
+        String content = new String(read(file), "UTF-8");
+        assertTrue(content.endsWith(trailer));
+        write(file, (content.substring(0, content.length() - trailer.length()) + partialLine).getBytes("UTF-8"));
+    }
+
+    private static void assertTrack(List<Location> expected, List<Location> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getLatitude(), actual.get(i).getLatitude(), 1e-7);
+            assertEquals(expected.get(i).getLongitude(), actual.get(i).getLongitude(), 1e-7);
+            assertEquals(expected.get(i).getAltitude(), actual.get(i).getAltitude(), 0.1);
+            assertEquals(expected.get(i).getTime(), actual.get(i).getTime());
+        }
+    }
+
+    private static byte[] read(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        InputStream input = new FileInputStream(file);
+        try {
+            int offset = 0;
+            int read;
+            while (offset < bytes.length && (read = input.read(bytes, offset, bytes.length - offset)) != -1) {
+                offset += read;
+            }
+        } finally {
+            input.close();
+        }
+        return bytes;
+    }
+
+    private static void write(File file, byte[] bytes) throws IOException {
+        OutputStream output = new FileOutputStream(file);
+        try {
+            output.write(bytes);
+        } finally {
+            output.close();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package pl.charmas.android.reactivelocation2.observables.track;
+
+import android.location.Location;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 25)
+public class TrackImportTest {
+    private static final long TIME = 1500000000000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void gpxPointsAreImportedWithElevationAndTime() throws IOException {
+        File file = write("trace.gpx", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<gpx version=\"1.1\" creator=\"test\" xmlns=\"http://www.topografix.com/GPX/1/1\">\n"
+                + "  <metadata><time>2000-01-01T00:00:00Z</time></metadata>\n"
+                + "  <wpt lat=\"52.0\" lon=\"21.0\"><name>start</name></wpt>\n"
+                + "  <trk><name>track</name><trkseg>\n"
+                + "    <trkpt lat=\"52.1\" lon=\"21.1\"><ele>100.5</ele><time>2017-07-14T02:40:00Z</time></trkpt>\n"
+                + "    <trkpt lat=\"52.2\" lon=\"21.2\"><time>2017-07-14T02:40:02.5Z</time>"
+                + "<extensions><time>2000-01-01T00:00:00Z</time></extensions></trkpt>\n"
+                + "  </trkseg></trk>\n"
+                + "  <rte><rtept lat=\"-33.9\" lon=\"151.2\"/></rte>\n"
+                + "</gpx>\n");
+
+        List<Location> locations = TrackImport.gpx(file).toList().blockingGet();
+
+        assertEquals(4, locations.size());
+        assertLocation(locations.get(0), 52.0, 21.0, 0);
+        assertFalse(locations.get(0).hasAltitude());
+        assertLocation(locations.get(1), 52.1, 21.1, TIME);
+        assertEquals(100.5, locations.get(1).getAltitude(), 1e-9);
+        assertLocation(locations.get(2), 52.2, 21.2, TIME + 2500);
+        assertFalse(locations.get(2).hasAltitude());
+        // untimed point is placed after the previous one
+        assertLocation(locations.get(3), -33.9, 151.2, TIME + 2500 + TrackParser.UNTIMED_INTERVAL);
+        for (Location location : locations) {
+            assertEquals(TrackParser.DEFAULT_ACCURACY, location.getAccuracy(), 0);
+        }
+        assertEquals(locations.size(), (long) TrackImport.gpxFlowable(file).count().blockingGet());
+    }
+
+    @Test
+    public void kmlCoordinatesAndTracksAreImported() throws IOException {
+        File file = write("trace.kml", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<kml xmlns=\"http://www.opengis.net/kml/2.2\" xmlns:gx=\"http://www.google.com/kml/ext/2.2\">\n"
+                + "<Document>\n"
+                + "  <Placemark><LineString><coordinates>\n"
+                + "    21.0,52.0,10 21.1,52.1\n"
+                + "    21.2,52.2,30\n"
+                + "  </coordinates></LineString></Placemark>\n"
+                + "  <Placemark><gx:Track>\n"
+                + "    <when>2017-07-14T02:40:00Z</when>\n"
+                + "    <when>2017-07-14T02:40:05Z</when>\n"
+                + "    <gx:coord>21.3 52.3 40</gx:coord>\n"
+                + "    <gx:coord>21.4 52.4</gx:coord>\n"
+                + "  </gx:Track></Placemark>\n"
+                + "</Document>\n"
+                + "</kml>\n");
+
+        List<Location> locations = TrackImport.kml(file).toList().blockingGet();
+
+        assertEquals(5, locations.size());
+        assertLocation(locations.get(0), 52.0, 21.0, 0);
+        assertEquals(10, locations.get(0).getAltitude(), 1e-9);
+        assertLocation(locations.get(1), 52.1, 21.1, TrackParser.UNTIMED_INTERVAL);
+        assertFalse(locations.get(1).hasAltitude());
+        assertLocation(locations.get(2), 52.2, 21.2, 2 * TrackParser.UNTIMED_INTERVAL);
+        assertLocation(locations.get(3), 52.3, 21.3, TIME);
+        assertEquals(40, locations.get(3).getAltitude(), 1e-9);
+        assertLocation(locations.get(4), 52.4, 21.4, TIME + 5000);
+        assertEquals(locations.size(), (long) TrackImport.kmlFlowable(file).count().blockingGet());
+    }
+
+    @Test
+    public void geoJsonPositionsOfAllGeometriesAreImported() throws IOException {
+        File file = write("trace.geojson", "{\"type\": \"FeatureCollection\", \"features\": [\n"
+                + "  {\"type\": \"Feature\", \"properties\": {\"name\": \"line\", \"tags\": [[1, 2]]},\n"
+                + "   \"geometry\": {\"type\": \"LineString\", \"coordinates\": [[21.0, 52.0, 100, 1500000000], [21.1, 52.1, 110, 1500000001.5]]}},\n"
+                + "  {\"type\": \"Feature\", \"properties\": null,\n"
+                + "   \"geometry\": {\"type\": \"MultiLineString\", \"coordinates\": [[[21.2, 52.2]], [[21.3, 52.3, 120], [21.4, 52.4]]]}},\n"
+                + "  {\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [21.5, 52.5]}}\n"
+                + "]}\n");
+
+        List<Location> locations = TrackImport.geoJson(file).toList().blockingGet();
+
+        assertEquals(6, locations.size());
+        assertLocation(locations.get(0), 52.0, 21.0, TIME);
+        assertEquals(100, locations.get(0).getAltitude(), 1e-9);
+        assertLocation(locations.get(1), 52.1, 21.1, TIME + 1500);
+        assertLocation(locations.get(2), 52.2, 21.2, TIME + 1500 + TrackParser.UNTIMED_INTERVAL);
+        assertFalse(locations.get(2).hasAltitude());
+        assertLocation(locations.get(3), 52.3, 21.3, TIME + 1500 + 2 * TrackParser.UNTIMED_INTERVAL);
+        assertEquals(120, locations.get(3).getAltitude(), 1e-9);
+        assertLocation(locations.get(4), 52.4, 21.4, TIME + 1500 + 3 * TrackParser.UNTIMED_INTERVAL);
+        assertLocation(locations.get(5), 52.5, 21.5, TIME + 1500 + 4 * TrackParser.UNTIMED_INTERVAL);
+        assertEquals(locations.size(), (long) TrackImport.geoJsonFlowable(file).count().blockingGet());
+    }
+
+    @Test
+    public void largeFileIsReadLazily() throws IOException {
+        File file = folder.newFile("large.gpx");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write("<gpx><trk><trkseg>\n");
+            for (int i = 0; i < 100000; i++) {
+                writer.write("<trkpt lat=\"52.0\" lon=\"21.0\"/>\n");
+            }
+            writer.write("</trkseg></trk></gpx>\n");
+        } finally {
+            writer.close();
+        }
+
+        assertEquals(3, (long) TrackImport.gpxFlowable(file).take(3).count().blockingGet());
+        assertEquals(100000, (long) TrackImport.gpx(file).count().blockingGet());
+    }
+
+    @Test
+    public void malformedFileIsReportedAsError() throws IOException {
+        File file = write("broken.gpx", "<gpx><trk><trkseg><trkpt lat=\"52.0\" lon=\"21.0\"><time>");
+
+        Throwable error = TrackImport.gpx(file).ignoreElements().blockingGet();
+
+        assertTrue(error instanceof Exception);
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = folder.newFile(name);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    private static void assertLocation(Location location, double latitude, double longitude, long time) {
+        assertEquals(latitude, location.getLatitude(), 1e-9);
+        assertEquals(longitude, location.getLongitude(), 1e-9);
+        assertEquals(time, location.getTime());
+    }
+}
@@ -0,0 +1,240 @@
+package pl.charmas.android.reactivelocation2.observables.track;
+
+import android.location.Location;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 25)
+public class TrackRecorderTest {
+    private static final long START_TIME = 1500000000000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void varLongRoundTrip() {
+        long[] values = {0, 1, -1, 63, -64, 64, 8191, -8192, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+        byte[] bytes = new byte[10 * values.length];
+        int offset = 0;
+        for (long value : values) {
+            offset = TrackFormat.writeVarLong(bytes, offset, value);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, offset);
+        for (long value : values) {
+            assertEquals(value, TrackFormat.readVarLong(buffer));
+        }
+        assertEquals(offset, buffer.position());
+    }
+
+    @Test
+    public void locationsRoundTripAtStoredPrecision() throws IOException {
+        File directory = folder.newFolder();
+        List<Location> recorded = randomTrack(new Random(1), 500);
+        TrackRecorder recorder = TrackRecorder.open(directory);
+        for (Location location : recorded) {
+            recorder.record(location);
+        }
+        recorder.close();
+
+        List<Location> read = TrackReader.read(directory).toList().blockingGet();
+        assertTrack(recorded, read);
+        assertTrack(recorded, TrackReader.readFlowable(directory).toList().blockingGet());
+    }
+
+    @Test
+    public void keyframeIsWrittenAfterInterval() throws IOException {
+        File directory = folder.newFolder();
+        TrackRecorder recorder = TrackRecorder.builder().setKeyframeInterval(5).open(directory);
+        for (Location location : randomTrack(new Random(2), 12)) {
+            recorder.record(location);
+        }
+        recorder.close();
+
+        File[] segments = TrackFormat.listSegments(directory);
+        assertEquals(1, segments.length);
+        List<Byte> markers = markers(segments[0]);
+        assertEquals(12, markers.size());
+        for (int i = 0; i < markers.size(); i++) {
+            byte expected = i % 5 == 0 ? TrackFormat.MARKER_KEYFRAME : TrackFormat.MARKER_DELTA;
+            assertEquals("record " + i, expected, (byte) markers.get(i));
+        }
+    }
+
+    @Test
+    public void fullSegmentRollsOverToNextOneStartingWithKeyframe() throws IOException {
+        File directory = folder.newFolder();
+        List<Location> recorded = randomTrack(new Random(3), 100);
+        TrackRecorder recorder = TrackRecorder.builder()
+                .setSegmentSize(TrackFormat.HEADER_SIZE + 4 * TrackFormat.MAX_RECORD_SIZE)
+                .open(directory);
+        for (Location location : recorded) {
+            recorder.record(location);
+        }
+        recorder.close();
+
+        File[] segments = TrackFormat.listSegments(directory);
+        assertTrue(segments.length > 1);
+        for (int i = 0; i < segments.length; i++) {
+            assertEquals(i, TrackFormat.segmentIndex(segments[i]));
+            assertEquals(TrackFormat.MARKER_KEYFRAME, (byte) markers(segments[i]).get(0));
+        }
+        assertTrack(recorded, TrackReader.read(directory).toList().blockingGet());
+    }
+
+    @Test
+    public void tornLastRecordIsDiscardedWhenReopened() throws IOException {
+        File directory = folder.newFolder();
+        List<Location> recorded = randomTrack(new Random(4), 10);
+        TrackRecorder recorder = TrackRecorder.open(directory);
+        for (Location location : recorded) {
+            recorder.record(location);
+        }
+        recorder.close();
+
+        // checksum of the last record is not written yet when the process dies
+        File segment = TrackFormat.listSegments(directory)[0];
+        List<Integer> ends = recordEnds(segment);
+        int lastEnd = ends.get(ends.size() - 1);
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try {
+            file.seek(lastEnd - 2);
+            file.write(new byte[2]);
+        } finally {
+            file.close();
+        }
+        assertEquals(9, TrackReader.read(directory).toList().blockingGet().size());
+
+        Location appended = randomTrack(new Random(5), 1).get(0);
+        recorder = TrackRecorder.open(directory);
+        recorder.record(appended);
+        recorder.close();
+
+        List<Location> expected = new ArrayList<>(recorded.subList(0, 9));
+        expected.add(appended);
+        assertTrack(expected, TrackReader.read(directory).toList().blockingGet());
+        assertEquals(TrackFormat.MARKER_KEYFRAME, (byte) markers(segment).get(9));
+    }
+
+    @Test
+    public void reopenedDirectoryIsAppendedTo() throws IOException {
+        File directory = folder.newFolder();
+        List<Location> recorded = randomTrack(new Random(6), 40);
+        TrackRecorder recorder = TrackRecorder.open(directory);
+        for (Location location : recorded.subList(0, 20)) {
+            recorder.record(location);
+        }
+        recorder.close();
+        recorder = TrackRecorder.open(directory);
+        for (Location location : recorded.subList(20, 40)) {
+            recorder.record(location);
+        }
+        recorder.close();
+
+        assertEquals(1, TrackFormat.listSegments(directory).length);
+        assertTrack(recorded, TrackReader.read(directory).toList().blockingGet());
+    }
+
+    private static List<Location> randomTrack(Random random, int count) {
+        List<Location> track = new ArrayList<>(count);
+        double lat = 52.2297;
+        double lng = 21.0122;
+        long time = START_TIME;
+        for (int i = 0; i < count; i++) {
+            lat += (random.nextDouble() - 0.5) * 1e-3;
+            lng += (random.nextDouble() - 0.5) * 1e-3;
+            time += 500 + random.nextInt(1500);
+            Location location = new Location("test");
+            location.setTime(time);
+            location.setLatitude(lat);
+            location.setLongitude(lng);
+            // every combination of optional values shows up
+            if (random.nextInt(4) != 0) {
+                location.setAccuracy(random.nextFloat() * 50);
+            }
+            if (random.nextInt(4) != 0) {
+                location.setSpeed(random.nextFloat() * 40);
+            }
+            if (random.nextInt(4) != 0) {
+                location.setBearing(random.nextFloat() * 360);
+            }
+            track.add(location);
+        }
+        return track;
+    }
+
+    private static void assertTrack(List<Location> expected, List<Location> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Location e = expected.get(i);
+            Location a = actual.get(i);
+            String message = "location " + i;
+            assertEquals(message, TrackReader.PROVIDER, a.getProvider());
+            assertEquals(message, e.getTime(), a.getTime());
+            assertEquals(message, e.getLatitude(), a.getLatitude(), 0.5e-7);
+            assertEquals(message, e.getLongitude(), a.getLongitude(), 0.5e-7);
+            assertEquals(message, e.hasAccuracy(), a.hasAccuracy());
+            assertEquals(message, e.hasSpeed(), a.hasSpeed());
+            assertEquals(message, e.hasBearing(), a.hasBearing());
+            if (e.hasAccuracy()) {
+                assertEquals(message, e.getAccuracy(), a.getAccuracy(), 0.05 + 1e-4);
+            }
+            if (e.hasSpeed()) {
+                assertEquals(message, e.getSpeed(), a.getSpeed(), 0.005 + 1e-4);
+            }
+            if (e.hasBearing()) {
+                assertEquals(message, e.getBearing() % 360, a.getBearing(), 0.05 + 1e-4);
+            }
+        }
+    }
+
+    private static List<Byte> markers(File segment) throws IOException {
+        ByteBuffer buffer = map(segment);
+        List<Byte> markers = new ArrayList<>();
+        int offset = TrackFormat.HEADER_SIZE;
+        int next;
+        while ((next = TrackFormat.nextRecord(buffer, offset)) != -1) {
+            markers.add(buffer.get(offset));
+            offset = next;
+        }
+        return markers;
+    }
+
+    private static List<Integer> recordEnds(File segment) throws IOException {
+        ByteBuffer buffer = map(segment);
+        List<Integer> ends = new ArrayList<>();
+        int offset = TrackFormat.HEADER_SIZE;
+        while ((offset = TrackFormat.nextRecord(buffer, offset)) != -1) {
+            ends.add(offset);
+        }
+        assertFalse(ends.isEmpty());
+        return ends;
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+}
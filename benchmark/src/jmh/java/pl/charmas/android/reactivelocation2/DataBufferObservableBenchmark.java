@@ -0,0 +1,70 @@
+package pl.charmas.android.reactivelocation2;
+
+import com.google.android.gms.common.data.AbstractDataBuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DataBufferObservableBenchmark {
+    @Param({"10", "1000"})
+    public int size;
+
+    private ArrayDataBuffer buffer;
+
+    @Setup
+    public void setUp() {
+        Integer[] items = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            items[i] = i;
+        }
+        buffer = new ArrayDataBuffer(items);
+    }
+
+    @Benchmark
+    public long iterateBuffer() {
+        long sum = 0;
+        for (Integer item : buffer) {
+            sum += item;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long observeBuffer() {
+        // observable from buffer does not complete, take ends it after the last item
+        return DataBufferObservable.from(buffer).take(size).count().blockingGet();
+    }
+
+    /**
+     * Buffer without a data holder, release does nothing so it can be observed repeatedly.
+     */
+    private static class ArrayDataBuffer extends AbstractDataBuffer<Integer> {
+        private final Integer[] items;
+
+        ArrayDataBuffer(Integer[] items) {
+            super(null);
+            this.items = items;
+        }
+
+        @Override
+        public int getCount() {
+            return items.length;
+        }
+
+        @Override
+        public Integer get(int position) {
+            return items[position];
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package pl.charmas.android.reactivelocation2.observables;
+
+import android.location.Location;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.schedulers.Schedulers;
+import pl.charmas.android.reactivelocation2.ReactiveLocationProviderConfiguration;
+import pl.charmas.android.reactivelocation2.observables.backend.FakePlayServicesBackend;
+import pl.charmas.android.reactivelocation2.observables.location.LastKnownLocationObservableOnSubscribe;
+
+/**
+ * Cost of wrapping sources by {@link ObservableFactory}, with and without retry on connection
+ * suspension, and of a whole connection to a fake backend that calls back on the same thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ObservableFactoryBenchmark {
+    private static final ObservableOnSubscribe<Integer> SOURCE = new ObservableOnSubscribe<Integer>() {
+        @Override
+        public void subscribe(ObservableEmitter<Integer> emitter) throws Exception {
+            emitter.onNext(1);
+            emitter.onComplete();
+        }
+    };
+
+    @Param({"false", "true"})
+    public boolean retryOnConnectionSuspended;
+
+    private ObservableContext ctx;
+    private ObservableFactory factory;
+
+    @Setup
+    public void setUp() {
+        FakePlayServicesBackend backend = FakePlayServicesBackend.builder()
+                .setCallbackScheduler(Schedulers.trampoline())
+                .build();
+        backend.setLastLocation(new Location("benchmark"));
+        ctx = new ObservableContext(null, ReactiveLocationProviderConfiguration.builder()
+                .setRetryOnConnectionSuspended(retryOnConnectionSuspended)
+                .setBackend(backend)
+                .build());
+        factory = new ObservableFactory(ctx);
+    }
+
+    @Benchmark
+    public Integer createPlainObservable() {
+        return Observable.create(SOURCE).blockingFirst();
+    }
+
+    @Benchmark
+    public Integer createFactoryObservable() {
+        return factory.createObservable(SOURCE).blockingFirst();
+    }
+
+    @Benchmark
+    public Location connectAndGetLastLocation() {
+        return LastKnownLocationObservableOnSubscribe.createObservable(ctx, factory).blockingFirst();
+    }
+}
@@ -0,0 +1,81 @@
+package pl.charmas.android.reactivelocation2.observables.geocode;
+
+import android.location.Address;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of a fallback geocoder response and in-memory reverse geocode cache lookups.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GeocodeBenchmark {
+    private static final int GRID_SIZE = 30;
+    private static final double LATITUDE = 52.23;
+    private static final double LONGITUDE = 21.01;
+
+    private String response;
+    private ReverseGeocodeCache cache;
+    private double step;
+
+    @Setup
+    public void setUp() throws IOException {
+        response = readResource("geocode_response.json");
+        cache = ReverseGeocodeCache.builder().setMaxEntries(GRID_SIZE * GRID_SIZE).build();
+        step = 1 / ReverseGeocodeCache.scale(cache.getCellPrecision());
+        for (int i = 0; i < GRID_SIZE; i++) {
+            for (int j = 0; j < GRID_SIZE; j++) {
+                Address address = new Address(Locale.US);
+                address.setAddressLine(0, i + ", " + j);
+                cache.put(Locale.US, LATITUDE + (i + 0.5) * step, LONGITUDE + (j + 0.5) * step, 1, Collections.singletonList(address));
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Address> parseFallbackResponse() throws JSONException {
+        return FallbackReverseGeocodeObservable.parseResponse(response, 5);
+    }
+
+    @Benchmark
+    public List<Address> cacheHit() {
+        return cache.get(Locale.US, LATITUDE + (GRID_SIZE / 2 + 0.5) * step, LONGITUDE + (GRID_SIZE / 2 + 0.5) * step, 1);
+    }
+
+    @Benchmark
+    public List<Address> cacheMiss() {
+        // falls back through all coarser cells before giving up
+        return cache.get(Locale.US, -LATITUDE, -LONGITUDE, 1);
+    }
+
+    private static String readResource(String name) throws IOException {
+        InputStream in = GeocodeBenchmark.class.getClassLoader().getResourceAsStream(name);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package pl.charmas.android.reactivelocation2.observables.geofence;
+
+import android.location.Location;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import pl.charmas.android.reactivelocation2.observables.track.SyntheticTrack;
+
+/**
+ * Time of evaluating a track against circular geofences scattered around it, by the engine with
+ * its grid index and by checking every geofence.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GeofenceEvaluationBenchmark {
+    private static final double LATITUDE = 52.23;
+    private static final double LONGITUDE = 21.01;
+
+    @Param({"100", "10000"})
+    public int geofenceCount;
+
+    private List<Location> track;
+    private List<LocalGeofence> geofences;
+    private LocalGeofenceEngine engine;
+
+    @Setup
+    public void setUp() {
+        track = SyntheticTrack.builder()
+                .setSeed(1)
+                .setStart(LATITUDE, LONGITUDE)
+                .setStartTime(0)
+                .setDuration(1000 * 1000L)
+                .build()
+                .generate()
+                .toList()
+                .blockingGet();
+        Random random = new Random(1);
+        geofences = new ArrayList<>(geofenceCount);
+        for (int i = 0; i < geofenceCount; i++) {
+            geofences.add(new LocalGeofence.Builder()
+                    .setRequestId("geofence-" + i)
+                    .setCircularRegion(LATITUDE + (random.nextDouble() - 0.5) * 0.2,
+                            LONGITUDE + (random.nextDouble() - 0.5) * 0.3,
+                            50 + random.nextInt(450))
+                    .build());
+        }
+        engine = LocalGeofenceEngine.builder().addGeofences(geofences).build();
+    }
+
+    @Benchmark
+    public long evaluateWithEngine() {
+        return Observable.fromIterable(track).compose(engine).count().blockingGet();
+    }
+
+    @Benchmark
+    public long evaluateEveryGeofence() {
+        // containment checks only, without transition state the engine keeps
+        long inside = 0;
+        for (Location location : track) {
+            for (LocalGeofence geofence : geofences) {
+                if (geofence.contains(location.getLatitude(), location.getLongitude())) {
+                    inside++;
+                }
+            }
+        }
+        return inside;
+    }
+}
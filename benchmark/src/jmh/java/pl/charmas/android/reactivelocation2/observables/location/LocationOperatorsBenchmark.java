@@ -0,0 +1,81 @@
+package pl.charmas.android.reactivelocation2.observables.location;
+
+import android.location.Location;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import pl.charmas.android.reactivelocation2.observables.track.SyntheticTrack;
+
+/**
+ * Time of passing a noisy track with jumps through location operators, per whole track.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LocationOperatorsBenchmark {
+    @Param({"1000"})
+    public int trackSize;
+
+    private List<Location> track;
+    private LocationOutlierFilter outlierFilter;
+    private KalmanLocationTransformer kalman;
+    private TrackSimplifier simplifier;
+
+    @Setup
+    public void setUp() {
+        track = SyntheticTrack.builder()
+                .setSeed(1)
+                .setStartTime(0)
+                .setDuration(trackSize * 1000L)
+                .setNoise(5)
+                .setJumpProbability(0.01f)
+                .build()
+                .generate()
+                .toList()
+                .blockingGet();
+        outlierFilter = LocationOutlierFilter.builder().build();
+        kalman = KalmanLocationTransformer.builder().build();
+        simplifier = TrackSimplifier.builder().build();
+    }
+
+    @Benchmark
+    public long passThrough() {
+        return Observable.fromIterable(track).count().blockingGet();
+    }
+
+    @Benchmark
+    public long filterOutliers() {
+        return Observable.fromIterable(track).compose(outlierFilter).count().blockingGet();
+    }
+
+    @Benchmark
+    public long smoothWithKalman() {
+        return Observable.fromIterable(track).compose(kalman).count().blockingGet();
+    }
+
+    @Benchmark
+    public long simplify() {
+        return Observable.fromIterable(track).compose(simplifier).count().blockingGet();
+    }
+
+    @Benchmark
+    public long filterSmoothAndSimplify() {
+        return Observable.fromIterable(track)
+                .compose(outlierFilter)
+                .compose(kalman)
+                .compose(simplifier)
+                .count()
+                .blockingGet();
+    }
+}
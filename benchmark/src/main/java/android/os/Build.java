@@ -0,0 +1,15 @@
+package android.os;
+
+/**
+ * JVM replacement of the framework class, android-all reads these values with native calls.
+ */
+public class Build {
+    public static class VERSION {
+        public static final int SDK_INT = VERSION_CODES.N_MR1;
+    }
+
+    public static class VERSION_CODES {
+        public static final int JELLY_BEAN_MR1 = 17;
+        public static final int N_MR1 = 25;
+    }
+}
@@ -0,0 +1,504 @@
+package pl.charmas.android.reactivelocation2.observables.backend;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.location.Location;
+import android.os.Handler;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.Api;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.location.ActivityRecognitionResult;
+import com.google.android.gms.location.GeofencingEvent;
+import com.google.android.gms.location.GeofencingRequest;
+import com.google.android.gms.location.LocationListener;
+import com.google.android.gms.location.LocationRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * In-memory backend which needs neither a device nor Google Play Services, meant for benchmarks and
+ * stress tests on the JVM. Clients connect after given latency, all connection callbacks, results
+ * and updates are delivered on one worker of given scheduler, like on a callback handler.
+ * <p>
+ * Locations, geofencing events and activity results pushed to the backend are delivered to every
+ * registered listener, connection failures, suspensions and failed statuses can be injected at
+ * any time. Listener registrations are not removed implicitly: registrations left when their
+ * client disconnects are dropped but counted by {@link #getLeakedRegistrationCount()}, so a
+ * subscription that does not clean up after itself can be detected.
+ * <p>
+ * Please use builder to create an instance.
+ */
+public class FakePlayServicesBackend implements PlayServicesBackend {
+    private final long connectLatency;
+    private final Scheduler.Worker worker;
+
+    private final Set<FakeClient> clients = Collections.newSetFromMap(new ConcurrentHashMap<FakeClient, Boolean>());
+    private final Map<LocationListener, FakeClient> locationListeners = new ConcurrentHashMap<>();
+    private final Map<PlayServicesClient.GeofenceListener, FakeClient> geofenceListeners = new ConcurrentHashMap<>();
+    private final Map<PlayServicesClient.ActivityListener, FakeClient> activityListeners = new ConcurrentHashMap<>();
+    private final Set<PendingIntent> intentRegistrations = new HashSet<>();
+
+    private final AtomicLong connectCount = new AtomicLong();
+    private final AtomicLong leakedRegistrationCount = new AtomicLong();
+    private final AtomicLong mockLocationCount = new AtomicLong();
+
+    private volatile int connectionErrorCode = ConnectionResult.SUCCESS;
+    private volatile int statusCode = CommonStatusCodes.SUCCESS;
+    private volatile Location lastLocation;
+    private volatile boolean mockMode;
+
+    private FakePlayServicesBackend(Builder builder) {
+        this.connectLatency = builder.connectLatency;
+        this.worker = builder.callbackScheduler.createWorker();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public PlayServicesClient createClient(Context context, @Nullable Handler handler,
+                                           List<Api<? extends Api.ApiOptions.NotRequiredOptions>> services,
+                                           PlayServicesClient.ConnectionCallbacks callbacks) {
+        FakeClient client = new FakeClient(callbacks);
+        clients.add(client);
+        return client;
+    }
+
+    /**
+     * Makes following connections fail with given error code.
+     *
+     * @param errorCode one of {@link ConnectionResult} codes, {@link ConnectionResult#SUCCESS}
+     *                  restores successful connections
+     */
+    public void setConnectionErrorCode(int errorCode) {
+        this.connectionErrorCode = errorCode;
+    }
+
+    /**
+     * Makes following calls finish with given status code, failed calls do not register anything.
+     *
+     * @param statusCode one of {@link CommonStatusCodes}, {@link CommonStatusCodes#SUCCESS}
+     *                   restores successful calls
+     */
+    public void setStatusCode(int statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    public void setLastLocation(@Nullable Location location) {
+        this.lastLocation = location;
+    }
+
+    /**
+     * Delivers location to all location listeners and makes it the last known location.
+     */
+    public void pushLocation(final Location location) {
+        lastLocation = location;
+        worker.schedule(new Runnable() {
+            @Override
+            public void run() {
+                for (LocationListener listener : locationListeners.keySet()) {
+                    listener.onLocationChanged(location);
+                }
+            }
+        });
+    }
+
+    /**
+     * Delivers geofencing event to all listeners that added geofences.
+     */
+    public void pushGeofencingEvent(final GeofencingEvent event) {
+        worker.schedule(new Runnable() {
+            @Override
+            public void run() {
+                for (PlayServicesClient.GeofenceListener listener : geofenceListeners.keySet()) {
+                    listener.onGeofencingEvent(event);
+                }
+            }
+        });
+    }
+
+    /**
+     * Delivers activity recognition result to all listeners that requested activity updates.
+     */
+    public void pushActivityResult(final ActivityRecognitionResult result) {
+        worker.schedule(new Runnable() {
+            @Override
+            public void run() {
+                for (PlayServicesClient.ActivityListener listener : activityListeners.keySet()) {
+                    listener.onActivityRecognitionResult(result);
+                }
+            }
+        });
+    }
+
+    /**
+     * Suspends all connected clients, their registrations are dropped as if Google Play Services
+     * were killed.
+     *
+     * @param cause cause passed to connection callbacks
+     */
+    public void suspendConnections(int cause) {
+        // clients created by retries while suspending are not suspended
+        for (FakeClient client : new ArrayList<>(clients)) {
+            client.suspend(cause);
+        }
+    }
+
+    /**
+     * @return number of connection attempts
+     */
+    public long getConnectCount() {
+        return connectCount.get();
+    }
+
+    /**
+     * @return number of created clients that were not disconnected yet
+     */
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    public int getConnectedClientCount() {
+        int count = 0;
+        for (FakeClient client : clients) {
+            if (client.isConnected()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getLocationListenerCount() {
+        return locationListeners.size();
+    }
+
+    public int getGeofenceListenerCount() {
+        return geofenceListeners.size();
+    }
+
+    public int getActivityListenerCount() {
+        return activityListeners.size();
+    }
+
+    /**
+     * @return number of pending intents registered for location updates or geofences, these are
+     * not tied to a client
+     */
+    public int getPendingIntentCount() {
+        synchronized (intentRegistrations) {
+            return intentRegistrations.size();
+        }
+    }
+
+    /**
+     * @return number of listener registrations that were still present when their client
+     * disconnected
+     */
+    public long getLeakedRegistrationCount() {
+        return leakedRegistrationCount.get();
+    }
+
+    /**
+     * @return number of accepted mock locations
+     */
+    public long getMockLocationCount() {
+        return mockLocationCount.get();
+    }
+
+    private static int removeOwnedBy(Map<?, FakeClient> registrations, FakeClient client) {
+        int removed = 0;
+        Iterator<FakeClient> owners = registrations.values().iterator();
+        while (owners.hasNext()) {
+            if (owners.next() == client) {
+                owners.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    private class FakeClient implements PlayServicesClient {
+        private final ConnectionCallbacks callbacks;
+        private boolean connected;
+        private boolean disconnected;
+
+        FakeClient(ConnectionCallbacks callbacks) {
+            this.callbacks = callbacks;
+        }
+
+        @Override
+        public void connect() {
+            connectCount.incrementAndGet();
+            worker.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    int errorCode = connectionErrorCode;
+                    synchronized (FakeClient.this) {
+                        if (disconnected) return;
+                        connected = errorCode == ConnectionResult.SUCCESS;
+                    }
+                    if (errorCode == ConnectionResult.SUCCESS) {
+                        callbacks.onConnected(FakeClient.this);
+                    } else {
+                        callbacks.onConnectionFailed(new ConnectionResult(errorCode));
+                    }
+                }
+            }, connectLatency, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void disconnect() {
+            synchronized (this) {
+                if (disconnected) return;
+                disconnected = true;
+                connected = false;
+                leakedRegistrationCount.addAndGet(dropRegistrations());
+            }
+            clients.remove(this);
+        }
+
+        void suspend(final int cause) {
+            synchronized (this) {
+                if (!connected) return;
+                connected = false;
+                dropRegistrations();
+            }
+            worker.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (FakeClient.this) {
+                        if (disconnected) return;
+                    }
+                    callbacks.onConnectionSuspended(cause);
+                }
+            });
+        }
+
+        private int dropRegistrations() {
+            return removeOwnedBy(locationListeners, this)
+                    + removeOwnedBy(geofenceListeners, this)
+                    + removeOwnedBy(activityListeners, this);
+        }
+
+        @Override
+        public synchronized boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public GoogleApiClient getGoogleApiClient() {
+            return null;
+        }
+
+        @Override
+        public Location getLastLocation() {
+            return lastLocation;
+        }
+
+        @Override
+        public void requestLocationUpdates(LocationRequest request, LocationListener listener, @Nullable ResultCallback<Status> callback) {
+            if (deliver(callback)) {
+                register(locationListeners, listener);
+            }
+        }
+
+        @Override
+        public void requestLocationUpdates(LocationRequest request, PendingIntent intent, @Nullable ResultCallback<Status> callback) {
+            if (deliver(callback)) {
+                addIntent(intent);
+            }
+        }
+
+        @Override
+        public void removeLocationUpdates(LocationListener listener, @Nullable ResultCallback<Status> callback) {
+            if (deliver(callback)) {
+                locationListeners.remove(listener);
+            }
+        }
+
+        @Override
+        public void removeLocationUpdates(PendingIntent intent, @Nullable ResultCallback<Status> callback) {
+            if (deliver(callback)) {
+                removeIntent(intent);
+            }
+        }
+
+        @Override
+        public void setMockMode(boolean isMockMode, @Nullable ResultCallback<Status> callback) {
+            if (deliver(callback)) {
+                mockMode = isMockMode;
+            }
+        }
+
+        @Override
+        public void setMockLocation(Location location, @Nullable ResultCallback<Status> callback) {
+            if (!mockMode) {
+                throw new SecurityException("Mock mode is not enabled");
+            }
+            if (deliver(callback)) {
+                mockLocationCount.incrementAndGet();
+                pushLocation(location);
+            }
+        }
+
+        @Override
+        public void addGeofences(GeofencingRequest request, PendingIntent intent, @Nullable ResultCallback<Status> callback) {
+            if (deliver(callback)) {
+                addIntent(intent);
+            }
+        }
+
+        @Override
+        public void addGeofences(GeofencingRequest request, GeofenceListener listener, @Nullable ResultCallback<Status> callback) {
+            if (deliver(callback)) {
+                register(geofenceListeners, listener);
+            }
+        }
+
+        @Override
+        public void removeGeofences(PendingIntent intent, @Nullable ResultCallback<Status> callback) {
+            if (deliver(callback)) {
+                removeIntent(intent);
+            }
+        }
+
+        @Override
+        public void removeGeofences(List<String> requestIds, @Nullable ResultCallback<Status> callback) {
+            deliver(callback);
+        }
+
+        @Override
+        public void removeGeofences(GeofenceListener listener, @Nullable ResultCallback<Status> callback) {
+            geofenceListeners.remove(listener);
+            deliverIfConnected(callback);
+        }
+
+        @Override
+        public void requestActivityUpdates(long detectionIntervalMillis, ActivityListener listener, @Nullable ResultCallback<Status> callback) {
+            if (deliver(callback)) {
+                register(activityListeners, listener);
+            }
+        }
+
+        @Override
+        public void removeActivityUpdates(ActivityListener listener, @Nullable ResultCallback<Status> callback) {
+            activityListeners.remove(listener);
+            deliverIfConnected(callback);
+        }
+
+        /**
+         * Schedules result of a call.
+         *
+         * @return true when the call succeeded
+         */
+        private boolean deliver(@Nullable final ResultCallback<Status> callback) {
+            if (!isConnected()) {
+                throw new IllegalStateException("GoogleApiClient is not connected yet.");
+            }
+            final int code = statusCode;
+            if (callback != null) {
+                worker.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onResult(new Status(code));
+                    }
+                });
+            }
+            return code == CommonStatusCodes.SUCCESS;
+        }
+
+        /**
+         * Schedules result of a call unless the client is no longer connected, checked under the
+         * lock of suspend and disconnect.
+         */
+        private synchronized void deliverIfConnected(@Nullable ResultCallback<Status> callback) {
+            if (connected) {
+                deliver(callback);
+            }
+        }
+
+        /**
+         * Registers listener unless the client was disconnected or suspended after the call
+         * was accepted, as such registration would be dropped along with the client.
+         */
+        private synchronized <K> void register(Map<K, FakeClient> registrations, K listener) {
+            if (connected) {
+                registrations.put(listener, this);
+            }
+        }
+
+        private void addIntent(PendingIntent intent) {
+            synchronized (intentRegistrations) {
+                intentRegistrations.add(intent);
+            }
+        }
+
+        private void removeIntent(PendingIntent intent) {
+            synchronized (intentRegistrations) {
+                intentRegistrations.remove(intent);
+            }
+        }
+    }
+
+    public static class Builder {
+        private long connectLatency = 0;
+        private Scheduler callbackScheduler = Schedulers.single();
+
+        /**
+         * Sets time after which a client connects or fails to connect.
+         * <p>
+         * Default: 0
+         *
+         * @param connectLatencyMillis time in milliseconds
+         * @return builder instance
+         */
+        public Builder setConnectLatency(long connectLatencyMillis) {
+            if (connectLatencyMillis < 0) {
+                throw new IllegalArgumentException("Connect latency cannot be negative");
+            }
+            this.connectLatency = connectLatencyMillis;
+            return this;
+        }
+
+        /**
+         * Sets scheduler on which all callbacks, results and updates are delivered. One worker of
+         * the scheduler is used, so deliveries never overlap.
+         * <p>
+         * Default: {@link Schedulers#single()}
+         *
+         * @param callbackScheduler scheduler instance
+         * @return builder instance
+         */
+        public Builder setCallbackScheduler(Scheduler callbackScheduler) {
+            this.callbackScheduler = callbackScheduler;
+            return this;
+        }
+
+        /**
+         * Builds backend instance
+         *
+         * @return backend instance
+         */
+        public FakePlayServicesBackend build() {
+            return new FakePlayServicesBackend(this);
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package pl.charmas.android.reactivelocation2;
+
+import android.location.Location;
+
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.location.GeofencingRequest;
+import com.google.android.gms.location.LocationRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.plugins.RxJavaPlugins;
+import pl.charmas.android.reactivelocation2.observables.GoogleAPIConnectionSuspendedException;
+import pl.charmas.android.reactivelocation2.observables.backend.FakePlayServicesBackend;
+
+/**
+ * Subscribes and disposes location, geofence transition and activity observables of one provider
+ * from many threads at once, like screens that rotate all the time, against
+ * {@link FakePlayServicesBackend}. Location updates are pushed and connections are suspended
+ * while subscriptions come and go.
+ * <p>
+ * Reports connection count, latency of the first item and of dispose, peak number of clients and
+ * heap growth, then fails when a client or a listener outlived its subscription, when a first
+ * item did not come in time or when a subscription failed with other error than connection
+ * suspension. Geofence and activity listeners stand for broadcast receivers,
+ * {@code GmsPlayServicesBackend} registers one receiver per such listener.
+ * <p>
+ * Arguments: threads (default 8), cycles per thread (default 2000), connect latency in
+ * milliseconds (default 1), suspension interval in milliseconds, 0 turns suspensions off
+ * (default 50).
+ */
+public class SubscriptionChurnStress {
+    private static final long FIRST_ITEM_TIMEOUT_SECONDS = 10;
+    private static final long SETTLE_TIMEOUT_MILLIS = 5000;
+
+    private final int threads;
+    private final int cycles;
+    private final long suspendInterval;
+    private final FakePlayServicesBackend backend;
+    private final ReactiveLocationProvider provider;
+    private final LocationRequest locationRequest = LocationRequest.create().setInterval(0);
+    private final GeofencingRequest geofencingRequest = new GeofencingRequest.Builder()
+            .addGeofence(new Geofence.Builder()
+                    .setRequestId("stress")
+                    .setCircularRegion(52.23, 21.01, 100)
+                    .setExpirationDuration(Geofence.NEVER_EXPIRE)
+                    .setTransitionTypes(Geofence.GEOFENCE_TRANSITION_ENTER | Geofence.GEOFENCE_TRANSITION_EXIT)
+                    .build())
+            .build();
+
+    private final AtomicInteger peakClients = new AtomicInteger();
+    private final AtomicInteger firstItemTimeouts = new AtomicInteger();
+    private final AtomicInteger unexpectedErrors = new AtomicInteger();
+    private final Map<String, AtomicInteger> errors = new TreeMap<>();
+
+    private SubscriptionChurnStress(int threads, int cycles, long connectLatency, long suspendInterval) {
+        this.threads = threads;
+        this.cycles = cycles;
+        this.suspendInterval = suspendInterval;
+        this.backend = FakePlayServicesBackend.builder()
+                .setConnectLatency(connectLatency)
+                .build();
+        this.provider = new ReactiveLocationProvider(null, ReactiveLocationProviderConfiguration.builder()
+                .setBackend(backend)
+                .setRetryOnConnectionSuspended(true)
+                .build());
+        backend.setLastLocation(new Location("stress"));
+        // errors that come after dispose, e.g. a suspension racing with it, cannot be delivered
+        RxJavaPlugins.setErrorHandler(new Consumer<Throwable>() {
+            @Override
+            public void accept(Throwable throwable) {
+                recordError("undeliverable ", throwable);
+            }
+        });
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int cycles = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        long connectLatency = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        long suspendInterval = args.length > 3 ? Long.parseLong(args[3]) : 50;
+
+        SubscriptionChurnStress stress = new SubscriptionChurnStress(threads, cycles, connectLatency, suspendInterval);
+        List<String> failures = stress.run();
+        if (!failures.isEmpty()) {
+            for (String failure : failures) {
+                System.err.println("FAILED: " + failure);
+            }
+            System.exit(1);
+        }
+        System.out.println("OK");
+        System.exit(0);
+    }
+
+    private List<String> run() throws InterruptedException {
+        // warm up, so class loading and compilation do not count as heap growth
+        runRound(Math.max(1, cycles / 10));
+        awaitSettled();
+        long heapBefore = usedHeap();
+        long connectsBefore = backend.getConnectCount();
+
+        long start = System.nanoTime();
+        Latencies[] latencies = runRound(cycles);
+        long duration = System.nanoTime() - start;
+        boolean settled = awaitSettled();
+        long heapAfter = usedHeap();
+
+        long subscriptions = (long) threads * cycles;
+        long connects = backend.getConnectCount() - connectsBefore;
+        System.out.println(String.format("%d threads, %d subscriptions in %d ms", threads, subscriptions, TimeUnit.NANOSECONDS.toMillis(duration)));
+        System.out.println(String.format("connects: %d (%.2f per subscription), peak clients: %d", connects, (double) connects / subscriptions, peakClients.get()));
+        System.out.println("first item: " + Latencies.merge(latencies, true));
+        System.out.println("dispose:    " + Latencies.merge(latencies, false));
+        System.out.println(String.format("heap growth: %d KB", (heapAfter - heapBefore) / 1024));
+        synchronized (errors) {
+            for (Map.Entry<String, AtomicInteger> error : errors.entrySet()) {
+                System.out.println("error " + error.getKey() + ": " + error.getValue());
+            }
+        }
+
+        List<String> failures = new ArrayList<>();
+        if (!settled) {
+            failures.add("backend did not settle in " + SETTLE_TIMEOUT_MILLIS + " ms");
+        }
+        if (firstItemTimeouts.get() > 0) {
+            failures.add(firstItemTimeouts.get() + " subscriptions got no item in " + FIRST_ITEM_TIMEOUT_SECONDS + " s");
+        }
+        if (unexpectedErrors.get() > 0) {
+            failures.add(unexpectedErrors.get() + " subscriptions failed with other error than connection suspension");
+        }
+        checkRetained(failures, "clients", backend.getClientCount());
+        checkRetained(failures, "location listeners", backend.getLocationListenerCount());
+        checkRetained(failures, "geofence receivers", backend.getGeofenceListenerCount());
+        checkRetained(failures, "activity receivers", backend.getActivityListenerCount());
+        checkRetained(failures, "pending intents", backend.getPendingIntentCount());
+        checkRetained(failures, "registrations left on disconnect", backend.getLeakedRegistrationCount());
+        return failures;
+    }
+
+    private Latencies[] runRound(final int cycles) throws InterruptedException {
+        final AtomicBoolean running = new AtomicBoolean(true);
+        Thread pusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long lastSuspension = System.nanoTime();
+                while (running.get()) {
+                    backend.pushLocation(new Location("stress"));
+                    updatePeakClients();
+                    if (suspendInterval > 0 && System.nanoTime() - lastSuspension > TimeUnit.MILLISECONDS.toNanos(suspendInterval)) {
+                        backend.suspendConnections(GoogleApiClient.ConnectionCallbacks.CAUSE_SERVICE_DISCONNECTED);
+                        lastSuspension = System.nanoTime();
+                    }
+                    sleep(1);
+                }
+            }
+        }, "stress-pusher");
+        pusher.start();
+
+        final Latencies[] latencies = new Latencies[threads];
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final int index = i;
+            latencies[index] = new Latencies(cycles);
+            workers[index] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(index);
+                    for (int cycle = 0; cycle < cycles; cycle++) {
+                        runCycle(cycle, random, latencies[index]);
+                    }
+                }
+            }, "stress-" + index);
+            workers[index].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        running.set(false);
+        pusher.join();
+        return latencies;
+    }
+
+    private void runCycle(int cycle, Random random, Latencies latencies) {
+        Observable<?> observable;
+        switch (cycle % 4) {
+            case 0:
+                observable = provider.getLastKnownLocation();
+                break;
+            case 1:
+                observable = provider.getUpdatedLocation(locationRequest);
+                break;
+            case 2:
+                observable = provider.observeGeofenceTransitions(geofencingRequest);
+                break;
+            default:
+                observable = provider.getDetectedActivity(random.nextInt(1000));
+                break;
+        }
+
+        final CountDownLatch firstItem = new CountDownLatch(1);
+        long subscribed = System.nanoTime();
+        Disposable disposable = observable.subscribe(new Consumer<Object>() {
+            @Override
+            public void accept(Object item) {
+                firstItem.countDown();
+            }
+        }, new Consumer<Throwable>() {
+            @Override
+            public void accept(Throwable throwable) {
+                recordError("", throwable);
+                firstItem.countDown();
+            }
+        });
+
+        boolean awaitFirstItem = (cycle % 4 == 0 || cycle % 4 == 1) && random.nextBoolean();
+        if (awaitFirstItem) {
+            if (await(firstItem)) {
+                latencies.addFirstItem(System.nanoTime() - subscribed);
+            } else {
+                firstItemTimeouts.incrementAndGet();
+            }
+        } else if (random.nextInt(3) > 0) {
+            // otherwise disposed right away, before the client connects
+            sleep(random.nextInt(3));
+        }
+
+        long disposing = System.nanoTime();
+        disposable.dispose();
+        latencies.addDispose(System.nanoTime() - disposing);
+    }
+
+    private boolean awaitSettled() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + SETTLE_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            if (backend.getClientCount() == 0
+                    && backend.getLocationListenerCount() == 0
+                    && backend.getGeofenceListenerCount() == 0
+                    && backend.getActivityListenerCount() == 0) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+
+    private void updatePeakClients() {
+        int clients = backend.getClientCount();
+        int peak;
+        do {
+            peak = peakClients.get();
+        } while (clients > peak && !peakClients.compareAndSet(peak, clients));
+    }
+
+    private void recordError(String prefix, Throwable throwable) {
+        // suspensions are expected while connections are suspended, the provider retries them
+        if (!(throwable instanceof GoogleAPIConnectionSuspendedException)) {
+            unexpectedErrors.incrementAndGet();
+        }
+        String name = prefix + throwable.getClass().getSimpleName() + " " + throwable.getMessage();
+        synchronized (errors) {
+            AtomicInteger count = errors.get(name);
+            if (count == null) {
+                count = new AtomicInteger();
+                errors.put(name, count);
+            }
+            count.incrementAndGet();
+        }
+    }
+
+    private static void checkRetained(List<String> failures, String name, long count) {
+        if (count > 0) {
+            failures.add(count + " " + name + " outlived their subscriptions");
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(FIRST_ITEM_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Latencies measured by one thread, in nanoseconds.
+     */
+    private static class Latencies {
+        private final long[] firstItem;
+        private final long[] dispose;
+        private int firstItemCount;
+        private int disposeCount;
+
+        Latencies(int capacity) {
+            firstItem = new long[capacity];
+            dispose = new long[capacity];
+        }
+
+        void addFirstItem(long nanos) {
+            firstItem[firstItemCount++] = nanos;
+        }
+
+        void addDispose(long nanos) {
+            dispose[disposeCount++] = nanos;
+        }
+
+        static String merge(Latencies[] latencies, boolean firstItem) {
+            long[] all = new long[0];
+            for (Latencies thread : latencies) {
+                long[] values = firstItem ? thread.firstItem : thread.dispose;
+                int count = firstItem ? thread.firstItemCount : thread.disposeCount;
+                int offset = all.length;
+                all = Arrays.copyOf(all, offset + count);
+                System.arraycopy(values, 0, all, offset, count);
+            }
+            if (all.length == 0) {
+                return "no samples";
+            }
+            Arrays.sort(all);
+            return String.format("n=%d p50=%d us p90=%d us p99=%d us max=%d us", all.length,
+                    micros(all, 0.5), micros(all, 0.9), micros(all, 0.99), all[all.length - 1] / 1000);
+        }
+
+        private static long micros(long[] sorted, double percentile) {
+            return sorted[(int) Math.min(sorted.length - 1, Math.floor(sorted.length * percentile))] / 1000;
+        }
+    }
+}
@@ -30,11 +30,11 @@ import io.reactivex.functions.Function;
 import io.reactivex.schedulers.Schedulers;
 import pl.charmas.android.reactivelocation2.ReactiveLocationProvider;
 import pl.charmas.android.reactivelocation2.ReactiveLocationProviderConfiguration;
+import pl.charmas.android.reactivelocation2.observables.activity.SmoothedActivityTransformer;
 import pl.charmas.android.reactivelocation2.sample.utils.AddressToStringFunc;
 import pl.charmas.android.reactivelocation2.sample.utils.DetectedActivityToString;
 import pl.charmas.android.reactivelocation2.sample.utils.DisplayTextOnViewAction;
 import pl.charmas.android.reactivelocation2.sample.utils.LocationToStringFunc;
-import pl.charmas.android.reactivelocation2.sample.utils.ToMostProbableActivity;
 
 import static pl.charmas.android.reactivelocation2.sample.utils.UnsubscribeIfPresent.dispose;
 
@@ -155,7 +155,7 @@ public class MainActivity extends BaseActivity {
                 .subscribe(new DisplayTextOnViewAction(addressLocationView), new ErrorHandler());
 
         activityDisposable = activityObservable
-                .map(new ToMostProbableActivity())
+                .compose(SmoothedActivityTransformer.builder().setMinDuration(5000).build())
                 .map(new DetectedActivityToString())
                 .subscribe(new DisplayTextOnViewAction(currentActivityView), new ErrorHandler());
     }